@@ -0,0 +1,241 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ThreadLocalRandom;
+import io.github.pitzzahh.atm.dao.ConcurrentInMemory;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import io.github.pitzzahh.atm.entity.Message;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Optional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures every operation of {@link AtmDAO} on {@link InMemory}, {@link ConcurrentInMemory} and on {@link InDatabase}
+ * with an embedded database, the throughput and the distribution of the latency of every call.
+ * {@code InMemory} is not thread-safe, run it on one thread only.
+ * <p>The {@code AtmDAO} has {@code clients} clients, every tenth client has a declined loan, loan number 1,
+ * and a pending loan, loan number 2. Operations are called on random clients. Operations that add a client or a loan
+ * are measured together with the operation that removes it again, so that the data does not grow during the run;
+ * {@code requestLoanThenRemoveLoan} is the cost to subtract from the approve and decline benchmarks.
+ * Operations that change every client are in {@link BulkOperationBenchmark}.</p>
+ * <p>Run it with {@link AtmDAOBenchmarks} to repeat it for several thread counts and record the allocation rate.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AtmDAOBenchmark {
+
+    static final int PAGE_SIZE = 100;
+    private static final LocalDate LOAN_DATE = LocalDate.of(2022, Month.AUGUST, 6);
+
+    @Param({"InMemory", "ConcurrentInMemory", "InDatabase"})
+    private String implementation;
+
+    @Param({"1000", "100000"})
+    private int clients;
+
+    private EmbeddedDatabase database;
+    private AtmDAO dao;
+    private String[] accountNumbers;
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (implementation) {
+            case "InMemory":
+                dao = new InMemory();
+                break;
+            case "ConcurrentInMemory":
+                dao = new ConcurrentInMemory();
+                break;
+            default:
+                database = EmbeddedDatabase.start();
+                dao = database.newDao();
+        }
+        Fixtures.populate(dao, clients);
+        accountNumbers = Fixtures.accountNumbers(clients);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (database != null) database.close();
+    }
+
+    /**
+     * The state of one benchmark thread: an account number no other thread uses, for the client it saves and removes,
+     * and the savings it updates together.
+     */
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Client client;
+        private Map<String, Long> savings;
+
+        @Setup(Level.Trial)
+        public void setUp(AtmDAOBenchmark benchmark) {
+            client = Fixtures.client(900_000_000 + benchmark.sessions.getAndIncrement());
+            savings = new HashMap<>();
+            while (savings.size() < PAGE_SIZE) savings.put(benchmark.randomAccountNumber(), 5_000_000_00L);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Client> getAllClients() {
+        return dao.getAllClients().get();
+    }
+
+    @Benchmark
+    public long forEachClient() {
+        var savings = new long[1];
+        dao.forEachClient().accept(client -> savings[0] += client.savingsCents());
+        return savings[0];
+    }
+
+    @Benchmark
+    public List<Client> getClientsAfter() {
+        return dao.getClientsAfter().apply(randomAccountNumber(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Optional<Client> getClientByAccountNumber() {
+        return dao.getClientByAccountNumber().apply(randomAccountNumber());
+    }
+
+    @Benchmark
+    public boolean doesClientExist() {
+        return dao.doesClientExist().test(randomAccountNumber());
+    }
+
+    @Benchmark
+    public Double getClientSavingsByAccountNumber() {
+        return dao.getClientSavingsByAccountNumber().apply(randomAccountNumber());
+    }
+
+    @Benchmark
+    public long getClientSavingsInCentsByAccountNumber() {
+        return dao.getClientSavingsInCentsByAccountNumber().applyAsLong(randomAccountNumber());
+    }
+
+    @Benchmark
+    public Status saveClientThenRemoveClientByAccountNumber(Session session) {
+        dao.saveClient().apply(session.client);
+        return dao.removeClientByAccountNumber().apply(session.client.accountNumber());
+    }
+
+    @Benchmark
+    public Status updateClientStatusByAccountNumber() {
+        return dao.updateClientStatusByAccountNumber().apply(randomAccountNumber(), false);
+    }
+
+    @Benchmark
+    public Status updateClientSavingsByAccountNumber() {
+        return dao.updateClientSavingsByAccountNumber().apply(randomAccountNumber(), 5_000_000.0);
+    }
+
+    @Benchmark
+    public Status updateClientSavingsInCentsByAccountNumber() {
+        return dao.updateClientSavingsInCentsByAccountNumber().apply(randomAccountNumber(), 5_000_000_00L);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Status updateAllClientSavingsInCents(Session session) {
+        return dao.updateAllClientSavingsInCents().apply(session.savings);
+    }
+
+    @Benchmark
+    public Status depositInCentsByAccountNumber() {
+        return dao.depositInCentsByAccountNumber().apply(randomAccountNumber(), 1);
+    }
+
+    @Benchmark
+    public Status withdrawInCentsByAccountNumber() {
+        return dao.withdrawInCentsByAccountNumber().apply(randomAccountNumber(), 1);
+    }
+
+    @Benchmark
+    public Status requestLoanThenRemoveLoan() {
+        var loan = new Loan(randomAccountNumber(), LOAN_DATE, 1_000, true);
+        dao.requestLoan().apply(loan);
+        return dao.removeLoan().apply(loan);
+    }
+
+    @Benchmark
+    public Status requestLoanThenApproveLoanThenRemoveLoan() {
+        var accountNumber = randomAccountNumber();
+        var loan = new Loan(accountNumber, LOAN_DATE, 1_000, true);
+        dao.requestLoan().apply(loan);
+        dao.approveLoan().apply(loan, new Client(accountNumber, null, null, 0, false));
+        return dao.removeLoan().apply(loan);
+    }
+
+    @Benchmark
+    public Status requestLoanThenDeclineLoanThenRemoveLoan() {
+        var loan = new Loan(randomAccountNumber(), LOAN_DATE, 1_000, true);
+        dao.requestLoan().apply(loan);
+        dao.declineLoan().apply(loan);
+        return dao.removeLoan().apply(loan);
+    }
+
+    @Benchmark
+    public Map<String, List<Loan>> getAllLoans() {
+        return dao.getAllLoans().get();
+    }
+
+    @Benchmark
+    public long forEachLoan() {
+        var amount = new long[1];
+        dao.forEachLoan().accept(loan -> amount[0] += loan.amountCents());
+        return amount[0];
+    }
+
+    @Benchmark
+    public List<Loan> getLoansAfter() {
+        return dao.getLoansAfter().apply(new Loan(1, randomAccountNumberWithLoans(), true), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Loan> getLoansByAccountNumber() {
+        return dao.getLoansByAccountNumber().apply(randomAccountNumberWithLoans());
+    }
+
+    @Benchmark
+    public Optional<Loan> getLoanByLoanNumberAndAccountNumber() {
+        return dao.getLoanByLoanNumberAndAccountNumber().apply(2, randomAccountNumberWithLoans());
+    }
+
+    @Benchmark
+    public Integer getLoanCount() {
+        return dao.getLoanCount().apply(randomAccountNumberWithLoans());
+    }
+
+    @Benchmark
+    public Map<String, List<Message>> getMessage() {
+        return dao.getMessage().apply(randomAccountNumberWithLoans());
+    }
+
+    private String randomAccountNumber() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length)];
+    }
+
+    /**
+     * Gets a random client with a declined and a pending loan.
+     */
+    private String randomAccountNumberWithLoans() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length / 10) * 10];
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import java.util.Arrays;
+
+/**
+ * Runs {@link AtmDAOBenchmark} once for every thread count, then {@link BulkOperationBenchmark} on one thread,
+ * with the GC profiler so that the results have the bytes allocated per operation ({@code gc.alloc.rate.norm}).
+ * {@code InMemory} is not thread-safe and only runs on one thread.
+ * <p>Every run writes its results to a JSON file in the working directory, {@code atm-dao-<threads>-threads.json}
+ * and {@code atm-dao-bulk.json}. Keep the files of a release and compare them with the files of a change
+ * to find the operations that got slower or allocate more.</p>
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar io.github.pitzzahh.atm.benchmark.AtmDAOBenchmarks 1 4 16
+ * </pre>
+ * <p>Arguments are the thread counts, default {@code 1 4 16}.</p>
+ */
+public final class AtmDAOBenchmarks {
+
+    private static final String[] IMPLEMENTATIONS = {"InMemory", "ConcurrentInMemory", "InDatabase"};
+    private static final String[] THREAD_SAFE_IMPLEMENTATIONS = {"ConcurrentInMemory", "InDatabase"};
+
+    private AtmDAOBenchmarks() {}
+
+    public static void main(String[] args) throws RunnerException {
+        var threadCounts = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] {1, 4, 16};
+        for (var threads : threadCounts) {
+            new Runner(new OptionsBuilder()
+                    .include(AtmDAOBenchmark.class.getName())
+                    .threads(threads)
+                    .param("implementation", threads == 1 ? IMPLEMENTATIONS : THREAD_SAFE_IMPLEMENTATIONS)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("atm-dao-" + threads + "-threads.json")
+                    .build()
+            ).run();
+        }
+        new Runner(new OptionsBuilder()
+                .include(BulkOperationBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("atm-dao-bulk.json")
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.dao.ConcurrentInMemory;
+import java.util.concurrent.locks.ReentrantLock;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.util.List;
+
+/**
+ * 64 threads depositing to and withdrawing from the same account.
+ * Compares the compare-and-set deposits and withdrawals against reading and updating the savings under one lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class BalanceContentionBenchmark {
+
+    @Param({"InMemory", "ConcurrentInMemory"})
+    private String implementation;
+
+    private AtmDAO dao;
+    private String accountNumber;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dao = "InMemory".equals(implementation) ? new InMemory() : new ConcurrentInMemory();
+        var client = Fixtures.client(0);
+        dao.saveAllClients().apply(List.of(client));
+        accountNumber = client.accountNumber();
+    }
+
+    @Benchmark
+    @Group("compareAndSet")
+    public Status deposit() {
+        return dao.depositInCentsByAccountNumber().apply(accountNumber, 100);
+    }
+
+    @Benchmark
+    @Group("compareAndSet")
+    public Status withdraw() {
+        return dao.withdrawInCentsByAccountNumber().apply(accountNumber, 100);
+    }
+
+    @Benchmark
+    @Group("locked")
+    public Status depositWithLock() {
+        return addWithLock(100);
+    }
+
+    @Benchmark
+    @Group("locked")
+    public Status withdrawWithLock() {
+        return addWithLock(-100);
+    }
+
+    /**
+     * Reads the savings and updates them while holding one lock, how the savings were updated before compare-and-set.
+     */
+    private Status addWithLock(long cents) {
+        lock.lock();
+        try {
+            var savings = dao.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+            if (savings + cents < 0) return Status.CANNOT_PERFORM_OPERATION;
+            return dao.updateClientSavingsInCentsByAccountNumber().apply(accountNumber, savings + cents);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures the operations of {@link AtmDAO} that change every client or loan, on {@link InMemory} and on
+ * {@link InDatabase} with an embedded database. Every call is timed once, the data is restored before every call:
+ * {@code saveAllClients} saves {@code clients} clients to an empty {@code AtmDAO}, the other benchmarks remove
+ * every client or loan of an {@code AtmDAO} filled like {@link AtmDAOBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BulkOperationBenchmark {
+
+    @Param({"InMemory", "InDatabase"})
+    private String implementation;
+
+    @Param({"1000", "100000"})
+    private int clients;
+
+    private EmbeddedDatabase database;
+    private AtmDAO dao;
+    private List<Client> saved;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("InDatabase".equals(implementation)) {
+            database = EmbeddedDatabase.start();
+            dao = database.newDao();
+        }
+        saved = Fixtures.clients(clients);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (database != null) database.close();
+    }
+
+    /**
+     * Empties the {@code AtmDAO} before every call.
+     */
+    @State(Scope.Benchmark)
+    public static class Empty {
+
+        @Setup(Level.Invocation)
+        public void clear(BulkOperationBenchmark benchmark) {
+            benchmark.clear();
+        }
+    }
+
+    /**
+     * Fills the {@code AtmDAO} before every call.
+     */
+    @State(Scope.Benchmark)
+    public static class Filled {
+
+        @Setup(Level.Invocation)
+        public void fill(BulkOperationBenchmark benchmark) {
+            benchmark.clear();
+            Fixtures.populate(benchmark.dao, benchmark.clients);
+        }
+    }
+
+    @Benchmark
+    public Status saveAllClients(Empty empty) {
+        return dao.saveAllClients().apply(saved);
+    }
+
+    @Benchmark
+    public Status removeAllClients(Filled filled) {
+        return dao.removeAllClients().get();
+    }
+
+    @Benchmark
+    public Status removeAllLoans(Filled filled) {
+        return dao.removeAllLoans().get();
+    }
+
+    /**
+     * Removes every client and loan, {@code InMemory} is replaced so that its loan numbers start again from 1.
+     */
+    private void clear() {
+        if (database == null) {
+            dao = new InMemory();
+        } else {
+            database.truncate();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.entity.Client;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of looking up a client by account number in {@link InMemory}.
+ * The latency should stay flat as the number of clients grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ClientLookupBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int clients;
+
+    private InMemory dao;
+    private String[] accountNumbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dao = new InMemory();
+        dao.saveAllClients().apply(Fixtures.clients(clients));
+        accountNumbers = Fixtures.accountNumbers(clients);
+    }
+
+    @Benchmark
+    public Optional<Client> getClientByAccountNumber() {
+        return dao.getClientByAccountNumber().apply(randomAccountNumber());
+    }
+
+    @Benchmark
+    public Double getClientSavingsByAccountNumber() {
+        return dao.getClientSavingsByAccountNumber().apply(randomAccountNumber());
+    }
+
+    private String randomAccountNumber() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length)];
+    }
+}
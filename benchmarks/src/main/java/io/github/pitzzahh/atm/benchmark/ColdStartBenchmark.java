@@ -0,0 +1,74 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.atm.database.ClientSnapshot;
+import io.github.pitzzahh.atm.dao.OffHeapInMemory;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.entity.Client;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Measures the time from nothing to a DAO that answers the first lookup: rebuilding {@link InMemory} from
+ * {@link InDatabase#getAllClients()}, which reads and decrypts every row, against mapping a snapshot written by
+ * {@link ClientSnapshot} with {@link OffHeapInMemory#mapSnapshot(Path)}.
+ * <p>Every measurement runs in a new JVM without warm-up, as a real start does. The snapshot file is in the page cache
+ * after the setup, drop the cache before every fork to measure reading it from the disk.
+ * {@code mapSnapshotAndReadAll} reads every client after mapping, the cost of paging in the whole file.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 5, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ColdStartBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int clients;
+
+    private EmbeddedDatabase database;
+    private InDatabase inDatabase;
+    private Path snapshot;
+    private String accountNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = EmbeddedDatabase.start();
+        inDatabase = database.newDao();
+        inDatabase.saveAllClients().apply(Fixtures.clients(clients));
+        for (int i = 0; i < clients; i += 10) inDatabase.requestLoan().apply(Fixtures.loan(i, 1_000));
+        snapshot = Files.createTempFile("cold-start", ".snapshot");
+        new ClientSnapshot(inDatabase).exportTo(snapshot);
+        accountNumber = Fixtures.accountNumber(clients / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Optional<Client> warmUpFromDatabase() {
+        var dao = new InMemory();
+        dao.saveAllClients().apply(inDatabase.getAllClients().get().values());
+        return dao.getClientByAccountNumber().apply(accountNumber);
+    }
+
+    @Benchmark
+    public Optional<Client> mapSnapshot() throws IOException {
+        return OffHeapInMemory.mapSnapshot(snapshot).getClientByAccountNumber().apply(accountNumber);
+    }
+
+    @Benchmark
+    public long mapSnapshotAndReadAll() throws IOException {
+        var savings = new long[1];
+        OffHeapInMemory.mapSnapshot(snapshot).forEachClient().accept(client -> savings[0] += client.savingsCents());
+        return savings[0];
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+import io.github.pitzzahh.atm.security.BlindIndex;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * An embedded PostgreSQL database with the tables of the API, used by the {@link InDatabase} benchmarks.
+ */
+public final class EmbeddedDatabase implements AutoCloseable {
+
+    /**
+     * The table scripts shipped with the API, in the order they have to run.
+     */
+    private static final String[] SCRIPTS = {"clients.sql", "loans.sql", "loan_sequences.sql"};
+
+    private final EmbeddedPostgres postgres;
+    private final JdbcTemplate jdbcTemplate;
+
+    private EmbeddedDatabase(EmbeddedPostgres postgres) {
+        this.postgres = postgres;
+        this.jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    /**
+     * Starts a new database and creates the tables.
+     * @return the started {@code EmbeddedDatabase}.
+     */
+    public static EmbeddedDatabase start() {
+        try {
+            var database = new EmbeddedDatabase(EmbeddedPostgres.start());
+            for (var script : SCRIPTS) database.run(script);
+            return database;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the data source of the database.
+     * @return the {@code DataSource}.
+     */
+    public DataSource getDataSource() {
+        return postgres.getPostgresDatabase();
+    }
+
+    /**
+     * Creates an {@code InDatabase} connected to this database.
+     * @return the {@code InDatabase}.
+     */
+    public InDatabase newDao() {
+        var dao = new InDatabase().setBlindIndex(BlindIndex.development());
+        dao.setDataSource().accept(getDataSource());
+        return dao;
+    }
+
+    /**
+     * Removes every row from every table.
+     */
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE clients, loans, loan_sequences");
+    }
+
+    @Override
+    public void close() throws IOException {
+        postgres.close();
+    }
+
+    private void run(String script) throws IOException {
+        try (var in = Objects.requireNonNull(InDatabase.class.getClassLoader().getResourceAsStream(script), script)) {
+            for (var statement : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+                if (!statement.isBlank()) jdbcTemplate.execute(statement);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Gender;
+import io.github.pitzzahh.util.utilities.classes.Person;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+
+/**
+ * Generates the clients and loans used by the benchmarks.
+ */
+public final class Fixtures {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private Fixtures() {}
+
+    /**
+     * Creates the account number of the client at the given index.
+     * @param index the index of the client.
+     * @return a 9-digit account number.
+     */
+    public static String accountNumber(int index) {
+        return String.format("%09d", index);
+    }
+
+    /**
+     * Creates the account numbers of {@code size} clients, so that benchmarks do not format them in the measured loop.
+     * @param size the number of clients.
+     * @return a {@code String[]} of account numbers.
+     */
+    public static String[] accountNumbers(int size) {
+        return IntStream.range(0, size)
+                .mapToObj(Fixtures::accountNumber)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Creates a client with the account number at the given index.
+     * @param index the index of the client.
+     * @return a {@code Client} object.
+     */
+    public static Client client(int index) {
+        return new Client(
+                accountNumber(index),
+                "123123",
+                Person.builder()
+                        .firstName("First" + index)
+                        .lastName("Last" + index)
+                        .gender(Gender.PREFER_NOT_TO_SAY)
+                        .address("Earth")
+                        .birthDate(LocalDate.of(2000, Month.JANUARY, 1))
+                        .build(),
+                5_000_000,
+                false
+        );
+    }
+
+    /**
+     * Creates {@code size} clients with account numbers from {@code 0} to {@code size - 1}.
+     * @param size the number of clients.
+     * @return a {@code List<Client>}.
+     */
+    public static List<Client> clients(int size) {
+        return IntStream.range(0, size)
+                .mapToObj(Fixtures::client)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a pending loan for the client at the given index.
+     * @param index the index of the client.
+     * @param amount the amount of the loan.
+     * @return a {@code Loan} object.
+     */
+    public static Loan loan(int index, double amount) {
+        return new Loan(
+                accountNumber(index),
+                LocalDate.of(2022, Month.AUGUST, 6),
+                amount,
+                true
+        );
+    }
+
+    /**
+     * Saves {@code size} clients to an empty {@code AtmDAO}, {@value #BATCH_SIZE} clients at a time, then gives every tenth
+     * client a declined loan, loan number 1, and a pending loan, loan number 2.
+     * @param dao the {@code AtmDAO}.
+     * @param size the number of clients.
+     */
+    public static void populate(AtmDAO dao, int size) {
+        for (int from = 0; from < size; from += BATCH_SIZE) {
+            var clients = IntStream.range(from, Math.min(size, from + BATCH_SIZE))
+                    .mapToObj(Fixtures::client)
+                    .collect(Collectors.toList());
+            dao.saveAllClients().apply(clients);
+        }
+        for (int i = 0; i < size; i += 10) {
+            var declined = loan(i, 1_000);
+            dao.requestLoan().apply(declined);
+            dao.declineLoan().apply(declined);
+            dao.requestLoan().apply(loan(i, 2_000));
+        }
+    }
+}
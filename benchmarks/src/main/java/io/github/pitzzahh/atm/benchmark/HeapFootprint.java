@@ -0,0 +1,152 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import javax.management.openmbean.CompositeData;
+import io.github.pitzzahh.atm.dao.OffHeapInMemory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import io.github.pitzzahh.atm.entity.Client;
+import java.lang.management.MemoryType;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the heap used by the clients and the GC pauses while the clients are read and updated,
+ * for {@link InMemory} and {@link OffHeapInMemory}. Not a JMH benchmark, GC pauses are not a JMH metric.
+ * <p>Run one implementation per JVM, with the same heap settings for both:</p>
+ * <pre>
+ * java -Xms8g -Xmx8g -XX:MaxDirectMemorySize=4g -cp benchmarks/target/benchmarks.jar \
+ *     io.github.pitzzahh.atm.benchmark.HeapFootprint OffHeapInMemory 10000000 60
+ * </pre>
+ * <p>Arguments are the implementation ({@code InMemory} or {@code OffHeapInMemory}), the number of clients
+ * (default 1000000) and the seconds the clients are read and updated (default 30).
+ * One in 64 operations removes a client and saves it again, so that the stored clients keep changing.</p>
+ */
+public final class HeapFootprint {
+
+    private HeapFootprint() {}
+
+    public static void main(String[] args) throws Exception {
+        var implementation = args.length > 0 ? args[0] : "OffHeapInMemory";
+        var size = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        var seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        // allocated before measuring, so that the heap used by the clients does not include the keys of the benchmark
+        var accountNumbers = Fixtures.accountNumbers(size);
+        var heapBefore = usedHeapAfterGc();
+
+        var dao = create(implementation, size);
+        for (int from = 0; from < size; from += 100_000) {
+            var clients = new ArrayList<Client>();
+            for (int i = from; i < Math.min(size, from + 100_000); i++) clients.add(Fixtures.client(i));
+            dao.saveAllClients().apply(clients);
+        }
+        var heapAfter = usedHeapAfterGc();
+
+        var pauses = Collections.synchronizedList(new ArrayList<Double>());
+        var listener = pauseListener(pauses);
+        var emitters = gcEmitters();
+        for (var emitter : emitters) emitter.addNotificationListener(listener, null, null);
+        var operations = 0L;
+        var end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        var random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            var index = random.nextInt(size);
+            var accountNumber = accountNumbers[index];
+            switch (random.nextInt(64)) {
+                case 0:
+                    dao.removeClientByAccountNumber().apply(accountNumber);
+                    dao.saveClient().apply(Fixtures.client(index));
+                    break;
+                case 1:
+                case 2:
+                case 3:
+                    dao.getClientByAccountNumber().apply(accountNumber).ifPresent(client -> client.details());
+                    break;
+                default:
+                    dao.depositInCentsByAccountNumber().apply(accountNumber, 100);
+                    dao.withdrawInCentsByAccountNumber().apply(accountNumber, 100);
+            }
+            operations++;
+        }
+        for (var emitter : emitters) emitter.removeNotificationListener(listener);
+
+        List<Double> sorted;
+        synchronized (pauses) {
+            sorted = new ArrayList<>(pauses);
+        }
+        Collections.sort(sorted);
+        System.out.printf("implementation       : %s%n", implementation);
+        System.out.printf("clients              : %,d%n", size);
+        System.out.printf("heap used by clients : %,.1f MiB%n", (heapAfter - heapBefore) / 1024.0 / 1024.0);
+        System.out.printf("direct memory        : %,.1f MiB%n", directMemory() / 1024.0 / 1024.0);
+        System.out.printf("operations           : %,d (%,.0f ops/s)%n", operations, operations / (double) seconds);
+        System.out.printf("GC pauses            : %d%n", sorted.size());
+        System.out.printf("GC pause p50         : %.1f ms%n", percentile(sorted, 0.50));
+        System.out.printf("GC pause p99         : %.1f ms%n", percentile(sorted, 0.99));
+        System.out.printf("GC pause max         : %.1f ms%n", percentile(sorted, 1.0));
+    }
+
+    private static AtmDAO create(String implementation, int size) {
+        switch (implementation) {
+            case "InMemory": return new InMemory();
+            case "OffHeapInMemory": return new OffHeapInMemory(size);
+            default: throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    /**
+     * Records the duration of every stop-the-world collection, concurrent cycles are not pauses and are skipped.
+     */
+    private static NotificationListener pauseListener(List<Double> pauses) {
+        return (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+            var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) return;
+            pauses.add((double) info.getGcInfo().getDuration());
+        };
+    }
+
+    private static List<NotificationEmitter> gcEmitters() {
+        var emitters = new ArrayList<NotificationEmitter>();
+        for (var bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter) emitters.add((NotificationEmitter) bean);
+        }
+        return emitters;
+    }
+
+    /**
+     * Used heap after a full collection, the sum of the heap pools measured right after their last collection.
+     */
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return ManagementFactory.getMemoryPoolMXBeans()
+                .stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null)
+                .mapToLong(pool -> pool.getCollectionUsage().getUsed())
+                .sum();
+    }
+
+    private static long directMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+                .stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static double percentile(List<Double> sorted, double percentile) {
+        if (sorted.isEmpty()) return 0;
+        var index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.journal.DurableAtmDAO;
+import io.github.pitzzahh.atm.journal.FsyncPolicy;
+import io.github.pitzzahh.atm.dao.ConcurrentInMemory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.util.Comparator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.io.IOException;
+
+/**
+ * Deposits to random accounts of a {@link DurableAtmDAO} from 16 threads, for every {@link FsyncPolicy}.
+ * The difference between {@code EVERY_WRITE} and {@code GROUP_COMMIT} is the number of deposits written per fsync.
+ * The log is written to {@code java.io.tmpdir}, which must be on the disk being measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    @Param({"EVERY_WRITE", "GROUP_COMMIT", "EVERY_SECOND", "NEVER"})
+    private FsyncPolicy policy;
+
+    private Path directory;
+    private DurableAtmDAO dao;
+    private String[] accountNumbers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        dao = new DurableAtmDAO(new ConcurrentInMemory(), directory, policy);
+        dao.saveAllClients().apply(Fixtures.clients(CLIENTS));
+        accountNumbers = Fixtures.accountNumbers(CLIENTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dao.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Status deposit() {
+        var accountNumber = accountNumbers[ThreadLocalRandom.current().nextInt(CLIENTS)];
+        return dao.depositInCentsByAccountNumber().apply(accountNumber, 100);
+    }
+}
@@ -0,0 +1,350 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.atm.database.DatabaseConnection;
+import java.util.concurrent.ArrayBlockingQueue;
+import io.github.pitzzahh.atm.dao.OffHeapInMemory;
+import java.util.concurrent.BlockingQueue;
+import io.github.pitzzahh.atm.service.AtmService;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.ExecutionException;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import java.util.concurrent.Executors;
+import io.github.pitzzahh.atm.dao.ConcurrentInMemory;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import org.HdrHistogram.Histogram;
+import java.io.FileNotFoundException;
+import java.util.SplittableRandom;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drives an {@link AtmService} with a mix of ATM operations and prints the latency distribution of every operation.
+ * Not a JMH benchmark, it simulates the traffic of many ATMs to size the hardware of a deployment.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar io.github.pitzzahh.atm.benchmark.LoadGenerator \
+ *     --dao=InDatabase --accounts=1000000 --zipf=0.99 --mode=open --rate=5000 --threads=64 --duration=300
+ * </pre>
+ * <p>Options, all {@code --name=value}:</p>
+ * <ul>
+ *     <li>{@code dao}: {@code ConcurrentInMemory}, {@code OffHeapInMemory} or {@code InDatabase}, default {@code ConcurrentInMemory}.
+ *     {@code InDatabase} uses an embedded database, or the database of {@code url}, {@code username} and {@code password}
+ *     whose tables must exist.</li>
+ *     <li>{@code accounts}: the number of clients, saved first unless the first client exists, default 100000.</li>
+ *     <li>{@code zipf}: the exponent of the popularity of the accounts, 0 is uniform, default 0.99.</li>
+ *     <li>{@code mix}: the weight of every operation, default {@code balance=60,withdraw=25,request=5,approve=4,decline=4,message=2}.</li>
+ *     <li>{@code mode}: {@code closed}, every thread starts an operation when the previous one ends, or {@code open},
+ *     operations start at {@code rate} per second whether the previous ones ended or not. Default {@code closed}.</li>
+ *     <li>{@code rate}: operations per second of all the threads in open mode, default 1000.</li>
+ *     <li>{@code threads}: the number of threads, default 8.</li>
+ *     <li>{@code warmup} and {@code duration}: the seconds before the measurement and of the measurement, default 10 and 60.</li>
+ *     <li>{@code hgrm}: a prefix, the full distribution of every operation is written to {@code <prefix>-<operation>.hgrm}.</li>
+ * </ul>
+ * <p>The response time of an operation is measured from the time it should have started, the service time from the time
+ * it started. In open mode an operation that waited for a slow one has a longer response time than service time, so that
+ * the percentiles are not hiding the stalls (coordinated omission). A closed loop does not issue the operations it
+ * would have issued during a stall, its response time is corrected after the run as if every thread had
+ * issued an operation every mean service time; prefer the open mode to size hardware.</p>
+ * <p>The popular accounts are spread over the account numbers. Approvals and declines take a loan requested during
+ * the run, they request a loan instead when there is none. A message read of a client without messages is still counted.</p>
+ */
+public final class LoadGenerator {
+
+    private static final LocalDate LOAN_DATE = LocalDate.of(2022, 8, 6);
+    private static final int MAX_PENDING_LOANS = 100_000;
+
+    /**
+     * The operations of an ATM session.
+     */
+    enum Operation {
+        BALANCE("balance"),
+        WITHDRAW("withdraw"),
+        REQUEST("request"),
+        APPROVE("approve"),
+        DECLINE("decline"),
+        MESSAGE("message");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+    }
+
+    private final AtmService atmService;
+    private final String[] accountNumbers;
+    private final ZipfGenerator zipf;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final BlockingQueue<Loan> pendingLoans = new ArrayBlockingQueue<>(MAX_PENDING_LOANS);
+
+    private LoadGenerator(AtmService atmService, int accounts, double exponent, Map<Operation, Integer> mix) {
+        this.atmService = atmService;
+        this.accountNumbers = Fixtures.accountNumbers(accounts);
+        Collections.shuffle(Arrays.asList(accountNumbers), new Random(42));
+        this.zipf = new ZipfGenerator(accounts, exponent);
+        this.operations = mix.keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        var total = 0;
+        for (int i = 0; i < operations.length; i++) cumulativeWeights[i] = total += mix.get(operations[i]);
+        if (total <= 0) throw new IllegalArgumentException("The weights of the mix must add up to more than 0");
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = parse(args);
+        var accounts = Integer.parseInt(options.getOrDefault("accounts", "100000"));
+        var threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        var open = "open".equals(options.getOrDefault("mode", "closed"));
+        var rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+        var warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "10")));
+        var duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "60")));
+        var mix = mix(options.getOrDefault("mix", "balance=60,withdraw=25,request=5,approve=4,decline=4,message=2"));
+        EmbeddedDatabase database = null;
+        AtmDAO dao;
+        switch (options.getOrDefault("dao", "ConcurrentInMemory")) {
+            case "ConcurrentInMemory":
+                dao = new ConcurrentInMemory();
+                break;
+            case "OffHeapInMemory":
+                dao = new OffHeapInMemory(accounts);
+                break;
+            case "InDatabase":
+                if (options.containsKey("url")) {
+                    dao = new InDatabase();
+                    dao.setDataSource().accept(new DatabaseConnection()
+                            .setUrl(options.get("url"))
+                            .setUsername(options.getOrDefault("username", ""))
+                            .setPassword(options.getOrDefault("password", ""))
+                            .setMaximumPoolSize(threads)
+                            .getPooledDataSource());
+                } else {
+                    database = EmbeddedDatabase.start();
+                    dao = database.newDao();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown dao: " + options.get("dao"));
+        }
+        try {
+            if (!dao.doesClientExist().test(Fixtures.accountNumber(0))) Fixtures.populate(dao, accounts);
+            var generator = new LoadGenerator(new AtmService(dao), accounts, Double.parseDouble(options.getOrDefault("zipf", "0.99")), mix);
+            var result = generator.run(threads, open ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / rate) : 0, warmup, duration);
+            result.print(System.out, duration, options.get("hgrm"));
+        } finally {
+            if (database != null) database.close();
+        }
+    }
+
+    /**
+     * Runs the operations on every thread and merges their histograms.
+     * @param interval the nanoseconds between the starts of two operations of a thread, {@code 0} for a closed loop.
+     */
+    private Result run(int threads, long interval, long warmup, long duration) throws InterruptedException, ExecutionException {
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            var results = new ArrayList<Future<Result>>();
+            for (int i = 0; i < threads; i++) {
+                var seed = i;
+                var first = start + interval * i / threads;
+                results.add(executor.submit(() -> work(new SplittableRandom(seed), first, interval, start + warmup, start + warmup + duration)));
+            }
+            var total = new Result(interval == 0);
+            for (var result : results) total.add(result.get());
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The loop of one thread, in open mode the operations start at {@code first + n * interval}.
+     */
+    private Result work(SplittableRandom random, long first, long interval, long measureFrom, long end) {
+        var result = new Result(interval == 0);
+        var intended = first;
+        while (true) {
+            if (interval == 0) intended = System.nanoTime();
+            if (intended >= end) return result;
+            for (var wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) LockSupport.parkNanos(wait);
+            var started = System.nanoTime();
+            Operation operation;
+            try {
+                operation = perform(pick(random), random);
+            } catch (RuntimeException e) {
+                operation = null;
+            }
+            var finished = System.nanoTime();
+            if (started >= measureFrom) result.record(operation, finished - intended, finished - started);
+            intended += interval;
+        }
+    }
+
+    /**
+     * Calls the operation on a popular account.
+     * @return the operation performed, a loan request for an approval or a decline when no loan is pending.
+     */
+    private Operation perform(Operation operation, SplittableRandom random) {
+        var accountNumber = accountNumbers[zipf.next(random) - 1];
+        switch (operation) {
+            case BALANCE:
+                atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+                return operation;
+            case WITHDRAW:
+                atmService.withdrawInCentsByAccountNumber().apply(accountNumber, 100_00);
+                return operation;
+            case APPROVE:
+            case DECLINE:
+                var loan = pendingLoans.poll();
+                if (loan == null) break;
+                if (operation == Operation.APPROVE) {
+                    atmService.approveLoan().apply(loan, atmService.getClientByAccountNumber().apply(loan.accountNumber()).orElseThrow());
+                } else {
+                    atmService.declineLoan().apply(loan);
+                }
+                return operation;
+            case MESSAGE:
+                try {
+                    atmService.getMessage().apply(accountNumber);
+                } catch (IllegalStateException noMessages) {
+                    // a client without approved or declined loans
+                }
+                return operation;
+            default:
+                break;
+        }
+        var loan = new Loan(accountNumber, LOAN_DATE, 1_000, true);
+        atmService.requestLoan().apply(loan);
+        pendingLoans.offer(loan);
+        return Operation.REQUEST;
+    }
+
+    private Operation pick(SplittableRandom random) {
+        var weight = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        var i = 0;
+        while (cumulativeWeights[i] <= weight) i++;
+        return operations[i];
+    }
+
+    /**
+     * The response and service time histograms of every operation, in nanoseconds, and the number of failed operations.
+     */
+    private static final class Result {
+
+        private final boolean closedLoop;
+        private final Map<Operation, Histogram> responseTimes = new EnumMap<>(Operation.class);
+        private final Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+        private long errors;
+
+        private Result(boolean closedLoop) {
+            this.closedLoop = closedLoop;
+            for (var operation : Operation.values()) {
+                responseTimes.put(operation, new Histogram(3));
+                serviceTimes.put(operation, new Histogram(3));
+            }
+        }
+
+        private void record(Operation operation, long responseTime, long serviceTime) {
+            if (operation == null) {
+                errors++;
+                return;
+            }
+            responseTimes.get(operation).recordValue(responseTime);
+            serviceTimes.get(operation).recordValue(serviceTime);
+        }
+
+        /**
+         * Adds the histograms of another thread, correcting a closed loop with the mean service time of that thread.
+         */
+        private void add(Result other) {
+            for (var operation : Operation.values()) {
+                var responseTime = other.responseTimes.get(operation);
+                if (closedLoop) responseTime = responseTime.copyCorrectedForCoordinatedOmission((long) other.meanServiceTime());
+                responseTimes.get(operation).add(responseTime);
+                serviceTimes.get(operation).add(other.serviceTimes.get(operation));
+            }
+            errors += other.errors;
+        }
+
+        private double meanServiceTime() {
+            var all = new Histogram(3);
+            for (var histogram : serviceTimes.values()) all.add(histogram);
+            return all.getMean();
+        }
+
+        private void print(PrintStream out, long duration, String hgrm) throws FileNotFoundException {
+            var seconds = duration / 1e9;
+            var allResponseTimes = new Histogram(3);
+            var allServiceTimes = new Histogram(3);
+            out.printf("%-9s %10s %10s | %-47s | %-47s%n", "operation", "count", "ops/s",
+                    "response time (us) p50 p90 p99 p99.9 p99.99 max", "service time (us) p50 p90 p99 p99.9 p99.99 max");
+            for (var operation : Operation.values()) {
+                var responseTime = responseTimes.get(operation);
+                if (responseTime.getTotalCount() == 0) continue;
+                allResponseTimes.add(responseTime);
+                allServiceTimes.add(serviceTimes.get(operation));
+                print(out, operation.key, responseTime, serviceTimes.get(operation), seconds);
+                if (hgrm != null) {
+                    try (var file = new PrintStream(hgrm + "-" + operation.key + ".hgrm")) {
+                        responseTime.outputPercentileDistribution(file, 1000.0);
+                    }
+                }
+            }
+            print(out, "all", allResponseTimes, allServiceTimes, seconds);
+            out.printf("errors: %d%n", errors);
+        }
+
+        private static void print(PrintStream out, String name, Histogram responseTime, Histogram serviceTime, double seconds) {
+            out.printf("%-9s %10d %10.1f | %s | %s%n", name, serviceTime.getTotalCount(), serviceTime.getTotalCount() / seconds,
+                    percentiles(responseTime), percentiles(serviceTime));
+        }
+
+        private static String percentiles(Histogram histogram) {
+            var builder = new StringBuilder();
+            for (var percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+                builder.append(String.format("%7.0f ", histogram.getValueAtPercentile(percentile) / 1e3));
+            }
+            return builder.append(String.format("%7.0f", histogram.getMaxValue() / 1e3)).toString();
+        }
+    }
+
+    /**
+     * Parses the {@code --name=value} arguments.
+     */
+    private static Map<String, String> parse(String[] args) {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses the weights of the operations, {@code operation=weight} separated by commas.
+     */
+    private static Map<Operation, Integer> mix(String mix) {
+        var weights = new EnumMap<Operation, Integer>(Operation.class);
+        for (var entry : mix.split(",")) {
+            var parts = entry.split("=");
+            var operation = Arrays.stream(Operation.values())
+                    .filter(value -> value.key.equals(parts[0].trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown operation: " + parts[0]));
+            var weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) throw new IllegalArgumentException("Weight must not be negative: " + entry);
+            if (weight > 0) weights.put(operation, weight);
+        }
+        return weights;
+    }
+}
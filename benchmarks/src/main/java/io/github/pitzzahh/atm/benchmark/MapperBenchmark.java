@@ -0,0 +1,69 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.atm.mapper.BulkDecryptingExtractor;
+import io.github.pitzzahh.atm.mapper.DecryptingRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import io.github.pitzzahh.atm.mapper.ClientMapper;
+import io.github.pitzzahh.atm.mapper.LoanMapper;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Loan;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures how many rows per second {@link ClientMapper} and {@link LoanMapper} map from a real result set,
+ * decrypting on the calling thread or in parallel with {@link BulkDecryptingExtractor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MapperBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    static final int ROWS = 10_000;
+
+    /**
+     * {@code ROW_MAPPER} decrypts every row on the calling thread, {@code BULK} decrypts batches on the common pool.
+     */
+    @Param({"ROW_MAPPER", "BULK"})
+    private String decryption;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedDatabase.start();
+        var dao = database.newDao();
+        var clients = Fixtures.clients(ROWS);
+        dao.saveAllClients().apply(clients);
+        for (int i = 0; i < ROWS; i++) dao.requestLoan().apply(Fixtures.loan(i, 1_000));
+        jdbcTemplate = new JdbcTemplate(database.getDataSource());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Client> mapClients() {
+        return query("SELECT * FROM clients", new ClientMapper());
+    }
+
+    @Benchmark
+    public List<Loan> mapLoans() {
+        return query("SELECT * FROM loans", new LoanMapper());
+    }
+
+    private <T> List<T> query(String query, DecryptingRowMapper<T> mapper) {
+        return "BULK".equals(decryption)
+                ? jdbcTemplate.query(query, new BulkDecryptingExtractor<>(mapper))
+                : jdbcTemplate.query(query, mapper);
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import io.github.pitzzahh.atm.entity.Client;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Compares saving clients one {@code INSERT} at a time against {@link InDatabase#saveAllClients()} batching.
+ * Scores are per row, rows per second is {@code 1 / score}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(SaveAllClientsBenchmark.ROWS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SaveAllClientsBenchmark {
+
+    static final int ROWS = 10_000;
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private EmbeddedDatabase database;
+    private InDatabase dao;
+    private List<Client> clients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedDatabase.start();
+        dao = database.newDao().setBatchSize(batchSize);
+        clients = Fixtures.clients(ROWS);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        database.truncate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public void saveClientInLoop() {
+        clients.forEach(client -> dao.saveClient().apply(client));
+    }
+
+    @Benchmark
+    public Status saveAllClients() {
+        return dao.saveAllClients().apply(clients);
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.pitzzahh.atm.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates ranks from {@code 1} to {@code n} following Zipf's law: rank {@code k} is chosen with a probability
+ * proportional to {@code 1 / k^exponent}. Exponent {@code 0} is uniform, around {@code 1} a few ranks get most of the samples.
+ * <p>Uses rejection-inversion sampling (Hormann and Derflinger, 1996), constant time and memory whatever the number of ranks.
+ * Instances are immutable, pass the random generator of the calling thread.</p>
+ */
+final class ZipfGenerator {
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    /**
+     * Creates a generator.
+     * @param n the number of ranks.
+     * @param exponent the exponent, zero or more.
+     * @throws IllegalArgumentException if there are no ranks or the exponent is negative.
+     */
+    ZipfGenerator(int n, double exponent) throws IllegalArgumentException {
+        if (n < 1) throw new IllegalArgumentException("Number of ranks must be at least 1");
+        if (exponent < 0) throw new IllegalArgumentException("Exponent must not be negative");
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * Gets the next rank.
+     * @param random the random generator.
+     * @return a rank from {@code 1} to {@code n}.
+     */
+    int next(SplittableRandom random) {
+        while (true) {
+            var u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            var x = hIntegralInverse(u);
+            var k = (int) (x + 0.5);
+            if (k < 1) k = 1;
+            else if (k > n) k = n;
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) return k;
+        }
+    }
+
+    /**
+     * The integral of {@link #h(double)}, {@code (x^(1 - exponent) - 1) / (1 - exponent)}, or {@code log(x)} for exponent 1.
+     */
+    private double hIntegral(double x) {
+        var logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        var t = x * (1 - exponent);
+        if (t < -1) t = -1;
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * {@code log(1 + x) / x}, with a series near zero where the division is not precise.
+     */
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * {@code (exp(x) - 1) / x}, with a series near zero where the division is not precise.
+     */
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,575 @@
+package io.github.pitzzahh.atm.cache;
+
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.dao.ObjLongFunction;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.function.ToLongFunction;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Caches the clients and the loans of each account read from another {@link AtmDAO}, usually {@code InDatabase},
+ * so that the lookups repeated during one ATM session do not query the database again.
+ * <p>A client or the loans of an account are read from the {@code AtmDAO} the first time they are needed
+ * and kept until they expire, are evicted because the cache is full, or are invalidated.
+ * Every operation that changes a client or a loan is called on the {@code AtmDAO} and then invalidates the cached
+ * client or loans, the next lookup reads them again. Operations that read every client or loan are not cached.</p>
+ * <p>Only changes made through this {@code CachingAtmDAO} invalidate the cache, changes made directly to the database
+ * are seen once the cached value expires. Use a short time to live when other applications change the database.</p>
+ * <p>The returned {@code Client} and {@code Loan} objects are copies, changing them does not change the cache.</p>
+ */
+public class CachingAtmDAO implements AtmDAO {
+
+    private final AtmDAO delegate;
+    private final LruCache<String, Client> clients;
+    private final LruCache<String, List<Loan>> loans;
+
+    /**
+     * Creates a cache of an {@code AtmDAO}.
+     * @param delegate the {@code AtmDAO} that keeps the data.
+     * @param maximumSize the maximum number of clients cached, and the maximum number of accounts whose loans are cached.
+     * @param timeToLive the time a client or the loans of an account are cached after they are read.
+     * @throws IllegalArgumentException if the maximum size is less than one or the time to live is not positive.
+     */
+    public CachingAtmDAO(AtmDAO delegate, int maximumSize, Duration timeToLive) throws IllegalArgumentException {
+        if (maximumSize < 1) throw new IllegalArgumentException("Maximum size must be at least 1");
+        if (timeToLive.isNegative() || timeToLive.isZero()) throw new IllegalArgumentException("Time to live must be positive");
+        this.delegate = Objects.requireNonNull(delegate, "AtmDAO must not be null");
+        this.clients = new LruCache<>(maximumSize, timeToLive.toNanos());
+        this.loans = new LruCache<>(maximumSize, timeToLive.toNanos());
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     * @return the number of hits.
+     */
+    public long hitCount() {
+        return clients.hitCount() + loans.hitCount();
+    }
+
+    /**
+     * Returns the number of lookups that were not cached or expired.
+     * @return the number of misses.
+     */
+    public long missCount() {
+        return clients.missCount() + loans.missCount();
+    }
+
+    /**
+     * Returns the number of clients and loans removed from the cache to make room for others.
+     * @return the number of evictions.
+     */
+    public long evictionCount() {
+        return clients.evictionCount() + loans.evictionCount();
+    }
+
+    /**
+     * Removes every client and loan from the cache, for example after the database was changed by another application.
+     */
+    public void invalidateAll() {
+        clients.invalidateAll();
+        loans.invalidateAll();
+    }
+
+    /**
+     * Function that accepts a {@code DataSource} object.
+     * Object needed to connect to the database, the cache is emptied after connecting.
+     * @return nothing, or {@code null} if the {@code AtmDAO} does not use a database.
+     * @throws RuntimeException if failed to connect to the database.
+     * @see Consumer
+     * @see DataSource
+     */
+    @Override
+    public Consumer<DataSource> setDataSource() throws RuntimeException {
+        var setDataSource = delegate.setDataSource();
+        if (setDataSource == null) return null;
+        return dataSource -> {
+            setDataSource.accept(dataSource);
+            invalidateAll();
+        };
+    }
+
+    /**
+     * Function that supplies a {@code Map<String, Client>}, read from the {@code AtmDAO} without the cache.
+     * <p>{@code String} - the key, the key is the account number of the client</p>
+     * <p>{@code Client} - the value, the value is the client object</p>
+     * @return a {@code Client} object
+     * @see Map
+     * @see Supplier
+     * @see Client
+     */
+    @Override
+    public Supplier<Map<String, Client>> getAllClients() {
+        return delegate.getAllClients();
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        return delegate.forEachClient();
+    }
+
+    /**
+     * Function that gets a page of clients, in the order of the {@code AtmDAO}.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return delegate.getClientsAfter();
+    }
+
+    /**
+     * Function that returns a {@code Optional<Client>} object based on the {@code String}
+     * that contains the account number. The client is read from the {@code AtmDAO} if it is not cached.
+     * <p>T - a {@code String} containing the account number to be search from the database.</p>
+     * <p>R - a {@code Optional<Client>} containing the result if the client is found or not.</p>
+     * @return a {@code Optional<Client>} object.
+     * @throws IllegalArgumentException if the account number does not belong to any client.
+     * @see Optional
+     * @see Function
+     * @see Client
+     */
+    @Override
+    public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
+        return accountNumber -> client(accountNumber).map(CachingAtmDAO::copy);
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * A cached client exists, other account numbers are checked by the {@code AtmDAO}.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return accountNumber -> clients.get(accountNumber) != null || delegate.doesClientExist().test(accountNumber);
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code Double} containing the savings of the client with the account number.
+     * @see Function
+     */
+    @Override
+    public Function<String, Double> getClientSavingsByAccountNumber() {
+        return accountNumber -> Money.toDouble(getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, read from the cached client.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() throws ClientNotFoundException {
+        return accountNumber -> client(accountNumber)
+                .orElseThrow(() -> new ClientNotFoundException(String.format("Client with account number [%s] does not exist", accountNumber)))
+                .savingsCents();
+    }
+
+    /**
+     * Function that removes a client in the database using the account number.
+     * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
+     * <p>R - the {@code Status} of the operation if {@link Status#SUCCESS} or {@link Status#ERROR}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Status
+     */
+    @Override
+    public Function<String, Status> removeClientByAccountNumber() {
+        return accountNumber -> invalidateClient(accountNumber, () -> delegate.removeClientByAccountNumber().apply(accountNumber));
+    }
+
+    /**
+     * Function that removes all the clients in the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllClients() {
+        return () -> {
+            try {
+                return delegate.removeAllClients().get();
+            } finally {
+                clients.invalidateAll();
+            }
+        };
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Boolean}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Boolean}, {@code true} if the client account should be locked, default is false.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
+        return (accountNumber, status) -> invalidateClient(accountNumber, () -> delegate.updateClientStatusByAccountNumber().apply(accountNumber, status));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Double}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     * @see Client
+     * @see Loan
+     */
+    @Override
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+        return (accountNumber, savings) -> invalidateClient(accountNumber, () -> delegate.updateClientSavingsByAccountNumber().apply(accountNumber, savings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return (accountNumber, savingsCents) -> invalidateClient(accountNumber, () -> delegate.updateClientSavingsInCentsByAccountNumber().apply(accountNumber, savingsCents));
+    }
+
+    /**
+     * Function that sets the savings of many clients.
+     * <p>{@code String} - the key, the account number of the client.</p>
+     * <p>{@code Long} - the value, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query, {@link Status#SUCCESS} if every client was updated, otherwise {@link Status#ERROR}.
+     * @see Function
+     * @see Map
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public Function<Map<String, Long>, Status> updateAllClientSavingsInCents() {
+        return savings -> {
+            try {
+                return delegate.updateAllClientSavingsInCents().apply(savings);
+            } finally {
+                for (var accountNumber : savings.keySet()) clients.invalidate(accountNumber);
+            }
+        };
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> invalidateClient(accountNumber, () -> delegate.depositInCentsByAccountNumber().apply(accountNumber, cents));
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> invalidateClient(accountNumber, () -> delegate.withdrawInCentsByAccountNumber().apply(accountNumber, cents));
+    }
+
+    /**
+     * Function that save a client to the database. The function takes a {@code Client} object,
+     * the object to be saved in the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Client, Status> saveClient() {
+        return client -> invalidateClient(client.accountNumber(), () -> delegate.saveClient().apply(client));
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Collection<Client>, Status> saveAllClients() {
+        return saved -> {
+            try {
+                return delegate.saveAllClients().apply(saved);
+            } finally {
+                for (var client : saved) clients.invalidate(client.accountNumber());
+            }
+        };
+    }
+
+    /**
+     * Function that submits a loan request.
+     * The Function takes a {@code Loan} object containing the loan information.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> requestLoan() {
+        return loan -> invalidateLoans(loan.accountNumber(), () -> delegate.requestLoan().apply(loan));
+    }
+
+    /**
+     * Function that returns a key value pair, a {@code Map<String, List<Loan>>} in particular, read from the {@code AtmDAO} without the cache.
+     * <p>K - is a {@code String} containing the key, the key is the account number of the client who requested a loan.</p>
+     * <p>V - is a {@code String} containing the value, the value is all the loans that the account requested. It is a {@code List<Loan>}</p>
+     * @return a {@code Map<String, List<Loan>>} a key value pair containing all the loans from the table in the database.
+     * @see Supplier
+     * @see Map
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Supplier<Map<String, List<Loan>>> getAllLoans() {
+        return delegate.getAllLoans();
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * The loans are read from the {@code AtmDAO} if they are not cached.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return accountNumber -> {
+            var accountLoans = new ArrayList<Loan>();
+            for (var loan : loans(accountNumber)) accountLoans.add(copy(loan));
+            return accountLoans;
+        };
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return delegate.forEachLoan();
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return delegate.getLoansAfter();
+    }
+
+    /**
+     * Function that gets the loan of a client using loan number and account number, from the cached loans of the account.
+     * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
+     * and the string containing the account number.
+     * @return an {@code Optional<Loan>} whether the loan exist or not.
+     * @see BiFunction
+     * @see Optional
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
+        return (loanNumber, accountNumber) -> loans(accountNumber)
+                .stream()
+                .filter(loan -> loan.loanNumber() == loanNumber)
+                .findFirst()
+                .map(CachingAtmDAO::copy);
+    }
+
+    /**
+     * Function that gets the latest loan count of a client and returns the count.
+     * The function takes a {@code String} containing the account number that holds a loan.
+     * @return a {@code Integer} containing the loan count of a client.
+     * @see Function
+     */
+    @Override
+    public Function<String, Integer> getLoanCount() {
+        return delegate.getLoanCount();
+    }
+
+    /**
+     * Function that approves a loan request, the loan is added to the savings of the client.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        return (loan, client) -> invalidateClient(client.accountNumber(), () -> invalidateLoans(loan.accountNumber(), () -> delegate.approveLoan().apply(loan, client)));
+    }
+
+    /**
+     * Function that declines a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> declineLoan() {
+        return loan -> invalidateLoans(loan.accountNumber(), () -> delegate.declineLoan().apply(loan));
+    }
+
+    /**
+     * Function that removes a loan.
+     * The function takes a {@code Loan} object containing the loan information to be removed.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> removeLoan() {
+        return loan -> invalidateLoans(loan.accountNumber(), () -> delegate.removeLoan().apply(loan));
+    }
+
+    /**
+     * Function that removes all the loans from the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllLoans() {
+        return () -> {
+            try {
+                return delegate.removeAllLoans().get();
+            } finally {
+                loans.invalidateAll();
+            }
+        };
+    }
+
+    /**
+     * Gets the cached client, or reads it from the {@code AtmDAO} and caches it.
+     * A client that does not exist is not cached.
+     */
+    private Optional<Client> client(String accountNumber) {
+        var cached = clients.get(accountNumber);
+        if (cached != null) return Optional.of(cached);
+        var version = clients.version(accountNumber);
+        var client = delegate.getClientByAccountNumber().apply(accountNumber);
+        client.ifPresent(value -> clients.put(accountNumber, value, version));
+        return client;
+    }
+
+    /**
+     * Gets the cached loans of an account, or reads them from the {@code AtmDAO} and caches them.
+     */
+    private List<Loan> loans(String accountNumber) {
+        var cached = loans.get(accountNumber);
+        if (cached != null) return cached;
+        var version = loans.version(accountNumber);
+        var accountLoans = new ArrayList<Loan>();
+        for (var loan : delegate.getLoansByAccountNumber().apply(accountNumber)) accountLoans.add(copy(loan));
+        var unmodifiable = Collections.unmodifiableList(accountLoans);
+        loans.put(accountNumber, unmodifiable, version);
+        return unmodifiable;
+    }
+
+    /**
+     * Calls an operation that changes a client, then removes the client from the cache even if the operation failed.
+     */
+    private Status invalidateClient(String accountNumber, Supplier<Status> operation) {
+        try {
+            return operation.get();
+        } finally {
+            clients.invalidate(accountNumber);
+        }
+    }
+
+    /**
+     * Calls an operation that changes the loans of an account, then removes the loans from the cache even if the operation failed.
+     */
+    private Status invalidateLoans(String accountNumber, Supplier<Status> operation) {
+        try {
+            return operation.get();
+        } finally {
+            loans.invalidate(accountNumber);
+        }
+    }
+
+    /**
+     * Copies a client without decrypting it, the copy decrypts the fields of the cached client when they are read.
+     */
+    private static Client copy(Client client) {
+        return Client.lazy(client.accountNumber(), client::pin, client::details, client.savingsCents(), client.isLocked());
+    }
+
+    private static Loan copy(Loan loan) {
+        var copy = new Loan(loan.loanNumber(), loan.accountNumber(), loan.dateOfLoan(), 0, loan.pending(), loan.isDeclined());
+        copy.setAmountCents(loan.amountCents());
+        return copy;
+    }
+
+}
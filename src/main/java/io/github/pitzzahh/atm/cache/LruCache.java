@@ -0,0 +1,161 @@
+package io.github.pitzzahh.atm.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, thread-safe cache whose entries expire after a time to live.
+ * <p>The cache is split in segments by the hash of the key, every segment is a {@code LinkedHashMap} in access order
+ * guarded by its own lock, and evicts its least recently used entry when it is full. Segments hold at least
+ * {@value #MIN_SEGMENT_SIZE} entries, so small caches have fewer segments and evict closer to the least recently used entry.</p>
+ * <p>Every segment has a version that is incremented when one of its keys is invalidated. A value loaded while
+ * a key of the segment was invalidated is not cached by {@link #put(Object, Object, long)}, so that a value read
+ * before a change is not cached after the change invalidated the key.</p>
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+final class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 64;
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long timeToLiveNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     * @param maximumSize the maximum number of entries.
+     * @param timeToLiveNanos the time an entry is kept after it is added, in nanoseconds.
+     */
+    @SuppressWarnings("unchecked")
+    LruCache(int maximumSize, long timeToLiveNanos) {
+        var count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maximumSize / MIN_SEGMENT_SIZE)));
+        this.segments = new Segment[count];
+        for (var i = 0; i < count; i++) segments[i] = new Segment<>(maximumSize / count + (i < maximumSize % count ? 1 : 0), evictions);
+        this.timeToLiveNanos = timeToLiveNanos;
+    }
+
+    /**
+     * Gets the value of a key, counting a hit or a miss.
+     * @param key the key.
+     * @return the value, or {@code null} if the key is not cached or its entry expired.
+     */
+    V get(K key) {
+        var segment = segment(key);
+        synchronized (segment) {
+            var entry = segment.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+                segment.remove(key);
+                entry = null;
+            }
+            (entry == null ? misses : hits).increment();
+            return entry == null ? null : entry.value;
+        }
+    }
+
+    /**
+     * Gets the version of the segment of a key, call it before loading the value of the key.
+     * @param key the key.
+     * @return the version to pass to {@link #put(Object, Object, long)}.
+     */
+    long version(K key) {
+        var segment = segment(key);
+        synchronized (segment) {
+            return segment.version;
+        }
+    }
+
+    /**
+     * Adds a loaded value, unless a key of its segment was invalidated since the value was loaded.
+     * @param key the key.
+     * @param value the value.
+     * @param version the version returned by {@link #version(Object)} before the value was loaded.
+     */
+    void put(K key, V value, long version) {
+        var segment = segment(key);
+        synchronized (segment) {
+            if (segment.version != version) return;
+            segment.put(key, new Entry<>(value, System.nanoTime() + timeToLiveNanos));
+        }
+    }
+
+    /**
+     * Removes a key, values of the key being loaded are not cached.
+     * @param key the key.
+     */
+    void invalidate(K key) {
+        var segment = segment(key);
+        synchronized (segment) {
+            segment.version++;
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Removes every key, values being loaded are not cached.
+     */
+    void invalidateAll() {
+        for (var segment : segments) {
+            synchronized (segment) {
+                segment.version++;
+                segment.clear();
+            }
+        }
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Segment<K, V> segment(K key) {
+        var hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * One segment of the cache, must be used while holding its monitor.
+     */
+    private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+        private final int capacity;
+        private final LongAdder evictions;
+        private long version;
+
+        private Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+}
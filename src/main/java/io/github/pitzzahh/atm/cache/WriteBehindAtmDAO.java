@@ -0,0 +1,773 @@
+package io.github.pitzzahh.atm.cache;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import io.github.pitzzahh.atm.dao.ObjLongFunction;
+import java.util.concurrent.Semaphore;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.function.ToLongFunction;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Changes the savings of the clients of another {@link AtmDAO}, usually {@code InDatabase}, in memory and writes them
+ * to the {@code AtmDAO} later, in batches.
+ * <p>Updates, deposits and withdrawals are applied to a balance kept in memory and return immediately. The balance is
+ * read from the {@code AtmDAO} the first time it is changed, repeated changes to the same account are coalesced, only the
+ * latest balance is written. A background thread writes the changed balances with
+ * {@link AtmDAO#updateAllClientSavingsInCents()} once there are {@code batchSize} changed accounts, or every
+ * {@code flushInterval}, whichever comes first.</p>
+ * <p>At most {@code maxPending} accounts may have changes that are not written, a change to another account waits
+ * until a batch is written. If writing a batch throws an exception the balances are kept and written with the next batch;
+ * clients that the {@code AtmDAO} could not update, because they were removed, are dropped from the batch and logged.</p>
+ * <p>Operations that read the savings return the balance kept in memory. Operations that read every client write the
+ * pending changes first. Operations that save or remove clients, or approve a loan, wait for the changes in progress
+ * and write every pending change first. The other operations are called on the {@code AtmDAO} directly.</p>
+ * <p>{@link #close()} writes the pending changes, it is also called when the JVM shuts down normally. Changes that are
+ * acknowledged but not written yet are lost if the JVM crashes or is killed, use {@code DurableAtmDAO} when every
+ * acknowledged change must survive a crash.</p>
+ */
+public class WriteBehindAtmDAO implements AtmDAO, AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(WriteBehindAtmDAO.class.getName());
+
+    private final AtmDAO delegate;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Semaphore permits;
+    private final Map<String, Balance> balances = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock exclusive = new ReentrantReadWriteLock();
+    private final ReentrantLock flushing = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasChanges = lock.newCondition();
+    private final Thread flusher;
+    private final Thread shutdownHook;
+
+    private List<Balance> pending = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates a {@code WriteBehindAtmDAO} and starts its background thread.
+     * @param delegate the {@code AtmDAO} that keeps the data.
+     * @param batchSize the number of changed accounts that are written together.
+     * @param flushInterval the longest time between two batches.
+     * @param maxPending the maximum number of accounts with changes that are not written, at least the batch size.
+     * @throws IllegalArgumentException if the batch size is less than one, the flush interval is not positive,
+     * or the maximum number of pending accounts is less than the batch size.
+     */
+    public WriteBehindAtmDAO(AtmDAO delegate, int batchSize, Duration flushInterval, int maxPending) throws IllegalArgumentException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        if (flushInterval.isNegative() || flushInterval.isZero()) throw new IllegalArgumentException("Flush interval must be positive");
+        if (maxPending < batchSize) throw new IllegalArgumentException("Maximum pending accounts must be at least the batch size");
+        this.delegate = Objects.requireNonNull(delegate, "AtmDAO must not be null");
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.permits = new Semaphore(maxPending);
+        this.flusher = new Thread(this::run, "write-behind-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.shutdownHook = new Thread(() -> {
+            try {
+                close();
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Pending savings were not written at shutdown", e);
+            }
+        }, "write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Returns the number of accounts whose changes are not written yet.
+     * @return the number of pending accounts.
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending change to the {@code AtmDAO} now, in batches of {@code batchSize} accounts.
+     * @throws RuntimeException the exception thrown by the {@code AtmDAO}, the changes that were not written are kept.
+     */
+    public void flush() throws RuntimeException {
+        flushing.lock();
+        try {
+            List<Balance> batch;
+            lock.lock();
+            try {
+                batch = pending;
+                pending = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            for (int from = 0; from < batch.size(); from += batchSize) {
+                try {
+                    write(batch.subList(from, Math.min(from + batchSize, batch.size())));
+                } catch (RuntimeException e) {
+                    for (var balance : batch.subList(Math.min(from + batchSize, batch.size()), batch.size())) enqueue(balance);
+                    throw e;
+                }
+            }
+        } finally {
+            flushing.unlock();
+        }
+    }
+
+    /**
+     * Stops the background thread and writes the pending changes, changes made after closing throw an {@code IllegalStateException}.
+     * @throws IllegalStateException if some changes could not be written.
+     */
+    @Override
+    public void close() throws IllegalStateException {
+        lock.lock();
+        try {
+            closed = true;
+            hasChanges.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // the JVM is shutting down, the hook is running or has run
+            }
+        }
+        exclusive.writeLock().lock();
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException(pendingCount() + " accounts have savings that were not written", e);
+        } finally {
+            exclusive.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function that accepts a {@code DataSource} object.
+     * Object needed to connect to the database, the pending changes are written to the previous database first.
+     * @return nothing, or {@code null} if the {@code AtmDAO} does not use a database.
+     * @throws RuntimeException if failed to connect to the database.
+     * @see Consumer
+     * @see DataSource
+     */
+    @Override
+    public Consumer<DataSource> setDataSource() throws RuntimeException {
+        var setDataSource = delegate.setDataSource();
+        if (setDataSource == null) return null;
+        return dataSource -> exclusive(() -> {
+            setDataSource.accept(dataSource);
+            return SUCCESS;
+        });
+    }
+
+    /**
+     * Function that supplies a {@code Map<String, Client>}, the pending changes are written first.
+     * <p>{@code String} - the key, the key is the account number of the client</p>
+     * <p>{@code Client} - the value, the value is the client object</p>
+     * @return a {@code Client} object
+     * @see Map
+     * @see Supplier
+     * @see Client
+     */
+    @Override
+    public Supplier<Map<String, Client>> getAllClients() {
+        return () -> {
+            flush();
+            return delegate.getAllClients().get();
+        };
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time, the pending changes are written first.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        return action -> {
+            flush();
+            delegate.forEachClient().accept(action);
+        };
+    }
+
+    /**
+     * Function that gets a page of clients, in the order of the {@code AtmDAO}, the pending changes are written first.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return (after, size) -> {
+            flush();
+            return delegate.getClientsAfter().apply(after, size);
+        };
+    }
+
+    /**
+     * Function that returns a {@code Optional<Client>} object based on the {@code String}
+     * that contains the account number. The client has the savings kept in memory if they are not written yet.
+     * <p>T - a {@code String} containing the account number to be search from the database.</p>
+     * <p>R - a {@code Optional<Client>} containing the result if the client is found or not.</p>
+     * @return a {@code Optional<Client>} object.
+     * @throws IllegalArgumentException if the account number does not belong to any client.
+     * @see Optional
+     * @see Function
+     * @see Client
+     */
+    @Override
+    public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
+        return accountNumber -> delegate.getClientByAccountNumber().apply(accountNumber).map(client -> {
+            var savingsCents = pendingSavings(accountNumber);
+            if (savingsCents.isEmpty()) return client;
+            return Client.lazy(client.accountNumber(), client::pin, client::details, savingsCents.getAsLong(), client.isLocked());
+        });
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return delegate.doesClientExist();
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code Double} containing the savings of the client with the account number.
+     * @see Function
+     */
+    @Override
+    public Function<String, Double> getClientSavingsByAccountNumber() {
+        return accountNumber -> Money.toDouble(getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, the savings kept in memory if they are not written yet.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() throws ClientNotFoundException {
+        return accountNumber -> {
+            var savingsCents = pendingSavings(accountNumber);
+            return savingsCents.isPresent() ? savingsCents.getAsLong() : delegate.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+        };
+    }
+
+    /**
+     * Function that removes a client in the database using the account number, the pending changes are written first.
+     * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
+     * <p>R - the {@code Status} of the operation if {@link Status#SUCCESS} or {@link Status#ERROR}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Status
+     */
+    @Override
+    public Function<String, Status> removeClientByAccountNumber() {
+        return accountNumber -> exclusive(() -> delegate.removeClientByAccountNumber().apply(accountNumber));
+    }
+
+    /**
+     * Function that removes all the clients in the database, the pending changes are written first.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllClients() {
+        return () -> exclusive(() -> delegate.removeAllClients().get());
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Boolean}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Boolean}, {@code true} if the client account should be locked, default is false.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
+        return delegate.updateClientStatusByAccountNumber();
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Double}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     * @see Client
+     * @see Loan
+     */
+    @Override
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+        return (accountNumber, savings) -> updateClientSavingsInCentsByAccountNumber().apply(accountNumber, Money.toCents(savings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * <p>The savings are set in memory and written later.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @throws IllegalStateException if this {@code WriteBehindAtmDAO} is closed.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() throws ClientNotFoundException, IllegalStateException {
+        return (accountNumber, savingsCents) -> change(accountNumber, balance -> {
+            balance.cents = savingsCents;
+            return SUCCESS;
+        });
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * <p>The savings are changed in memory and written later.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @throws IllegalStateException if this {@code WriteBehindAtmDAO} is closed.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException, ClientNotFoundException, IllegalStateException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to deposit must be positive");
+            return change(accountNumber, balance -> {
+                balance.cents = Math.addExact(balance.cents, cents);
+                return SUCCESS;
+            });
+        };
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * <p>The savings are checked and changed in memory and written later.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @throws IllegalStateException if this {@code WriteBehindAtmDAO} is closed.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException, ClientNotFoundException, IllegalStateException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to withdraw must be positive");
+            return change(accountNumber, balance -> {
+                if (balance.cents < cents) return CANNOT_PERFORM_OPERATION;
+                balance.cents -= cents;
+                return SUCCESS;
+            });
+        };
+    }
+
+    /**
+     * Function that save a client to the database, the pending changes are written first.
+     * The function takes a {@code Client} object, the object to be saved in the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Client, Status> saveClient() {
+        return client -> exclusive(() -> delegate.saveClient().apply(client));
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table, the pending changes are written first.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Collection<Client>, Status> saveAllClients() {
+        return clients -> exclusive(() -> delegate.saveAllClients().apply(clients));
+    }
+
+    /**
+     * Function that submits a loan request.
+     * The Function takes a {@code Loan} object containing the loan information.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> requestLoan() {
+        return delegate.requestLoan();
+    }
+
+    /**
+     * Function that returns a key value pair, a {@code Map<String, List<Loan>>} in particular.
+     * <p>K - is a {@code String} containing the key, the key is the account number of the client who requested a loan.</p>
+     * <p>V - is a {@code String} containing the value, the value is all the loans that the account requested. It is a {@code List<Loan>}</p>
+     * @return a {@code Map<String, List<Loan>>} a key value pair containing all the loans from the table in the database.
+     * @see Supplier
+     * @see Map
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Supplier<Map<String, List<Loan>>> getAllLoans() {
+        return delegate.getAllLoans();
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return delegate.getLoansByAccountNumber();
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return delegate.forEachLoan();
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return delegate.getLoansAfter();
+    }
+
+    /**
+     * Function that gets the loan of a client using loan number and account number.
+     * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
+     * and the string containing the account number.
+     * @return an {@code Optional<Loan>} whether the loan exist or not.
+     * @see BiFunction
+     * @see Optional
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
+        return delegate.getLoanByLoanNumberAndAccountNumber();
+    }
+
+    /**
+     * Function that gets the latest loan count of a client and returns the count.
+     * The function takes a {@code String} containing the account number that holds a loan.
+     * @return a {@code Integer} containing the loan count of a client.
+     * @see Function
+     */
+    @Override
+    public Function<String, Integer> getLoanCount() {
+        return delegate.getLoanCount();
+    }
+
+    /**
+     * Function that approves a loan request, the loan is added to the savings of the client.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * The pending changes are written first.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        return (loan, client) -> exclusive(() -> delegate.approveLoan().apply(loan, client));
+    }
+
+    /**
+     * Function that declines a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> declineLoan() {
+        return delegate.declineLoan();
+    }
+
+    /**
+     * Function that removes a loan.
+     * The function takes a {@code Loan} object containing the loan information to be removed.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> removeLoan() {
+        return delegate.removeLoan();
+    }
+
+    /**
+     * Function that removes all the loans from the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllLoans() {
+        return delegate.removeAllLoans();
+    }
+
+    /**
+     * Changes the balance of an account in memory, reading it from the {@code AtmDAO} first if needed.
+     * <p>A permit is taken before the change, it is kept by an account that was not changed before and released
+     * when the account is written, otherwise it is released at once. A balance that is not changed and not being
+     * written is dropped, only the balances with pending changes are kept in memory.</p>
+     */
+    private Status change(String accountNumber, Function<Balance, Status> change) {
+        permits.acquireUninterruptibly();
+        var keepPermit = false;
+        exclusive.readLock().lock();
+        try {
+            if (closed) throw new IllegalStateException("Write-behind AtmDAO is closed");
+            while (true) {
+                var balance = balances.computeIfAbsent(accountNumber, Balance::new);
+                synchronized (balance) {
+                    if (balance.retired) continue;
+                    if (!balance.loaded) {
+                        try {
+                            balance.cents = delegate.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+                            balance.loaded = true;
+                        } catch (RuntimeException e) {
+                            retire(balance);
+                            throw e;
+                        }
+                    }
+                    var status = change.apply(balance);
+                    if (status == SUCCESS && !balance.dirty) {
+                        balance.dirty = true;
+                        keepPermit = true;
+                        enqueue(balance);
+                    } else if (!balance.dirty && !balance.writing) {
+                        retire(balance);
+                    }
+                    return status;
+                }
+            }
+        } finally {
+            exclusive.readLock().unlock();
+            if (!keepPermit) permits.release();
+        }
+    }
+
+    /**
+     * Writes a batch of balances, then drops the balances that were not changed again while they were written.
+     * Must be called while holding the flushing lock.
+     */
+    private void write(List<Balance> batch) {
+        var savings = new LinkedHashMap<String, Long>(batch.size() * 2);
+        for (var balance : batch) {
+            synchronized (balance) {
+                savings.put(balance.accountNumber, balance.cents);
+                balance.dirty = false;
+                balance.writing = true;
+            }
+        }
+        Status status;
+        try {
+            status = delegate.updateAllClientSavingsInCents().apply(savings);
+        } catch (RuntimeException e) {
+            for (var balance : batch) requeue(balance);
+            throw e;
+        }
+        if (status != SUCCESS) {
+            LOGGER.log(System.Logger.Level.WARNING, "Some of the savings of " + savings.size() + " clients were not written, the clients do not exist");
+        }
+        for (var balance : batch) {
+            synchronized (balance) {
+                balance.writing = false;
+                if (!balance.dirty) retire(balance);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Marks a balance that was not written as changed again, keeping its permit, unless it was changed again
+     * while it was written and is already queued with another permit.
+     */
+    private void requeue(Balance balance) {
+        synchronized (balance) {
+            balance.writing = false;
+            if (balance.dirty) {
+                permits.release();
+                return;
+            }
+            balance.dirty = true;
+            enqueue(balance);
+        }
+    }
+
+    /**
+     * Adds a changed balance to the pending balances, waking up the background thread once a batch is full.
+     */
+    private void enqueue(Balance balance) {
+        lock.lock();
+        try {
+            pending.add(balance);
+            if (pending.size() >= batchSize) hasChanges.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a balance, the next change of the account reads it from the {@code AtmDAO} again.
+     * Must be called while holding the monitor of the balance.
+     */
+    private void retire(Balance balance) {
+        balance.retired = true;
+        balances.remove(balance.accountNumber, balance);
+    }
+
+    /**
+     * Gets the balance of an account kept in memory, if it has changes that are not written yet.
+     */
+    private OptionalLong pendingSavings(String accountNumber) {
+        var balance = balances.get(accountNumber);
+        if (balance == null) return OptionalLong.empty();
+        synchronized (balance) {
+            return balance.loaded && !balance.retired ? OptionalLong.of(balance.cents) : OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Calls an operation after the changes in progress are done and every pending change is written,
+     * no balance is changed until the operation returns.
+     */
+    private Status exclusive(Supplier<Status> operation) {
+        exclusive.writeLock().lock();
+        try {
+            flush();
+            return operation.get();
+        } finally {
+            exclusive.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The background thread, writes the pending balances once a batch is full or the flush interval passed.
+     */
+    private void run() {
+        lock.lock();
+        try {
+            while (!closed) {
+                var deadline = System.nanoTime() + flushIntervalNanos;
+                var wait = flushIntervalNanos;
+                while (!closed && pending.size() < batchSize && wait > 0) {
+                    hasChanges.awaitNanos(wait);
+                    wait = deadline - System.nanoTime();
+                }
+                if (closed) return;
+                lock.unlock();
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Writing the pending savings failed, retrying with the next batch", e);
+                } finally {
+                    lock.lock();
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Write-behind flusher was interrupted, pending savings are written on close");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The savings of an account kept in memory, guarded by its monitor.
+     */
+    private static final class Balance {
+
+        private final String accountNumber;
+        private long cents;
+        private boolean loaded;
+        private boolean dirty;
+        private boolean writing;
+        private boolean retired;
+
+        private Balance(String accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+    }
+
+}
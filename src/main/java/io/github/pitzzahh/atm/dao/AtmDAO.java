@@ -3,16 +3,20 @@ package io.github.pitzzahh.atm.dao;
 import java.util.Map;
 import java.util.List;
 import java.util.Optional;
+import java.util.Comparator;
 import javax.sql.DataSource;
 import java.util.Collection;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.function.BiFunction;
 import io.github.pitzzahh.atm.entity.Loan;
 import io.github.pitzzahh.atm.entity.Client;
 import io.github.pitzzahh.atm.entity.Message;
+import io.github.pitzzahh.atm.entity.Money;
 import io.github.pitzzahh.atm.service.AtmService;
 import io.github.pitzzahh.util.utilities.classes.enums.Status;
 
@@ -47,6 +51,44 @@ public interface AtmDAO {
      */
     Supplier<Map<String, Client>> getAllClients();
 
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * <p>The default implementation gets all the clients using {@link #getAllClients()},
+     * implementations should not keep more than a bounded number of clients in memory.</p>
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    default Consumer<Consumer<Client>> forEachClient() {
+        return action -> getAllClients().get().values().forEach(action);
+    }
+
+    /**
+     * Function that gets a page of clients, ordered by account number.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * <p>The order of the account numbers is decided by the implementation, but it is the same for every page.
+     * The default implementation gets all the clients using {@link #getAllClients()},
+     * implementations should only get the clients of the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    default BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return (accountNumber, limit) -> getAllClients()
+                .get()
+                .values()
+                .stream()
+                .filter(client -> accountNumber == null || client.accountNumber().compareTo(accountNumber) > 0)
+                .sorted(Comparator.comparing(Client::accountNumber))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Function that returns a {@code Optional<Client>} object based on the {@code String}
      * that contains the account number.
@@ -60,6 +102,18 @@ public interface AtmDAO {
      */
     Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException;
 
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * <p>The default implementation gets all the clients using {@link #getAllClients()},
+     * implementations should only look up the account number.</p>
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    default Predicate<String> doesClientExist() {
+        return accountNumber -> getAllClients().get().containsKey(accountNumber);
+    }
+
     /**
      * Function that accepts a {@code String} containing the account number.
      * The account number will be used to search for the clients savings.
@@ -68,6 +122,19 @@ public interface AtmDAO {
      */
     Function<String, Double> getClientSavingsByAccountNumber();
 
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without boxing the savings.
+     * <p>The default implementation converts {@link #getClientSavingsByAccountNumber()},
+     * implementations should read the cents.</p>
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @see ToLongFunction
+     * @see Money
+     */
+    default ToLongFunction<String> getClientSavingsInCentsByAccountNumber() {
+        return accountNumber -> Money.toCents(getClientSavingsByAccountNumber().apply(accountNumber));
+    }
+
     /**
      * Function that removes a client in the database using the account number.
      * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
@@ -106,6 +173,85 @@ public interface AtmDAO {
      */
     BiFunction<String, Double, Status> updateClientSavingsByAccountNumber();
 
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * <p>The default implementation converts the cents for {@link #updateClientSavingsByAccountNumber()},
+     * implementations should store the cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    default ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return (accountNumber, savingsCents) -> updateClientSavingsByAccountNumber().apply(accountNumber, Money.toDouble(savingsCents));
+    }
+
+    /**
+     * Function that sets the savings of many clients.
+     * <p>{@code String} - the key, the account number of the client.</p>
+     * <p>{@code Long} - the value, the new savings balance of the client in cents.</p>
+     * <p>The default implementation calls {@link #updateClientSavingsInCentsByAccountNumber()} for every client,
+     * implementations should update the clients in batches.</p>
+     * @return a {@code Status} of the query, {@link Status#SUCCESS} if every client was updated, otherwise {@link Status#ERROR}.
+     * @see Function
+     * @see Map
+     * @see Status
+     * @see Money
+     */
+    default Function<Map<String, Long>, Status> updateAllClientSavingsInCents() {
+        return savings -> {
+            var status = Status.SUCCESS;
+            for (var entry : savings.entrySet()) {
+                if (updateClientSavingsInCentsByAccountNumber().apply(entry.getKey(), entry.getValue()) != Status.SUCCESS) status = Status.ERROR;
+            }
+            return status;
+        };
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * <p>The default implementation reads the savings and then updates them, it is not atomic,
+     * implementations should add the amount atomically.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    default ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to deposit must be positive");
+            var savings = getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+            return updateClientSavingsInCentsByAccountNumber().apply(accountNumber, Money.add(savings, cents));
+        };
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * <p>The default implementation reads the savings and then updates them, it is not atomic,
+     * implementations should subtract the amount atomically.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS}, {@link Status#ERROR},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    default ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to withdraw must be positive");
+            var savings = getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+            if (savings < cents) return Status.CANNOT_PERFORM_OPERATION;
+            return updateClientSavingsInCentsByAccountNumber().apply(accountNumber, savings - cents);
+        };
+    }
+
     /**
      * Function that save a client to the database. The function takes a {@code Client} object,
      * the object to be saved in the database table.
@@ -148,6 +294,65 @@ public interface AtmDAO {
      */
     Supplier<Map<String, List<Loan>>> getAllLoans();
 
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * <p>The default implementation gets all the loans using {@link #getAllLoans()},
+     * implementations should only get the loans of the account.</p>
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    default Function<String, List<Loan>> getLoansByAccountNumber() {
+        return accountNumber -> getAllLoans()
+                .get()
+                .getOrDefault(accountNumber, List.of())
+                .stream()
+                .sorted(Comparator.comparingInt(Loan::loanNumber))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * <p>The default implementation gets all the loans using {@link #getAllLoans()},
+     * implementations should not keep more than a bounded number of loans in memory.</p>
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    default Consumer<Consumer<Loan>> forEachLoan() {
+        return action -> getAllLoans().get().values().forEach(loans -> loans.forEach(action));
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * <p>The order of the account numbers is decided by the implementation, but it is the same for every page.
+     * The default implementation gets all the loans using {@link #getAllLoans()},
+     * implementations should only get the loans of the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    default BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        var order = Comparator.comparing(Loan::accountNumber).thenComparingInt(Loan::loanNumber);
+        return (last, limit) -> getAllLoans()
+                .get()
+                .values()
+                .stream()
+                .flatMap(List::stream)
+                .filter(loan -> last == null || order.compare(loan, last) > 0)
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Function that gets the loan of a client using loan number and account number.
      * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
@@ -209,29 +414,25 @@ public interface AtmDAO {
      * Function that gets the message of the loan request of a client to the database.
      * The Function takes a {@code String}.
      * The {@code String} contains the account number of the client.
-     * @return a {@code Message} object containing the message of the loan.
+     * Only the loans of the client are read, using {@link #getLoansByAccountNumber()}.
+     * @return a {@code Map<String, List<Message>>} with one key, the account number, and the messages of the approved or declined loans of the client.
+     * @throws IllegalStateException if the client has no approved or declined loans.
      * @see Function
      * @see Map
      * @see List
      * @see Message
      */
-    default Function<String, Map<String, List<Message>>> getMessage() {
+    default Function<String, Map<String, List<Message>>> getMessage() throws IllegalStateException {
         return accountNumber -> {
             var client = getClientByAccountNumber().apply(accountNumber).orElse(null);
-            var check = getAllLoans()
-                    .get()
-                    .values()
-                    .stream()
-                    .flatMap(Collection::stream)
-                    .allMatch(a -> a.accountNumber().equals(accountNumber) && ( a.pending() && !a.isDeclined() ));
-            if (check) throw new IllegalStateException("THERE ARE NO MESSAGES AT THE MOMENT");
-            return getAllLoans().get()
-                    .values()
+            var messages = getLoansByAccountNumber()
+                    .apply(accountNumber)
                     .stream()
-                    .flatMap(Collection::stream)
-                    .filter(l -> !l.pending() || l.isDeclined())
+                    .filter(loan -> !loan.pending() || loan.isDeclined())
                     .map(loan -> new Message(loan, client, loan.pending() && loan.isDeclined()))
-                    .collect(Collectors.groupingBy(message -> message.loan().accountNumber()));
+                    .collect(Collectors.toList());
+            if (messages.isEmpty()) throw new IllegalStateException("THERE ARE NO MESSAGES AT THE MOMENT");
+            return Map.of(accountNumber, messages);
         };
     }
 }
\ No newline at end of file
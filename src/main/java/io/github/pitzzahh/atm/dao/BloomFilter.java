@@ -0,0 +1,92 @@
+package io.github.pitzzahh.atm.dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of account numbers, used to answer that a client does not exist without querying the database.
+ * <p>{@link #mightContain(String)} never returns {@code false} for an account number that was added,
+ * it may return {@code true} for an account number that was never added.
+ * Account numbers cannot be removed.</p>
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long size;
+    private final int hashes;
+
+    /**
+     * Creates a Bloom filter sized for the expected number of account numbers.
+     * @param expectedInsertions the number of account numbers expected to be added.
+     * @param falsePositiveProbability the probability of {@link #mightContain(String)} returning {@code true}
+     *                                 for an account number that was never added, between {@code 0} and {@code 1}.
+     * @throws IllegalArgumentException if the arguments are out of range.
+     */
+    BloomFilter(int expectedInsertions, double falsePositiveProbability) throws IllegalArgumentException {
+        if (expectedInsertions < 1) throw new IllegalArgumentException("Expected insertions must be at least 1");
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) throw new IllegalArgumentException("False positive probability must be between 0 and 1");
+        var ln2 = Math.log(2);
+        var optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        var words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.size = words * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) this.size / expectedInsertions * ln2));
+    }
+
+    /**
+     * Adds an account number to the filter.
+     * @param accountNumber the account number.
+     */
+    void add(String accountNumber) {
+        var hash1 = hash(accountNumber);
+        var hash2 = mix(hash1);
+        for (int i = 0; i < hashes; i++) {
+            var bit = Math.floorMod(hash1 + i * hash2, size);
+            var word = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            var current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Checks if an account number might have been added to the filter.
+     * @param accountNumber the account number.
+     * @return {@code false} if the account number was never added, {@code true} if it might have been added.
+     */
+    boolean mightContain(String accountNumber) {
+        var hash1 = hash(accountNumber);
+        var hash2 = mix(hash1);
+        for (int i = 0; i < hashes; i++) {
+            var bit = Math.floorMod(hash1 + i * hash2, size);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters of the account number.
+     */
+    private static long hash(String accountNumber) {
+        var hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            hash ^= accountNumber.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Second, independent hash derived from the first one (MurmurHash3 finalizer), always odd.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash | 1;
+    }
+
+}
@@ -0,0 +1,640 @@
+package io.github.pitzzahh.atm.dao;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import io.github.pitzzahh.atm.exceptions.ClientAlreadyExistException;
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import static java.lang.String.format;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.*;
+
+/**
+ * Thread-safe version of {@link InMemory}, saves the data in memory.
+ * <p>Clients and loans are kept in concurrent maps, every read-modify-write of an account
+ * is guarded by one of a fixed set of locks selected by the hash of the account number (lock striping).
+ * Operations on accounts that map to different stripes never block each other.
+ * Savings are updated with compare-and-set on the {@code Client}, so deposits and withdrawals never take a lock.</p>
+ * <p>The clients and loans returned by the getters are copies, changing them does not change the stored ones.</p>
+ * @see InMemory
+ */
+public class ConcurrentInMemory implements AtmDAO {
+
+    /**
+     * Stores the {@code Client} objects.
+     * The {@code Map<String, Client>} object.
+     */
+    private final Map<String, Client> CLIENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Stores the account numbers of the clients in order, only used to get the pages of clients.
+     * The {@code NavigableSet<String>} object, updated while holding the stripe of the account.
+     */
+    private final NavigableSet<String> CLIENT_KEYS = new ConcurrentSkipListSet<>();
+
+    /**
+     * Stores the {@code Loan} objects of every account, ordered by loan number.
+     * The {@code Map<String, NavigableMap<Integer, Loan>>} object, only accessed while holding the stripe of the account.
+     */
+    private final Map<String, NavigableMap<Integer, Loan>> LOANS = new ConcurrentHashMap<>();
+
+    /**
+     * Stores the account numbers that requested loans in order, only used to get the pages of loans.
+     * The {@code NavigableSet<String>} object, updated while holding the stripe of the account.
+     */
+    private final NavigableSet<String> LOAN_KEYS = new ConcurrentSkipListSet<>();
+
+    /**
+     * Stores the last loan number given to every account.
+     * The {@code Map<String, AtomicInteger>} object, the key is the account number.
+     */
+    private final Map<String, AtomicInteger> LOAN_NUMBERS = new ConcurrentHashMap<>();
+
+    /**
+     * The lock stripes, the length is always a power of two.
+     */
+    private final ReentrantLock[] LOCKS;
+
+    /**
+     * Creates a {@code ConcurrentInMemory} with four lock stripes per available processor.
+     */
+    public ConcurrentInMemory() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates a {@code ConcurrentInMemory} with the given number of lock stripes.
+     * @param stripes the number of lock stripes, rounded up to the next power of two.
+     * @throws IllegalArgumentException if the number of stripes is less than one.
+     */
+    public ConcurrentInMemory(int stripes) throws IllegalArgumentException {
+        if (stripes < 1) throw new IllegalArgumentException("Number of stripes must be at least 1");
+        var size = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.LOCKS = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) LOCKS[i] = new ReentrantLock();
+    }
+
+    /**
+     * Function that supplies a {@code Map<String, Client>}.
+     * <p>{@code String} - the key, the key is the account number of the client</p>
+     * <p>{@code Client} - the value, the value is the client object</p>
+     * @return a snapshot of the clients, the clients are copies of the stored ones.
+     * @see Map
+     * @see Supplier
+     * @see Client
+     */
+    @Override
+    public Supplier<Map<String, Client>> getAllClients() {
+        return () -> {
+            var result = new HashMap<String, Client>();
+            CLIENTS.forEach((accountNumber, client) -> result.put(accountNumber, copy(client)));
+            return result;
+        };
+    }
+
+    /**
+     * Function that gets a page of clients, ordered by account number.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * <p>Clients saved or removed while the page is read may or may not be in the page.</p>
+     * @return a {@code List<Client>} containing copies of the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return (accountNumber, limit) -> {
+            var page = new ArrayList<Client>(Math.min(limit, 1_024));
+            for (var key : accountNumber == null ? CLIENT_KEYS : CLIENT_KEYS.tailSet(accountNumber, false)) {
+                if (page.size() == limit) break;
+                var client = CLIENTS.get(key);
+                if (client != null) page.add(copy(client));
+            }
+            return page;
+        };
+    }
+
+    /**
+     * Function that returns a {@code Optional<Client>} object based on the {@code String}
+     * that contains the account number.
+     * <p>T - a {@code String} containing the account number to be search from the database.</p>
+     * <p>R - a {@code Optional<Client>} containing the result if the client is found or not.</p>
+     * @return a {@code Optional<Client>} object, the client is a copy of the stored one.
+     * @throws IllegalArgumentException if the account number does not belong to any client.
+     * @see Optional
+     * @see Function
+     * @see Client
+     */
+    @Override
+    public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
+        return accountNumber -> Optional.of(copy(getClient(accountNumber)));
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return CLIENTS::containsKey;
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code Double} containing the savings of the client with the account number.
+     * @see Function
+     */
+    @Override
+    public Function<String, Double> getClientSavingsByAccountNumber() {
+        return accountNumber -> Money.toDouble(getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without boxing the savings.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() {
+        return accountNumber -> getClient(accountNumber).savingsCents();
+    }
+
+    /**
+     * Function that removes a client in the database using the account number.
+     * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
+     * <p>R - the {@code Status} of the operation if {@link Status#SUCCESS} or {@link Status#ERROR}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Status
+     */
+    @Override
+    public Function<String, Status> removeClientByAccountNumber() {
+        return accountNumber -> withLock(accountNumber, () -> {
+            var removed = CLIENTS.remove(accountNumber);
+            if (removed == null) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+            CLIENT_KEYS.remove(accountNumber);
+            return SUCCESS;
+        });
+    }
+
+    /**
+     * Function that removes all the clients in the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllClients() {
+        return () -> {
+            CLIENTS.clear();
+            CLIENT_KEYS.clear();
+            return CLIENTS.isEmpty() ? SUCCESS : ERROR;
+        };
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Boolean}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Boolean}, {@code true} if the client account should be locked, default is false.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
+        return (accountNumber, status) -> withLock(accountNumber, () -> {
+            var client = getClient(accountNumber);
+            client.setLocked(status);
+            return client.isLocked() == status ? SUCCESS : ERROR;
+        });
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Double}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+        return (accountNumber, savings) -> updateClientSavingsInCentsByAccountNumber().apply(accountNumber, Money.toCents(savings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return (accountNumber, savingsCents) -> {
+            getClient(accountNumber).setSavingsCents(savingsCents);
+            return SUCCESS;
+        };
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * <p>The amount is added with a compare-and-set loop on the savings of the client, without a lock.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to deposit must be positive");
+            getClient(accountNumber).addSavingsCents(cents);
+            return SUCCESS;
+        };
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * <p>The amount is subtracted with a compare-and-set loop on the savings of the client, without a lock.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to withdraw must be positive");
+            return getClient(accountNumber).withdrawSavingsCents(cents) ? SUCCESS : CANNOT_PERFORM_OPERATION;
+        };
+    }
+
+    /**
+     * Function that save a client to the database. The function takes a {@code Client} object,
+     * the object to be saved in the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws ClientAlreadyExistException if a client with the same account number already exist.
+     * @see Function
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Client, Status> saveClient() throws ClientAlreadyExistException {
+        return client -> withLock(client.accountNumber(), () -> {
+            var existing = CLIENTS.putIfAbsent(client.accountNumber(), client);
+            if (existing != null) throw new ClientAlreadyExistException(format("Client with account number [%s] already exist", client.accountNumber()));
+            CLIENT_KEYS.add(client.accountNumber());
+            return SUCCESS;
+        });
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Collection<Client>, Status> saveAllClients() {
+        return clients -> {
+            clients.forEach(client -> withLock(client.accountNumber(), () -> {
+                CLIENTS.put(client.accountNumber(), client);
+                return CLIENT_KEYS.add(client.accountNumber());
+            }));
+            return SUCCESS;
+        };
+    }
+
+    /**
+     * Function that submits a loan request.
+     * The Function takes a {@code Loan} object containing the loan information.
+     * The loan number of the loan is set to the next loan number of the account.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> requestLoan() {
+        return loan -> withLock(loan.accountNumber(), () -> {
+            loan.setLoanNumber(LOAN_NUMBERS.computeIfAbsent(loan.accountNumber(), k -> new AtomicInteger()).incrementAndGet());
+            var loans = LOANS.computeIfAbsent(loan.accountNumber(), k -> new TreeMap<>());
+            LOAN_KEYS.add(loan.accountNumber());
+            return loans.putIfAbsent(loan.loanNumber(), loan) == null ? SUCCESS : ERROR;
+        });
+    }
+
+    /**
+     * Function that returns a key value pair, a {@code Map<String, List<Loan>>} in particular.
+     * <p>K - is a {@code String} containing the key, the key is the account number of the client who requested a loan.</p>
+     * <p>V - is a {@code String} containing the value, the value is all the loans that the account requested. It is a {@code List<Loan>}</p>
+     * @return a {@code Map<String, List<Loan>>} a key value pair containing a snapshot of all the loans.
+     * @see Supplier
+     * @see Map
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Supplier<Map<String, List<Loan>>> getAllLoans() {
+        return () -> {
+            var result = new HashMap<String, List<Loan>>();
+            LOANS.keySet().forEach(accountNumber -> withLock(accountNumber, () -> {
+                var loans = LOANS.get(accountNumber);
+                if (loans != null && !loans.isEmpty()) result.put(accountNumber, copy(loans.values()));
+                return null;
+            }));
+            return result;
+        };
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing a snapshot of the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return accountNumber -> withLock(accountNumber, () -> {
+            var loans = LOANS.get(accountNumber);
+            return loans == null ? List.<Loan>of() : copy(loans.values());
+        });
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * <p>The loans of every account are read while holding the stripe of the account.</p>
+     * @return a {@code List<Loan>} containing copies of the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return (last, limit) -> {
+            var page = new ArrayList<Loan>(Math.min(limit, 1_024));
+            for (var accountNumber : last == null ? LOAN_KEYS : LOAN_KEYS.tailSet(last.accountNumber(), true)) {
+                if (page.size() == limit) break;
+                withLock(accountNumber, () -> {
+                    var loans = LOANS.get(accountNumber);
+                    if (loans == null) return null;
+                    var tail = last != null && accountNumber.equals(last.accountNumber()) ? loans.tailMap(last.loanNumber(), false) : loans;
+                    for (var loan : tail.values()) {
+                        if (page.size() == limit) break;
+                        page.add(copy(loan));
+                    }
+                    return null;
+                });
+            }
+            return page;
+        };
+    }
+
+    /**
+     * Function that gets the loan of a client using loan number and account number.
+     * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
+     * and the string containing the account number.
+     * @return an {@code Optional<Loan>} whether the loan exist or not, the loan is a copy of the stored one.
+     * @see BiFunction
+     * @see Optional
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
+        return (loanNumber, accountNumber) -> withLock(accountNumber, () -> Optional.ofNullable(getLoan(loanNumber, accountNumber)).map(ConcurrentInMemory::copy));
+    }
+
+    /**
+     * Function that gets the latest loan count of a client and returns the count.
+     * The function takes a {@code String} containing the account number that holds a loan.
+     * @return a {@code Integer} containing the loan count of a client.
+     * @see Function
+     */
+    @Override
+    public Function<String, Integer> getLoanCount() {
+        return accountNumber -> {
+            var last = LOAN_NUMBERS.get(accountNumber);
+            return last == null ? 1 : last.get() + 1;
+        };
+    }
+
+    /**
+     * Function that approves a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * Crediting the client and marking the loan as approved happens atomically,
+     * a loan that is no longer pending or is declined cannot be approved again.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS}, {@link Status#ERROR}
+     * if the loan does not exist, or {@link Status#CANNOT_PERFORM_OPERATION} if the loan is already resolved.
+     * @see BiFunction
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        return (loan, c) -> withLocks(loan.accountNumber(), c.accountNumber(), () -> {
+            var stored = getLoan(loan.loanNumber(), loan.accountNumber());
+            if (stored == null) return ERROR;
+            if (!stored.pending() || stored.isDeclined()) return CANNOT_PERFORM_OPERATION;
+            var client = getClient(c.accountNumber());
+            client.addSavingsCents(stored.amountCents());
+            stored.setPending(false);
+            return SUCCESS;
+        });
+    }
+
+    /**
+     * Function that declines a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> declineLoan() {
+        return loan -> withLock(loan.accountNumber(), () -> {
+            var stored = getLoan(loan.loanNumber(), loan.accountNumber());
+            if (stored == null) return ERROR;
+            stored.setDeclined(true);
+            return SUCCESS;
+        });
+    }
+
+    /**
+     * Function that removes a loan.
+     * The function takes a {@code Loan} object containing the loan information to be removed.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> removeLoan() {
+        return loan -> withLock(loan.accountNumber(), () -> {
+            var loans = LOANS.get(loan.accountNumber());
+            return loans != null && loans.remove(loan.loanNumber()) != null ? SUCCESS : ERROR;
+        });
+    }
+
+    /**
+     * Function that removes all the loans from the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllLoans() {
+        return () -> {
+            LOANS.clear();
+            LOAN_KEYS.clear();
+            LOAN_NUMBERS.clear();
+            return LOANS.isEmpty() ? SUCCESS : ERROR;
+        };
+    }
+
+    /**
+     * Gets the client with the account number.
+     * @param accountNumber the account number of the client.
+     * @return the {@code Client}.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     */
+    private Client getClient(String accountNumber) throws ClientNotFoundException {
+        var client = CLIENTS.get(accountNumber);
+        if (client == null) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+        return client;
+    }
+
+    /**
+     * Gets a loan, must be called while holding the stripe of the account.
+     * @param loanNumber the loan number.
+     * @param accountNumber the account number that made the loan.
+     * @return the {@code Loan}, or {@code null} if it does not exist.
+     */
+    private Loan getLoan(int loanNumber, String accountNumber) {
+        var loans = LOANS.get(accountNumber);
+        return loans == null ? null : loans.get(loanNumber);
+    }
+
+    /**
+     * Copies a client, the copy reads the pin and the details of the stored client when they are read.
+     * @param client the stored client.
+     * @return the copy.
+     */
+    private static Client copy(Client client) {
+        return Client.lazy(client.accountNumber(), client::pin, client::details, client.savingsCents(), client.isLocked());
+    }
+
+    /**
+     * Copies a loan.
+     * @param loan the stored loan.
+     * @return the copy.
+     */
+    private static Loan copy(Loan loan) {
+        var copy = new Loan(loan.loanNumber(), loan.accountNumber(), loan.dateOfLoan(), 0, loan.pending(), loan.isDeclined());
+        copy.setAmountCents(loan.amountCents());
+        return copy;
+    }
+
+    /**
+     * Copies the loans of an account, must be called while holding the stripe of the account.
+     * @param loans the stored loans.
+     * @return a {@code List<Loan>} of copies, in the same order.
+     */
+    private static List<Loan> copy(Collection<Loan> loans) {
+        var copies = new ArrayList<Loan>(loans.size());
+        for (var loan : loans) copies.add(copy(loan));
+        return copies;
+    }
+
+    /**
+     * Gets the index of the stripe that guards the account.
+     * @param accountNumber the account number.
+     * @return the index of the stripe in {@link #LOCKS}.
+     */
+    private int stripe(String accountNumber) {
+        var hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCKS.length - 1);
+    }
+
+    /**
+     * Runs an action while holding the stripe of the account.
+     * @param accountNumber the account number.
+     * @param action the action to run.
+     * @param <T> the result type of the action.
+     * @return the result of the action.
+     */
+    private <T> T withLock(String accountNumber, Supplier<T> action) {
+        var lock = LOCKS[stripe(accountNumber)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the stripes of two accounts.
+     * The stripes are always acquired in index order so that two callers cannot deadlock.
+     * @param first the first account number.
+     * @param second the second account number.
+     * @param action the action to run.
+     * @param <T> the result type of the action.
+     * @return the result of the action.
+     */
+    private <T> T withLocks(String first, String second, Supplier<T> action) {
+        var a = stripe(first);
+        var b = stripe(second);
+        if (a == b) return withLock(first, action);
+        var outer = LOCKS[Math.min(a, b)];
+        var inner = LOCKS[Math.max(a, b)];
+        outer.lock();
+        try {
+            inner.lock();
+            try {
+                return action.get();
+            } finally {
+                inner.unlock();
+            }
+        } finally {
+            outer.unlock();
+        }
+    }
+
+}
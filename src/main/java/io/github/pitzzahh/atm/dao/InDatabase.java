@@ -3,19 +3,34 @@ package io.github.pitzzahh.atm.dao;
 import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
 import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
 import io.github.pitzzahh.util.utilities.classes.enums.Status;
-import io.github.pitzzahh.util.utilities.SecurityUtil;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.JdbcTemplate;
 import io.github.pitzzahh.atm.mapper.ClientMapper;
+import io.github.pitzzahh.atm.mapper.BulkDecryptingExtractor;
+import io.github.pitzzahh.atm.mapper.DecryptingRowMapper;
 import io.github.pitzzahh.atm.mapper.LoanMapper;
+import io.github.pitzzahh.atm.security.Crypto;
+import io.github.pitzzahh.atm.security.BlindIndex;
+import io.github.pitzzahh.atm.entity.Message;
 import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
 import io.github.pitzzahh.atm.entity.Loan;
 import static java.lang.String.format;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
+import java.util.function.Predicate;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.concurrent.ForkJoinPool;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.ResultSet;
 import javax.sql.DataSource;
 import java.util.*;
 
@@ -26,26 +41,113 @@ public class InDatabase implements AtmDAO {
 
     private DataSource dataSource;
     private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+    private int batchSize = 1_000;
+    private int fetchSize = 1_000;
+    private BlindIndex blindIndex;
+    private ForkJoinPool decryptionPool;
+    private volatile BloomFilter bloomFilter;
+    private volatile boolean bloomFilterReady;
+
+    /**
+     * Sets the number of rows sent to the database in one batch by {@link #saveAllClients()}, default is 1000.
+     * @param batchSize the number of rows per batch.
+     * @return this {@code InDatabase} object.
+     * @throws IllegalArgumentException if the batch size is less than one.
+     */
+    public InDatabase setBatchSize(int batchSize) throws IllegalArgumentException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at a time by {@link #forEachClient()} and {@link #forEachLoan()}, default is 1000.
+     * @param fetchSize the number of rows per fetch.
+     * @return this {@code InDatabase} object.
+     * @throws IllegalArgumentException if the fetch size is less than one.
+     */
+    public InDatabase setFetchSize(int fetchSize) throws IllegalArgumentException {
+        if (fetchSize < 1) throw new IllegalArgumentException("Fetch size must be at least 1");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Decrypts the rows of {@link #getAllClients()}, {@link #getAllLoans()}, {@link #getClientsAfter()}
+     * and {@link #getLoansAfter()} in parallel on the pool, while the next rows are read from the database.
+     * By default, the rows are decrypted one at a time on the calling thread.
+     * @param decryptionPool the pool that decrypts the rows, {@code null} to decrypt on the calling thread.
+     * @return this {@code InDatabase} object.
+     * @see BulkDecryptingExtractor
+     */
+    public InDatabase setDecryptionPool(ForkJoinPool decryptionPool) {
+        this.decryptionPool = decryptionPool;
+        return this;
+    }
+
+    /**
+     * Sets the blind index used to look up clients and loans by account number,
+     * if it is not set before the {@code DataSource}, {@link BlindIndex#fromEnvironment()} is used.
+     * Every query matches the {@code account_hash} column instead of the encrypted account number.
+     * @param blindIndex the blind index.
+     * @return this {@code InDatabase} object.
+     * @see BlindIndex
+     */
+    public InDatabase setBlindIndex(BlindIndex blindIndex) {
+        this.blindIndex = Objects.requireNonNull(blindIndex, "Blind index must not be null");
+        return this;
+    }
+
+    /**
+     * Keeps the account numbers of the clients in a Bloom filter, so that {@link #doesClientExist()}
+     * answers for most account numbers that do not exist without querying the database.
+     * The account numbers of the existing clients are loaded once, and clients saved through this object are added.
+     * <p>Only use the filter if every client is saved through this object,
+     * a client saved by another application will be reported as not existing.</p>
+     * @param expectedClients the number of clients expected in the table.
+     * @param falsePositiveProbability the probability that a missing client still needs a query, example: {@code 0.01}.
+     * @return this {@code InDatabase} object.
+     * @throws IllegalStateException if no {@code DataSource} is set.
+     * @throws IllegalArgumentException if the arguments are out of range.
+     */
+    public InDatabase enableBloomFilter(int expectedClients, double falsePositiveProbability) throws IllegalStateException, IllegalArgumentException {
+        if (jdbcTemplate == null) throw new IllegalStateException("No DataSource provided, set the DataSource before enabling the bloom filter.");
+        var filter = new BloomFilter(expectedClients, falsePositiveProbability);
+        this.bloomFilterReady = false;
+        this.bloomFilter = filter;
+        jdbcTemplate.query("SELECT account_number FROM clients", (RowCallbackHandler) resultSet -> filter.add(Crypto.decrypt(resultSet.getString("account_number"))));
+        this.bloomFilterReady = true;
+        return this;
+    }
 
     /**
      * Function that accepts a {@code DataSource} object.
      * Object needed to connect to the database.
+     * If no blind index is set, the key of the blind index is read using {@link BlindIndex#fromEnvironment()}.
      * @return nothing
      * @throws RuntimeException if failed to connect to the database.
+     * @throws IllegalStateException if no blind index is set and no blind index key is configured.
      * @see Consumer
      * @see DataSource
      */
     @Override
-    public Consumer<DataSource> setDataSource() throws RuntimeException {
+    public Consumer<DataSource> setDataSource() throws RuntimeException, IllegalStateException {
         return source -> {
             if (source == null) throw new UnsupportedOperationException("No DataSource provided, to use in memory database use InMemory class as DAO and do not provide a datasource.");
-            try {
+            if (blindIndex == null) this.blindIndex = BlindIndex.fromEnvironment();
+            try (var connection = source.getConnection()) {
                 this.dataSource = source;
-                this.dataSource.getConnection().beginRequest();
+                connection.beginRequest();
+                connection.endRequest();
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
             this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            this.readOnlyTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            this.readOnlyTransactionTemplate.setReadOnly(true);
         };
     }
 
@@ -60,9 +162,51 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Supplier<Map<String, Client>> getAllClients() {
-        return () -> jdbcTemplate.query("SELECT * FROM clients", new ClientMapper())
-                .stream()
-                .collect(Collectors.toMap(Client::accountNumber, Function.identity()));
+        return () -> {
+            var clients = new HashMap<String, Client>();
+            if (decryptionPool != null) query("SELECT * FROM clients", new ClientMapper()).forEach(client -> clients.put(client.accountNumber(), client));
+            else forEachClient().accept(client -> clients.put(client.accountNumber(), client));
+            return clients;
+        };
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * <p>The rows are fetched {@link #setFetchSize(int) fetch size} rows at a time in a read only transaction,
+     * the connection is held until every client is passed to the action.</p>
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        final var QUERY = "SELECT * FROM clients";
+        return action -> {
+            var mapper = new ClientMapper();
+            stream(QUERY, resultSet -> action.accept(mapper.mapRow(resultSet, resultSet.getRow())));
+        };
+    }
+
+    /**
+     * Function that gets a page of clients, ordered by account number.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * <p>The clients are ordered by the blind index of the account number, so the pages are read from the {@code clients_account_hash} index.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        final var FIRST_PAGE = "SELECT * FROM clients ORDER BY account_hash LIMIT ?";
+        final var NEXT_PAGE = "SELECT * FROM clients WHERE account_hash > ? ORDER BY account_hash LIMIT ?";
+        return (accountNumber, limit) -> accountNumber == null
+                ? query(FIRST_PAGE, new ClientMapper(), limit)
+                : query(NEXT_PAGE, new ClientMapper(), blindIndex.hash(accountNumber), limit);
     }
 
     /**
@@ -78,16 +222,33 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
-        final var QUERY = "SELECT * FROM clients WHERE account_number = ?";
+        final var QUERY = "SELECT * FROM clients WHERE account_hash = ?";
         return an -> {
             try {
-                return Optional.ofNullable(jdbcTemplate.queryForObject(QUERY, new ClientMapper(), SecurityUtil.encrypt(an)));
+                return Optional.ofNullable(jdbcTemplate.queryForObject(QUERY, new ClientMapper(), blindIndex.hash(an)));
             } catch (RuntimeException ignored) {
                 throw new ClientNotFoundException(format("CLIENT WITH ACCOUNT NUMBER: %s DOES NOT EXIST", an));
             }
         };
     }
 
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * The account number is looked up using the {@code clients_account_hash} index, or answered by the Bloom filter if enabled and the client does not exist.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        final var QUERY = "SELECT EXISTS (SELECT 1 FROM clients WHERE account_hash = ?)";
+        return accountNumber -> {
+            var filter = this.bloomFilter;
+            if (filter != null && bloomFilterReady && !filter.mightContain(accountNumber)) return false;
+            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(QUERY, Boolean.class, blindIndex.hash(accountNumber)));
+        };
+    }
+
     /**
      * Function that accepts a {@code String} containing the account number.
      * The account number will be used to search for the clients savings.
@@ -96,13 +257,25 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<String, Double> getClientSavingsByAccountNumber() {
-        final var QUERY = "SELECT savings FROM clients WHERE account_number = ?";
-        return accountNumber -> Double.parseDouble(
-                SecurityUtil.decrypt(
+        return accountNumber -> Money.toDouble(getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without boxing the savings.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() {
+        final var QUERY = "SELECT savings FROM clients WHERE account_hash = ?";
+        return accountNumber -> Money.decode(
+                Crypto.decrypt(
                         Objects.requireNonNull(jdbcTemplate.queryForObject(
                                 QUERY,
                                 String.class,
-                                SecurityUtil.encrypt(accountNumber)
+                                blindIndex.hash(accountNumber)
                         ))
                 )
         );
@@ -118,7 +291,7 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<String, Status> removeClientByAccountNumber() {
-        return an -> jdbcTemplate.update("DELETE FROM clients WHERE account_number = ?", SecurityUtil.encrypt(an)) > 0 ? SUCCESS : ERROR;
+        return an -> jdbcTemplate.update("DELETE FROM clients WHERE account_hash = ?", blindIndex.hash(an)) > 0 ? SUCCESS : ERROR;
     }
 
     /**
@@ -142,8 +315,8 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
-        final var QUERY = "UPDATE clients SET isLocked = ? WHERE account_number = ?";
-        return (an, status) -> jdbcTemplate.update(QUERY, status, SecurityUtil.encrypt(an)) > 0 ? SUCCESS : ERROR;
+        final var QUERY = "UPDATE clients SET isLocked = ? WHERE account_hash = ?";
+        return (an, status) -> jdbcTemplate.update(QUERY, status, blindIndex.hash(an)) > 0 ? SUCCESS : ERROR;
     }
 
     /**
@@ -156,14 +329,120 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
-        final var QUERY = "UPDATE clients SET savings = ? WHERE account_number = ?";
-        return (an, newSavings) -> jdbcTemplate.update(
+        return (an, newSavings) -> updateClientSavingsInCentsByAccountNumber().apply(an, Money.toCents(newSavings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        final var QUERY = "UPDATE clients SET savings = ? WHERE account_hash = ?";
+        return (an, savingsCents) -> jdbcTemplate.update(
                 QUERY,
-                SecurityUtil.encrypt(String.valueOf(newSavings)),
-                SecurityUtil.encrypt(an)
+                Crypto.encrypt(Money.encode(savingsCents)),
+                blindIndex.hash(an)
         ) > 0 ? SUCCESS : ERROR;
     }
 
+    /**
+     * Function that sets the savings of many clients.
+     * <p>{@code String} - the key, the account number of the client.</p>
+     * <p>{@code Long} - the value, the new savings balance of the client in cents.</p>
+     * <p>The clients are updated using JDBC batches of {@link #setBatchSize(int)} rows in one transaction.
+     * Clients that do not exist are skipped, the other clients are still updated.</p>
+     * @return a {@code Status} of the query, {@link Status#SUCCESS} if every client was updated, otherwise {@link Status#ERROR}.
+     * @see Function
+     * @see Map
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public Function<Map<String, Long>, Status> updateAllClientSavingsInCents() {
+        final var QUERY = "UPDATE clients SET savings = ? WHERE account_hash = ?";
+        return savings -> {
+            var rows = new ArrayList<Object[]>(savings.size());
+            savings.forEach((an, savingsCents) -> rows.add(new Object[] {Crypto.encrypt(Money.encode(savingsCents)), blindIndex.hash(an)}));
+            var updated = transactionTemplate.execute(transaction -> {
+                var all = true;
+                for (int from = 0; from < rows.size(); from += batchSize) {
+                    for (var count : jdbcTemplate.batchUpdate(QUERY, rows.subList(from, Math.min(from + batchSize, rows.size())))) {
+                        if (count == 0) all = false;
+                    }
+                }
+                return all;
+            });
+            return Boolean.TRUE.equals(updated) ? SUCCESS : ERROR;
+        };
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * <p>The row of the client is locked while the savings are read and updated in one transaction.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to deposit must be positive");
+            return addSavings(accountNumber, cents);
+        };
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * <p>The row of the client is locked while the savings are read and updated in one transaction.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS}, {@link Status#ERROR},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to withdraw must be positive");
+            return addSavings(accountNumber, -cents);
+        };
+    }
+
+    /**
+     * Adds cents to the savings of a client in one transaction, locking the row of the client.
+     * @param accountNumber the account number of the client.
+     * @param cents the cents to add, negative to subtract.
+     * @return {@link Status#SUCCESS}, {@link Status#ERROR} if the client does not exist,
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if subtracting would make the savings negative.
+     */
+    private Status addSavings(String accountNumber, long cents) {
+        final var LOCK = "SELECT savings FROM clients WHERE account_hash = ? FOR UPDATE";
+        final var UPDATE = "UPDATE clients SET savings = ? WHERE account_hash = ?";
+        return transactionTemplate.execute(transaction -> {
+            var accountHash = blindIndex.hash(accountNumber);
+            var savings = jdbcTemplate.query(LOCK, (resultSet, row) -> Money.decode(Crypto.decrypt(resultSet.getString("savings"))), accountHash);
+            if (savings.isEmpty()) return ERROR;
+            var updated = Money.add(savings.get(0), cents);
+            if (cents < 0 && updated < 0) return CANNOT_PERFORM_OPERATION;
+            var saved = jdbcTemplate.update(UPDATE, Crypto.encrypt(Money.encode(updated)), accountHash) > 0;
+            if (!saved) transaction.setRollbackOnly();
+            return saved ? SUCCESS : ERROR;
+        });
+    }
+
     /**
      * Function that save a client to the database. The function takes a {@code Client} object,
      * the object to be saved in the database table.
@@ -174,25 +453,31 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<Client, Status> saveClient() {
-        final var QUERY = "INSERT INTO clients (account_number, pin, first_name, last_name, gender, address, date_of_birth, savings, isLocked)" +
-                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        return client -> jdbcTemplate.update(
-                QUERY,
-                SecurityUtil.encrypt(client.accountNumber()),
-                SecurityUtil.encrypt(client.pin()),
-                SecurityUtil.encrypt(client.details().getFirstName()),
-                SecurityUtil.encrypt(client.details().getLastName()),
-                client.details().getGender().toString(),
-                SecurityUtil.encrypt(client.details().getAddress()),
-                client.details().getBirthDate(),
-                SecurityUtil.encrypt(String.valueOf(client.savings())),
-                client.isLocked()
-        ) > 0 ? SUCCESS : ERROR;
+        final var QUERY = "INSERT INTO clients (account_number, account_hash, pin, first_name, last_name, gender, address, date_of_birth, savings, isLocked)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return client -> {
+            addToBloomFilter(client.accountNumber());
+            return jdbcTemplate.update(
+                    QUERY,
+                    Crypto.encrypt(client.accountNumber()),
+                    blindIndex.hash(client.accountNumber()),
+                    Crypto.encrypt(client.pin()),
+                    Crypto.encrypt(client.details().getFirstName()),
+                    Crypto.encrypt(client.details().getLastName()),
+                    client.details().getGender().toString(),
+                    Crypto.encrypt(client.details().getAddress()),
+                    client.details().getBirthDate(),
+                    Crypto.encrypt(Money.encode(client.savingsCents())),
+                    client.isLocked()
+            ) > 0 ? SUCCESS : ERROR;
+        };
     }
 
     /**
      * Function that saves a {@code Collection<Client} to the database table.
+     * The clients are inserted using JDBC batches in one transaction, if any client fails to be saved none of the clients are saved.
      * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see #saveAllClientsInBatch()
      * @see Function
      * @see Collection
      * @see Client
@@ -200,30 +485,123 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<Collection<Client>, Status> saveAllClients() {
-        final var QUERY = "INSERT INTO clients (account_number, pin, first_name, last_name, gender, address, date_of_birth, savings, isLocked)" +
-                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return clients -> saveAllClientsInBatch()
+                .apply(clients)
+                .values()
+                .stream()
+                .allMatch(SUCCESS::equals) ? SUCCESS : ERROR;
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table and returns the status of every client.
+     * The clients are inserted using JDBC batches of {@link #setBatchSize(int)} rows in one transaction.
+     * If a batch fails, its rows are inserted again one at a time after rolling back to a savepoint, to find the client that failed.
+     * <p>{@code String} - the key, the account number of the client.</p>
+     * <p>{@code Status} - the value, {@link Status#SUCCESS} if the client is saved, {@link Status#ERROR} if the client
+     * that made the transaction fail, or {@link Status#CANNOT_PERFORM_OPERATION} if the client was not saved because another client failed.</p>
+     * @return a {@code Map<String, Status>} in the same order as the clients.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    public Function<Collection<Client>, Map<String, Status>> saveAllClientsInBatch() {
+        final var QUERY = "INSERT INTO clients (account_number, account_hash, pin, first_name, last_name, gender, address, date_of_birth, savings, isLocked)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         return clients -> {
-            clients.forEach(
-                        client -> jdbcTemplate.update(
-                                QUERY,
-                                SecurityUtil.encrypt(client.accountNumber()),
-                                SecurityUtil.encrypt(client.pin()),
-                                SecurityUtil.encrypt(client.details().getFirstName()),
-                                SecurityUtil.encrypt(client.details().getLastName()),
-                                client.details().getGender().toString(),
-                                SecurityUtil.encrypt(client.details().getAddress()),
-                                client.details().getBirthDate(),
-                                SecurityUtil.encrypt(String.valueOf(client.savings())),
-                                client.isLocked()
-                        )
-                    );
-            return SUCCESS;
+            var rows = List.copyOf(clients);
+            rows.forEach(client -> addToBloomFilter(client.accountNumber()));
+            var failed = new HashSet<String>();
+            var committed = transactionTemplate.execute(transaction -> {
+                for (int from = 0; from < rows.size(); from += batchSize) {
+                    var batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                    var savepoint = transaction.createSavepoint();
+                    try {
+                        jdbcTemplate.batchUpdate(QUERY, new BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                                setClient(statement, batch.get(i));
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return batch.size();
+                            }
+                        });
+                    } catch (DataAccessException e) {
+                        transaction.rollbackToSavepoint(savepoint);
+                        failed.add(batch.get(failedRow(QUERY, batch)).accountNumber());
+                        transaction.setRollbackOnly();
+                        return false;
+                    }
+                    transaction.releaseSavepoint(savepoint);
+                }
+                return true;
+            });
+            var result = new LinkedHashMap<String, Status>();
+            rows.forEach(client -> result.put(
+                    client.accountNumber(),
+                    failed.contains(client.accountNumber()) ? ERROR : Boolean.TRUE.equals(committed) ? SUCCESS : CANNOT_PERFORM_OPERATION
+            ));
+            return result;
         };
     }
 
+    /**
+     * Adds an account number to the Bloom filter if it is enabled.
+     * Called before the client is inserted, so that the filter never reports a saved client as missing.
+     * @param accountNumber the account number.
+     */
+    private void addToBloomFilter(String accountNumber) {
+        var filter = this.bloomFilter;
+        if (filter != null) filter.add(accountNumber);
+    }
+
+    /**
+     * Finds the row of a batch that made the batch fail, must be called after rolling back to a savepoint taken before the batch.
+     * The update counts of a {@code BatchUpdateException} cannot be used, the translated exception no longer holds it,
+     * and PostgreSQL marks every row of a batch as failed when the batch runs inside a transaction.
+     * The rows are inserted again one at a time, the first row that fails is the one that made the batch fail.
+     * @param query the insert statement of the batch.
+     * @param batch the rows of the batch.
+     * @return the index of the failed row in the batch, {@code 0} if every row is inserted.
+     */
+    private int failedRow(String query, List<Client> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            var client = batch.get(i);
+            try {
+                jdbcTemplate.update(query, statement -> setClient(statement, client));
+            } catch (DataAccessException e) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the values of a client to an {@code INSERT INTO clients} statement.
+     * @param statement the statement.
+     * @param client the client to be inserted.
+     * @throws SQLException if a value cannot be set.
+     */
+    private void setClient(PreparedStatement statement, Client client) throws SQLException {
+        statement.setString(1, Crypto.encrypt(client.accountNumber()));
+        statement.setBytes(2, blindIndex.hash(client.accountNumber()));
+        statement.setString(3, Crypto.encrypt(client.pin()));
+        statement.setString(4, Crypto.encrypt(client.details().getFirstName()));
+        statement.setString(5, Crypto.encrypt(client.details().getLastName()));
+        statement.setString(6, client.details().getGender().toString());
+        statement.setString(7, Crypto.encrypt(client.details().getAddress()));
+        statement.setObject(8, client.details().getBirthDate());
+        statement.setString(9, Crypto.encrypt(Money.encode(client.savingsCents())));
+        statement.setBoolean(10, client.isLocked());
+    }
+
     /**
      * Function that submits a loan request.
      * The Function takes a {@code Loan} object containing the loan information.
+     * The next loan number of the account is taken from the {@code loan_sequences} table
+     * and the loan is inserted in the same statement, the loan number is then set to the {@code Loan} object.
      * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
      * @see Function
      * @see Loan
@@ -231,16 +609,31 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<Loan, Status> requestLoan() {
-        final var QUERY = "INSERT INTO loans(loan_number, account_number, date_of_loan, amount, pending, declined) VALUES(?, ?, ?, ?, ?, ?)";
-        return loan ->  jdbcTemplate.update(
-                QUERY,
-                getLoanCount().apply(loan.accountNumber()),
-                SecurityUtil.encrypt(loan.accountNumber()),
-                loan.dateOfLoan(),
-                SecurityUtil.encrypt(String.valueOf(loan.amount())),
-                SecurityUtil.encrypt(String.valueOf(loan.pending())),
-                SecurityUtil.encrypt(String.valueOf(loan.isDeclined()))
-        ) > 0 ? SUCCESS : ERROR;
+        final var QUERY = "WITH next AS (" +
+                " INSERT INTO loan_sequences (account_hash, last_loan_number) VALUES (?, 1)" +
+                " ON CONFLICT (account_hash) DO UPDATE SET last_loan_number = loan_sequences.last_loan_number + 1" +
+                " RETURNING last_loan_number" +
+                ")" +
+                " INSERT INTO loans(loan_number, account_number, account_hash, date_of_loan, amount, pending, declined)" +
+                " SELECT last_loan_number, ?, ?, ?, ?, ?, ? FROM next" +
+                " RETURNING loan_number";
+        return loan -> {
+            var accountHash = blindIndex.hash(loan.accountNumber());
+            var loanNumber = jdbcTemplate.queryForObject(
+                    QUERY,
+                    Integer.class,
+                    accountHash,
+                    Crypto.encrypt(loan.accountNumber()),
+                    accountHash,
+                    loan.dateOfLoan(),
+                    Crypto.encrypt(Money.encode(loan.amountCents())),
+                    Crypto.encrypt(loan.pending()),
+                    Crypto.encrypt(loan.isDeclined())
+            );
+            if (loanNumber == null) return ERROR;
+            loan.setLoanNumber(loanNumber);
+            return SUCCESS;
+        };
     }
 
     /**
@@ -255,9 +648,95 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Supplier<Map<String, List<Loan>>> getAllLoans() {
-        return () -> jdbcTemplate.query("SELECT * FROM loans", new LoanMapper())
-                .stream()
-                .collect(Collectors.groupingBy(Loan::accountNumber));
+        return () -> {
+            var loans = new HashMap<String, List<Loan>>();
+            Consumer<Loan> add = loan -> loans.computeIfAbsent(loan.accountNumber(), k -> new ArrayList<>()).add(loan);
+            if (decryptionPool != null) query("SELECT * FROM loans", new LoanMapper()).forEach(add);
+            else forEachLoan().accept(add);
+            return loans;
+        };
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * <p>The rows are fetched {@link #setFetchSize(int) fetch size} rows at a time in a read only transaction,
+     * the connection is held until every loan is passed to the action.</p>
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        final var QUERY = "SELECT * FROM loans";
+        return action -> {
+            var mapper = new LoanMapper();
+            stream(QUERY, resultSet -> action.accept(mapper.mapRow(resultSet, resultSet.getRow())));
+        };
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * <p>The loans are ordered by the blind index of the account number, so the pages are read from the
+     * {@code loans_account_hash_loan_number} index.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        final var FIRST_PAGE = "SELECT * FROM loans ORDER BY account_hash, loan_number LIMIT ?";
+        final var NEXT_PAGE = "SELECT * FROM loans WHERE (account_hash, loan_number) > (?, ?) ORDER BY account_hash, loan_number LIMIT ?";
+        return (last, limit) -> last == null
+                ? query(FIRST_PAGE, new LoanMapper(), limit)
+                : query(NEXT_PAGE, new LoanMapper(), blindIndex.hash(last.accountNumber()), last.loanNumber(), limit);
+    }
+
+    /**
+     * Runs a query and maps every row, decrypting the rows on the {@link #setDecryptionPool(ForkJoinPool) decryption pool} if set.
+     * @param query the query to run.
+     * @param mapper the mapper of the rows.
+     * @param arguments the arguments of the query.
+     * @return the objects, in the order of the rows.
+     */
+    private <T> List<T> query(String query, DecryptingRowMapper<T> mapper, Object... arguments) {
+        var pool = this.decryptionPool;
+        return pool == null
+                ? jdbcTemplate.query(query, mapper, arguments)
+                : jdbcTemplate.query(query, new BulkDecryptingExtractor<>(mapper, pool, 256), arguments);
+    }
+
+    /**
+     * Runs a query and passes every row to the handler, fetching {@link #fetchSize} rows at a time.
+     * The query runs in a read only transaction, without it the driver reads every row at once.
+     * @param query the query to run.
+     * @param handler the handler of every row.
+     */
+    private void stream(String query, RowCallbackHandler handler) {
+        readOnlyTransactionTemplate.executeWithoutResult(transaction -> jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler));
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        final var QUERY = "SELECT * FROM loans WHERE account_hash = ? ORDER BY loan_number";
+        return accountNumber -> jdbcTemplate.query(QUERY, new LoanMapper(), blindIndex.hash(accountNumber));
     }
 
     /**
@@ -271,58 +750,82 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
-        final var QUERY = "SELECT * FROM loans WHERE loan_number = ? AND account_number = ?";
+        final var QUERY = "SELECT * FROM loans WHERE loan_number = ? AND account_hash = ?";
         return (loanNumber, accountNumber) -> Optional.ofNullable(
                 jdbcTemplate.queryForObject(
                         QUERY,
                         new LoanMapper(),
                         loanNumber,
-                        SecurityUtil.encrypt(accountNumber))
+                        blindIndex.hash(accountNumber))
         );
     }
 
     /**
      * Function that gets the latest loan count of a client and returns the count.
      * The function takes a {@code String} containing the account number that holds a loan.
+     * The count is read from the {@code loan_sequences} table using the primary key.
      * @return a {@code Integer} containing the loan count of a client.
      * @see Function
      */
     @Override
     public Function<String, Integer> getLoanCount() {
-        final var QUERY = "SELECT MAX(loan_number) FROM loans WHERE account_number = ?";
-        return accountNumber ->  {
-            int result = Optional.ofNullable(
-                    jdbcTemplate.queryForObject(
-                            QUERY,
-                            Integer.class,
-                            SecurityUtil.encrypt(accountNumber))
-            ).orElse(0);
-            return result >= 1 ? result + 1 : 1;
-        };
+        final var QUERY = "SELECT COALESCE((SELECT last_loan_number FROM loan_sequences WHERE account_hash = ?), 0) + 1";
+        return accountNumber -> jdbcTemplate.queryForObject(
+                QUERY,
+                Integer.class,
+                blindIndex.hash(accountNumber)
+        );
     }
 
     /**
      * Function that approves a loan request.
      * The function takes a {@code Loan} object containing the loan information to be approved.
-     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
-     * @throws IllegalArgumentException if the account number does not belong to any client, thus the message cannot be found.
+     * <p>The approval runs in one transaction of two statements, the first marks the loan as approved
+     * only if it is still pending and not declined, and locks the row of the client,
+     * the second credits the amount of the loan to the savings of the client.
+     * A loan that is already approved or declined is not approved again.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the loan is not pending or the client does not exist.
      * @see BiFunction
      * @see Loan
      * @see Status
      */
     @Override
-    public BiFunction<Loan, Client, Status> approveLoan() throws IllegalArgumentException {
-        final var QUERY = "UPDATE loans SET pending = ? WHERE loan_number = ? AND account_number = ?";
-        return (loan, c) -> {
-            var client = getClientByAccountNumber().apply(c.accountNumber());
-            var status = updateClientSavingsByAccountNumber().apply(client.map(Client::accountNumber).orElse(null), client.map(Client::savings).orElse(0.0) + loan.amount());
-            return status == SUCCESS ? jdbcTemplate.update(
-                    QUERY,
-                    SecurityUtil.encrypt(Boolean.FALSE.toString()),
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        final var APPROVE_AND_LOCK = "WITH approved AS (" +
+                " UPDATE loans SET pending = ? WHERE loan_number = ? AND account_hash = ? AND pending = ? AND declined = ?" +
+                " RETURNING amount" +
+                ")" +
+                " SELECT clients.savings, approved.amount FROM clients, approved WHERE clients.account_hash = ?" +
+                " FOR UPDATE OF clients";
+        final var CREDIT = "UPDATE clients SET savings = ? WHERE account_hash = ?";
+        return (loan, c) -> transactionTemplate.execute(transaction -> {
+            var clientAccountHash = blindIndex.hash(c.accountNumber());
+            var newSavings = jdbcTemplate.query(
+                    APPROVE_AND_LOCK,
+                    (resultSet, row) -> Money.add(
+                            Money.decode(Crypto.decrypt(resultSet.getString("savings"))),
+                            Money.decode(Crypto.decrypt(resultSet.getString("amount")))
+                    ),
+                    Crypto.encrypt(false),
                     loan.loanNumber(),
-                    SecurityUtil.encrypt(loan.accountNumber())
-            ) > 0 ? SUCCESS : ERROR : CANNOT_PERFORM_OPERATION;
-        };
+                    blindIndex.hash(loan.accountNumber()),
+                    Crypto.encrypt(true),
+                    Crypto.encrypt(false),
+                    clientAccountHash
+            );
+            if (newSavings.isEmpty()) {
+                transaction.setRollbackOnly();
+                return CANNOT_PERFORM_OPERATION;
+            }
+            var credited = jdbcTemplate.update(
+                    CREDIT,
+                    Crypto.encrypt(Money.encode(newSavings.get(0))),
+                    clientAccountHash
+            ) > 0;
+            if (!credited) transaction.setRollbackOnly();
+            return credited ? SUCCESS : ERROR;
+        });
     }
 
     /**
@@ -335,12 +838,12 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<Loan, Status> declineLoan() {
-        final var QUERY = "UPDATE loans SET declined = ? WHERE loan_number = ? AND account_number = ?";
+        final var QUERY = "UPDATE loans SET declined = ? WHERE loan_number = ? AND account_hash = ?";
         return loan -> jdbcTemplate.update(
                 QUERY,
-                SecurityUtil.encrypt(Boolean.TRUE.toString()),
+                Crypto.encrypt(true),
                 loan.loanNumber(),
-                SecurityUtil.encrypt(loan.accountNumber())
+                blindIndex.hash(loan.accountNumber())
         ) > 0 ? SUCCESS : ERROR;
     }
 
@@ -354,24 +857,57 @@ public class InDatabase implements AtmDAO {
      */
     @Override
     public Function<Loan, Status> removeLoan() {
-        final var QUERY = "DELETE FROM loans WHERE loan_number = ? AND account_number = ? AND pending = ?";
+        final var QUERY = "DELETE FROM loans WHERE loan_number = ? AND account_hash = ? AND pending = ?";
         return loan -> jdbcTemplate.update(
                 QUERY,
                 loan.loanNumber(),
-                loan.accountNumber(),
-                SecurityUtil.encrypt(Boolean.TRUE.toString())
+                blindIndex.hash(loan.accountNumber()),
+                Crypto.encrypt(true)
         ) > 0 ? SUCCESS : ERROR;
     }
 
     /**
-     * Function that removes all the loans from the database.
+     * Function that gets the message of the loan request of a client to the database.
+     * The Function takes a {@code String}.
+     * The {@code String} contains the account number of the client.
+     * Only the approved or declined loans of the client are read from the database.
+     * @return a {@code Map<String, List<Message>>} with one key, the account number, and the messages of the approved or declined loans of the client.
+     * @throws IllegalStateException if the client has no approved or declined loans.
+     * @see Function
+     * @see Map
+     * @see List
+     * @see Message
+     */
+    @Override
+    public Function<String, Map<String, List<Message>>> getMessage() throws IllegalStateException {
+        final var QUERY = "SELECT * FROM loans WHERE account_hash = ? AND (pending = ? OR declined = ?) ORDER BY loan_number";
+        return accountNumber -> {
+            var client = getClientByAccountNumber().apply(accountNumber).orElse(null);
+            var messages = jdbcTemplate.query(
+                            QUERY,
+                            new LoanMapper(),
+                            blindIndex.hash(accountNumber),
+                            Crypto.encrypt(false),
+                            Crypto.encrypt(true)
+                    )
+                    .stream()
+                    .map(loan -> new Message(loan, client, loan.pending() && loan.isDeclined()))
+                    .collect(Collectors.toList());
+            if (messages.isEmpty()) throw new IllegalStateException("THERE ARE NO MESSAGES AT THE MOMENT");
+            return Map.of(accountNumber, messages);
+        };
+    }
+
+    /**
+     * Function that removes all the loans from the database, the loan numbers of every account start again from one.
      * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
      * @see Supplier
      * @see Status
      */
     @Override
     public Supplier<Status> removeAllLoans() {
-        return () ->  jdbcTemplate.update("DELETE FROM loans WHERE TRUE") > 0 ? SUCCESS : ERROR;
+        final var QUERY = "WITH sequences AS (DELETE FROM loan_sequences) DELETE FROM loans WHERE TRUE";
+        return () ->  jdbcTemplate.update(QUERY) > 0 ? SUCCESS : ERROR;
     }
 
 }
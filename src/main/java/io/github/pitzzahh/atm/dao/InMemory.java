@@ -2,16 +2,21 @@ package io.github.pitzzahh.atm.dao;
 
 import static io.github.pitzzahh.util.utilities.classes.enums.Status.ERROR;
 import static io.github.pitzzahh.util.utilities.classes.enums.Status.SUCCESS;
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.CANNOT_PERFORM_OPERATION;
 import io.github.pitzzahh.atm.exceptions.ClientAlreadyExistException;
 import static io.github.pitzzahh.atm.validator.ServiceValidator.*;
 import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
 import io.github.pitzzahh.util.utilities.classes.enums.Status;
 import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
 import io.github.pitzzahh.atm.entity.Loan;
 import static java.lang.String.format;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.*;
 
@@ -28,23 +33,74 @@ public class InMemory implements AtmDAO {
     private final Map<String, Client> CLIENTS = new HashMap<>();
 
     /**
-     * Stores the {@code Loan} objects.
-     * The {@code Map<String, Loan>} object.
+     * Stores the account numbers of the clients in order, only used to get the pages of clients.
+     * The {@code NavigableSet<String>} object, always has the same account numbers as {@link #CLIENTS}.
      */
-    private final Map<String, Loan> LOANS = new HashMap<>();
+    private final NavigableSet<String> CLIENT_KEYS = new TreeSet<>();
+
+    /**
+     * Stores the {@code Loan} objects of every account, ordered by loan number.
+     * The {@code Map<String, NavigableMap<Integer, Loan>>} object, the key is the account number
+     * and the value is the loans of the account keyed by loan number.
+     */
+    private final Map<String, NavigableMap<Integer, Loan>> LOANS = new HashMap<>();
+
+    /**
+     * Stores the account numbers that requested loans in order, only used to get the pages of loans.
+     * The {@code NavigableSet<String>} object, always has the same account numbers as {@link #LOANS}.
+     */
+    private final NavigableSet<String> LOAN_KEYS = new TreeSet<>();
+
+    /**
+     * Stores the last loan number given to every account.
+     * The {@code Map<String, Integer>} object, the key is the account number.
+     */
+    private final Map<String, Integer> LOAN_NUMBERS = new HashMap<>();
 
     /**
      * Function that supplies a {@code Map<String, Client>}.
      * <p>{@code String} - the key, the key is the account number of the client</p>
      * <p>{@code Client} - the value, the value is the client object</p>
-     * @return a {@code Client} object
+     * @return an unmodifiable view of the clients.
      * @see Map
      * @see Supplier
      * @see Client
      */
     @Override
     public Supplier<Map<String, Client>> getAllClients() {
-        return () -> CLIENTS;
+        return () -> Collections.unmodifiableMap(CLIENTS);
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        return action -> CLIENTS.values().forEach(action);
+    }
+
+    /**
+     * Function that gets a page of clients, ordered by account number.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return (accountNumber, limit) -> (accountNumber == null ? CLIENT_KEYS : CLIENT_KEYS.tailSet(accountNumber, false))
+                .stream()
+                .limit(limit)
+                .map(CLIENTS::get)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -60,23 +116,47 @@ public class InMemory implements AtmDAO {
      */
     @Override
     public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
-        return accountNumber -> Optional.ofNullable(CLIENTS.entrySet()
-                .stream()
-                .filter(e -> e.getKey().equals(accountNumber))
-                .findAny()
-                .map(Map.Entry::getValue)
-                .orElseThrow(() -> new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber))));
+        return accountNumber -> {
+            var client = CLIENTS.get(accountNumber);
+            if (client == null) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+            return Optional.of(client);
+        };
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return CLIENTS::containsKey;
     }
 
     /**
      * Function that accepts a {@code String} containing the account number.
      * The account number will be used to search for the clients savings.
      * @return a {@code Double} containing the savings of the client with the account number.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
      * @see Function
      */
     @Override
-    public Function<String, Double> getClientSavingsByAccountNumber() {
-        return accountNumber -> getClientByAccountNumber().apply(accountNumber).map(Client::savings).orElse(0.0);
+    public Function<String, Double> getClientSavingsByAccountNumber() throws ClientNotFoundException {
+        return accountNumber -> Money.toDouble(getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without boxing the savings.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() throws ClientNotFoundException {
+        return accountNumber -> getClient(accountNumber).savingsCents();
     }
 
     /**
@@ -90,9 +170,9 @@ public class InMemory implements AtmDAO {
     @Override
     public Function<String, Status> removeClientByAccountNumber() {
         return accountNumber -> {
-            var isPresent = CLIENTS.containsKey(accountNumber);
-            if (isPresent) CLIENTS.remove(accountNumber);
-            else throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+            var removed = CLIENTS.remove(accountNumber);
+            if (removed == null) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+            CLIENT_KEYS.remove(accountNumber);
             return SUCCESS;
         };
     }
@@ -106,6 +186,7 @@ public class InMemory implements AtmDAO {
     @Override
     public Supplier<Status> removeAllClients() {
         CLIENTS.clear();
+        CLIENT_KEYS.clear();
         return () -> CLIENTS.isEmpty() ? SUCCESS : ERROR;
     }
 
@@ -134,13 +215,14 @@ public class InMemory implements AtmDAO {
      * <p>First parameter is a {@code String} contains the account number of the client.</p>
      * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
      * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
      * @see BiFunction
      * @see Status
      * @see Client
      * @see Loan
      */
     @Override
-    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() throws ClientNotFoundException {
         return this::updateClientSavingsByAccountNumber;
     }
 
@@ -155,12 +237,66 @@ public class InMemory implements AtmDAO {
      * @see #updateClientSavingsByAccountNumber()
      */
     private Status updateClientSavingsByAccountNumber(String accountNumber, Double savings) {
-        var status = getClientByAccountNumber().apply(accountNumber)
-                .map(c -> {
-                    c.setSavings(savings);
-                    return c.savings() == savings ? SUCCESS : ERROR;
-                });
-        return status.orElse(ERROR);
+        return updateClientSavingsInCentsByAccountNumber().apply(accountNumber, Money.toCents(savings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() throws ClientNotFoundException {
+        return (accountNumber, savingsCents) -> {
+            var client = getClient(accountNumber);
+            client.setSavingsCents(savingsCents);
+            return client.savingsCents() == savingsCents ? SUCCESS : ERROR;
+        };
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * <p>The amount is added with a compare-and-set loop on the savings of the client, without a lock.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to deposit must be positive");
+            getClient(accountNumber).addSavingsCents(cents);
+            return SUCCESS;
+        };
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * <p>The amount is subtracted with a compare-and-set loop on the savings of the client, without a lock.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to withdraw must be positive");
+            return getClient(accountNumber).withdrawSavingsCents(cents) ? SUCCESS : CANNOT_PERFORM_OPERATION;
+        };
     }
 
     /**
@@ -187,6 +323,7 @@ public class InMemory implements AtmDAO {
         var exist = doesClientAlreadyExist(this).test(client.accountNumber());
         if (exist) throw new ClientAlreadyExistException(format("Client with account number [%s] already exist", client.accountNumber()));
         var result = CLIENTS.put(client.accountNumber(), client);
+        CLIENT_KEYS.add(client.accountNumber());
         return result == client ? SUCCESS : result == null ? SUCCESS : ERROR;
     }
 
@@ -205,6 +342,7 @@ public class InMemory implements AtmDAO {
                     clients.stream()
                             .collect(Collectors.toMap(Client::accountNumber, Function.identity()))
             );
+            clients.forEach(client -> CLIENT_KEYS.add(client.accountNumber()));
             return CLIENTS.size() == clients.size() ? SUCCESS : ERROR;
         };
     }
@@ -212,6 +350,7 @@ public class InMemory implements AtmDAO {
     /**
      * Function that submits a loan request.
      * The Function takes a {@code Loan} object containing the loan information.
+     * The loan number of the loan is set to the next loan number of the account.
      * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
      * @see Function
      * @see Loan
@@ -220,9 +359,10 @@ public class InMemory implements AtmDAO {
     @Override
     public Function<Loan, Status> requestLoan() {
         return loan -> {
-            var loanCount = getLoanCount().apply(loan.accountNumber());
-            LOANS.put(loan.accountNumber(), loan);
-            return Objects.equals(loanCount, getLoanCount().apply(loan.accountNumber())) ? SUCCESS : ERROR;
+            loan.setLoanNumber(LOAN_NUMBERS.merge(loan.accountNumber(), 1, Integer::sum));
+            var loans = LOANS.computeIfAbsent(loan.accountNumber(), k -> new TreeMap<>());
+            LOAN_KEYS.add(loan.accountNumber());
+            return loans.putIfAbsent(loan.loanNumber(), loan) == null ? SUCCESS : ERROR;
         };
     }
 
@@ -238,9 +378,67 @@ public class InMemory implements AtmDAO {
      */
     @Override
     public Supplier<Map<String, List<Loan>>> getAllLoans() {
-        return () -> LOANS.values()
+        return () -> LOANS.entrySet()
                 .stream()
-                .collect(Collectors.groupingBy(Loan::accountNumber));
+                .filter(e -> !e.getValue().isEmpty())
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> new ArrayList<>(e.getValue().values())));
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return accountNumber -> {
+            var loans = LOANS.get(accountNumber);
+            return loans == null ? List.of() : new ArrayList<>(loans.values());
+        };
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return action -> LOAN_KEYS.forEach(accountNumber -> LOANS.get(accountNumber).values().forEach(action));
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return (last, limit) -> {
+            var page = new ArrayList<Loan>(Math.min(limit, 1_024));
+            var accounts = last == null ? LOAN_KEYS : LOAN_KEYS.tailSet(last.accountNumber(), true);
+            for (var accountNumber : accounts) {
+                var loans = last != null && accountNumber.equals(last.accountNumber())
+                        ? LOANS.get(accountNumber).tailMap(last.loanNumber(), false)
+                        : LOANS.get(accountNumber);
+                for (var loan : loans.values()) {
+                    if (page.size() == limit) return page;
+                    page.add(loan);
+                }
+            }
+            return page;
+        };
     }
 
     /**
@@ -254,10 +452,7 @@ public class InMemory implements AtmDAO {
      */
     @Override
     public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
-        return (loanNumber, accountNumber) -> LOANS.values()
-                .stream()
-                .filter(loan -> loan.loanNumber() == loanNumber && loan.accountNumber().equals(accountNumber))
-                .findAny();
+        return (loanNumber, accountNumber) -> Optional.ofNullable(getLoan(loanNumber, accountNumber));
     }
 
     /**
@@ -268,15 +463,7 @@ public class InMemory implements AtmDAO {
      */
     @Override
     public Function<String, Integer> getLoanCount() {
-        return accountNumber -> {
-            int result = LOANS.values()
-                    .stream()
-                    .filter(loan -> loan.accountNumber().equals(accountNumber))
-                    .map(Loan::loanNumber)
-                    .max(Comparator.comparingInt(Integer::intValue))
-                    .orElse(0);
-            return result >= 1 ? result + 1 : 1;
-        };
+        return accountNumber -> LOAN_NUMBERS.getOrDefault(accountNumber, 0) + 1;
     }
 
     /**
@@ -290,10 +477,12 @@ public class InMemory implements AtmDAO {
     @Override
     public BiFunction<Loan, Client, Status> approveLoan() {
         return (loan, c) -> {
-            var client = getClientByAccountNumber().apply(c.accountNumber());
-            var status = updateClientSavingsByAccountNumber().apply(client.map(Client::accountNumber).orElse(null), client.map(Client::savings).orElse(0.0) + loan.amount());
-            LOANS.get(loan.accountNumber()).setPending(false);
-            return status;
+            var stored = getLoan(loan.loanNumber(), loan.accountNumber());
+            if (stored == null) return ERROR;
+            var client = getClient(c.accountNumber());
+            client.addSavingsCents(stored.amountCents());
+            stored.setPending(false);
+            return SUCCESS;
         };
     }
 
@@ -308,8 +497,10 @@ public class InMemory implements AtmDAO {
     @Override
     public Function<Loan, Status> declineLoan() {
         return loan -> {
-            LOANS.get(loan.accountNumber()).setDeclined(true);
-            return LOANS.get(loan.accountNumber()).isDeclined() ? SUCCESS : ERROR;
+            var stored = getLoan(loan.loanNumber(), loan.accountNumber());
+            if (stored == null) return ERROR;
+            stored.setDeclined(true);
+            return stored.isDeclined() ? SUCCESS : ERROR;
         };
     }
 
@@ -323,7 +514,10 @@ public class InMemory implements AtmDAO {
      */
     @Override
     public Function<Loan, Status> removeLoan() {
-        return loan -> loan.equals(LOANS.remove(loan.accountNumber())) ? SUCCESS : ERROR;
+        return loan -> {
+            var loans = LOANS.get(loan.accountNumber());
+            return loans != null && loans.remove(loan.loanNumber()) != null ? SUCCESS : ERROR;
+        };
     }
 
     /**
@@ -334,8 +528,35 @@ public class InMemory implements AtmDAO {
      */
     @Override
     public Supplier<Status> removeAllLoans() {
-        LOANS.clear();
-        return () -> LOANS.isEmpty() ? SUCCESS : ERROR;
+        return () -> {
+            LOANS.clear();
+            LOAN_KEYS.clear();
+            LOAN_NUMBERS.clear();
+            return LOANS.isEmpty() ? SUCCESS : ERROR;
+        };
+    }
+
+    /**
+     * Gets a client using the account number.
+     * @param accountNumber the account number of the client.
+     * @return the {@code Client}.
+     * @throws ClientNotFoundException if the client does not exist.
+     */
+    private Client getClient(String accountNumber) throws ClientNotFoundException {
+        var client = CLIENTS.get(accountNumber);
+        if (client == null) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+        return client;
+    }
+
+    /**
+     * Gets a loan using the account number and loan number.
+     * @param loanNumber the loan number.
+     * @param accountNumber the account number that made the loan.
+     * @return the {@code Loan}, or {@code null} if it does not exist.
+     */
+    private Loan getLoan(int loanNumber, String accountNumber) {
+        var loans = LOANS.get(accountNumber);
+        return loans == null ? null : loans.get(loanNumber);
     }
 
 }
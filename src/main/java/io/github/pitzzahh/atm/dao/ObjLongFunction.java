@@ -0,0 +1,19 @@
+package io.github.pitzzahh.atm.dao;
+
+/**
+ * Represents a function that accepts an object and a {@code long}, and produces a result.
+ * The {@code long} specialization of {@link java.util.function.BiFunction}, so that the {@code long} is not boxed.
+ * @param <T> the type of the first argument.
+ * @param <R> the type of the result.
+ */
+@FunctionalInterface
+public interface ObjLongFunction<T, R> {
+
+    /**
+     * Applies this function to the arguments.
+     * @param t the first argument.
+     * @param value the second argument.
+     * @return the result.
+     */
+    R apply(T t, long value);
+}
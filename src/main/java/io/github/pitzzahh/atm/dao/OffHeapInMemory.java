@@ -0,0 +1,1351 @@
+package io.github.pitzzahh.atm.dao;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.ERROR;
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.SUCCESS;
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.CANNOT_PERFORM_OPERATION;
+import io.github.pitzzahh.atm.exceptions.ClientAlreadyExistException;
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import io.github.pitzzahh.atm.security.OwnerOnlyFiles;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.util.utilities.classes.enums.Gender;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import io.github.pitzzahh.util.utilities.classes.Person;
+import java.nio.charset.StandardCharsets;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import java.lang.invoke.MethodHandles;
+import static java.lang.String.format;
+import java.util.function.ToLongFunction;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.lang.invoke.VarHandle;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.channels.FileChannel;
+import java.io.DataOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Saves the data in memory, with the clients stored outside the Java heap.
+ * <p>Every client is a fixed-width record of {@value #RECORD_SIZE} bytes in direct {@code ByteBuffer} chunks,
+ * found using an open-addressing hash table from account number to record, itself stored in a direct buffer.
+ * The heap only holds the chunks and the loans, so the garbage collector does not have to trace millions of
+ * {@code Client}, {@code Person} and {@code String} objects.</p>
+ * <p>{@code Client} objects are created from the record every time a client is read, changing a returned
+ * {@code Client} does not change the stored client, use the functions of this class instead.
+ * Savings are updated with compare-and-set on the record, other changes hold a write lock.</p>
+ * <p>The text fields of a client are stored as UTF-8 and have a maximum length:
+ * account number {@value #ACCOUNT_NUMBER_LENGTH} characters (ASCII only), pin {@value #PIN_LENGTH} bytes,
+ * first and last name {@value #NAME_LENGTH} bytes, address {@value #ADDRESS_LENGTH} bytes.</p>
+ * <p>The records and the index can be written to a snapshot with {@link #writeSnapshot(Path)} and mapped back
+ * with {@link #mapSnapshot(Path)}, so that starting does not read and decrypt every client from the database.</p>
+ * @see InMemory
+ */
+public class OffHeapInMemory implements AtmDAO {
+
+    /**
+     * The size of one client record in bytes.
+     */
+    public static final int RECORD_SIZE = 256;
+
+    /**
+     * The maximum length of an account number.
+     */
+    public static final int ACCOUNT_NUMBER_LENGTH = 23;
+
+    /**
+     * The maximum length of a pin in bytes.
+     */
+    public static final int PIN_LENGTH = 23;
+
+    /**
+     * The maximum length of a first name or a last name in bytes.
+     */
+    public static final int NAME_LENGTH = 47;
+
+    /**
+     * The maximum length of an address in bytes.
+     */
+    public static final int ADDRESS_LENGTH = 95;
+
+    // layout of a record, the savings are first so that they are aligned to 8 bytes for compare-and-set
+    private static final int SAVINGS = 0;
+    private static final int BIRTH_DATE = 8;
+    private static final int FLAGS = 12;
+    private static final int GENDER = 13;
+    private static final int ACCOUNT_NUMBER = 16;
+    private static final int PIN = ACCOUNT_NUMBER + 1 + ACCOUNT_NUMBER_LENGTH;
+    private static final int FIRST_NAME = PIN + 1 + PIN_LENGTH;
+    private static final int LAST_NAME = FIRST_NAME + 1 + NAME_LENGTH;
+    private static final int ADDRESS = LAST_NAME + 1 + NAME_LENGTH;
+
+    private static final byte USED = 1;
+    private static final byte LOCKED = 2;
+    private static final byte HAS_DETAILS = 4;
+    private static final int NULL_LENGTH = 0xFF;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int RECORDS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = RECORDS_PER_CHUNK * RECORD_SIZE;
+    private static final int MIN_INDEX_CAPACITY = 16;
+    /**
+     * The largest power of two whose index still fits in one {@code ByteBuffer}, the index holds at most half as many clients.
+     */
+    private static final int MAX_INDEX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / Long.BYTES);
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int PAGE_SIZE = 1_024;
+
+    /**
+     * The byte order of the records and the index, fixed so that a snapshot can be mapped on any platform.
+     */
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // header of a snapshot, the chunks, the index, the free records and the loans follow it in this order
+    private static final long SNAPSHOT_MAGIC = 0x5350414E534D5441L; // "ATMSNAPS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 4_096;
+    private static final long NULL_EPOCH_DAY = Long.MIN_VALUE;
+
+    /**
+     * {@code VarHandle} of the savings in a record, used to update the savings with compare-and-set instead of a lock.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ORDER);
+
+    static {
+        if (ADDRESS + 1 + ADDRESS_LENGTH > RECORD_SIZE) throw new ExceptionInInitializerError("Client record does not fit in " + RECORD_SIZE + " bytes");
+    }
+
+    /**
+     * Stores the client records, {@value #RECORDS_PER_CHUNK} records per chunk.
+     * Chunks are only added, records of removed clients are reused.
+     */
+    private final List<ByteBuffer> CHUNKS = new ArrayList<>();
+
+    /**
+     * Stores the {@code Loan} objects of every account, ordered by account number and loan number.
+     * The {@code NavigableMap<String, NavigableMap<Integer, Loan>>} object, the key is the account number
+     * and the value is the loans of the account keyed by loan number.
+     */
+    private final NavigableMap<String, NavigableMap<Integer, Loan>> LOANS = new TreeMap<>();
+
+    /**
+     * Stores the last loan number given to every account.
+     * The {@code Map<String, Integer>} object, the key is the account number.
+     */
+    private final Map<String, Integer> LOAN_NUMBERS = new HashMap<>();
+
+    /**
+     * Guards the index, the chunks and the loans. Savings are updated while holding the read lock.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final int initialIndexCapacity;
+    private final int maxIndexCapacity;
+
+    /**
+     * The open-addressing index, every entry is the hash of the account number in the high 32 bits
+     * and the record number + 1 in the low 32 bits, {@value #EMPTY} if empty or {@value #TOMBSTONE} if removed.
+     */
+    private LongBuffer index;
+    private int indexMask;
+    private int size;
+    private int tombstones;
+    private int records;
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+
+    /**
+     * Creates an empty {@code OffHeapInMemory}.
+     */
+    public OffHeapInMemory() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty {@code OffHeapInMemory} whose index is sized for the expected number of clients,
+     * so that saving the clients does not grow the index.
+     * @param expectedClients the number of clients expected to be saved.
+     * @throws IllegalArgumentException if the number of clients is negative or more than the index can hold.
+     */
+    public OffHeapInMemory(int expectedClients) throws IllegalArgumentException {
+        this(expectedClients, MAX_INDEX_CAPACITY);
+    }
+
+    /**
+     * Creates an empty {@code OffHeapInMemory} whose index cannot grow past a capacity, used to test the limit without allocating it.
+     * @param expectedClients the number of clients expected to be saved.
+     * @param maxIndexCapacity the largest capacity of the index, a power of two, at most half of it can be clients.
+     * @throws IllegalArgumentException if the number of clients is negative or more than the index can hold.
+     */
+    OffHeapInMemory(int expectedClients, int maxIndexCapacity) throws IllegalArgumentException {
+        this(allocateIndex(indexCapacityFor(requireExpectedClients(expectedClients, maxIndexCapacity), maxIndexCapacity)), maxIndexCapacity);
+    }
+
+    /**
+     * Creates an empty {@code OffHeapInMemory} using an index, the index keeps its capacity when the clients are removed.
+     * @param index the index, its capacity is a power of two.
+     * @param maxIndexCapacity the largest capacity of the index.
+     */
+    private OffHeapInMemory(LongBuffer index, int maxIndexCapacity) {
+        this.initialIndexCapacity = index.capacity();
+        this.maxIndexCapacity = maxIndexCapacity;
+        this.index = index;
+        this.indexMask = initialIndexCapacity - 1;
+    }
+
+    /**
+     * Creates an {@code OffHeapInMemory} containing the clients and loans of another {@code AtmDAO}, keeping the loan numbers.
+     * <p>Clients and loans are read with {@link AtmDAO#forEachClient()} and {@link AtmDAO#forEachLoan()},
+     * so the source does not have to fit in the heap. The last loan number of every account that has loans
+     * is read with {@link AtmDAO#getLoanCount()}.</p>
+     * @param source the {@code AtmDAO} to copy, for example {@link InDatabase}.
+     * @return the copy.
+     * @throws IllegalArgumentException if a field of a client is longer than its maximum length.
+     */
+    public static OffHeapInMemory copyOf(AtmDAO source) throws IllegalArgumentException {
+        var copy = new OffHeapInMemory();
+        var clients = new ArrayList<Client>(PAGE_SIZE);
+        source.forEachClient().accept(client -> {
+            clients.add(client);
+            if (clients.size() < PAGE_SIZE) return;
+            copy.saveAllClients().apply(clients);
+            clients.clear();
+        });
+        copy.saveAllClients().apply(clients);
+        var writeLock = copy.lock.writeLock();
+        writeLock.lock();
+        try {
+            source.forEachLoan().accept(loan -> {
+                copy.LOANS.computeIfAbsent(loan.accountNumber(), k -> new TreeMap<>()).put(loan.loanNumber(), copy(loan));
+                copy.LOAN_NUMBERS.merge(loan.accountNumber(), loan.loanNumber(), Math::max);
+            });
+            for (var entry : copy.LOAN_NUMBERS.entrySet()) {
+                entry.setValue(Math.max(entry.getValue(), source.getLoanCount().apply(entry.getKey()) - 1));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return copy;
+    }
+
+    /**
+     * Maps a snapshot written by {@link #writeSnapshot(Path)}, the clients are ready without reading the file.
+     * <p>The records and the index are mapped with {@code FileChannel.map} in private mode: the operating system reads
+     * a page of the file the first time it is used, and changes are made to a private copy of the page,
+     * the file is never changed. Only the loans and the list of free records are read when the snapshot is mapped.</p>
+     * <p>The mapped pages count towards the memory of the process, not the heap or {@code -XX:MaxDirectMemorySize}.
+     * Write a new snapshot to keep the changes.</p>
+     * @param file the snapshot.
+     * @return the {@code OffHeapInMemory} containing the clients and loans of the snapshot.
+     * @throws IOException if the file cannot be read, is not a snapshot, is a snapshot of another version or is truncated.
+     */
+    public static OffHeapInMemory mapSnapshot(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ORDER);
+            if (channel.size() < SNAPSHOT_HEADER_SIZE) throw new IOException(format("%s is not a client snapshot", file));
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getLong() != SNAPSHOT_MAGIC) throw new IOException(format("%s is not a client snapshot", file));
+            var version = header.getInt();
+            if (version != SNAPSHOT_VERSION) throw new IOException(format("Snapshot version %d of %s is not supported, the supported version is %d", version, file, SNAPSHOT_VERSION));
+            if (header.getInt() != RECORD_SIZE || header.getInt() != RECORDS_PER_CHUNK) throw new IOException(format("Records of %s have a different layout", file));
+            var records = header.getInt();
+            var size = header.getInt();
+            var tombstones = header.getInt();
+            var capacity = header.getInt();
+            var freeCount = header.getInt();
+            var loansLength = header.getInt();
+            if (records < 0 || size < 0 || tombstones < 0 || freeCount < 0 || loansLength < 0 || size + freeCount != records
+                    || capacity < MIN_INDEX_CAPACITY || capacity > MAX_INDEX_CAPACITY || Integer.bitCount(capacity) != 1) {
+                throw new IOException(format("Header of %s is corrupted", file));
+            }
+            var chunks = (records + RECORDS_PER_CHUNK - 1) >>> CHUNK_SHIFT;
+            var indexOffset = SNAPSHOT_HEADER_SIZE + (long) chunks * CHUNK_SIZE;
+            var freeOffset = indexOffset + (long) capacity * Long.BYTES;
+            var loansOffset = freeOffset + (long) freeCount * Integer.BYTES;
+            if (channel.size() < loansOffset + loansLength) throw new IOException(format("%s is truncated", file));
+            var dao = new OffHeapInMemory(channel.map(FileChannel.MapMode.PRIVATE, indexOffset, (long) capacity * Long.BYTES).order(ORDER).asLongBuffer(), MAX_INDEX_CAPACITY);
+            for (var i = 0; i < chunks; i++) {
+                dao.CHUNKS.add(channel.map(FileChannel.MapMode.PRIVATE, SNAPSHOT_HEADER_SIZE + (long) i * CHUNK_SIZE, CHUNK_SIZE).order(ORDER));
+            }
+            dao.records = records;
+            dao.size = size;
+            dao.tombstones = tombstones;
+            var free = ByteBuffer.allocate(freeCount * Integer.BYTES).order(ORDER);
+            readFully(channel, free, freeOffset);
+            dao.freeRecords = new int[Math.max(freeCount, 16)];
+            free.flip().asIntBuffer().get(dao.freeRecords, 0, freeCount);
+            dao.freeCount = freeCount;
+            var loans = ByteBuffer.allocate(loansLength);
+            readFully(channel, loans, loansOffset);
+            dao.readLoans(loans.array());
+            return dao;
+        }
+    }
+
+    /**
+     * Function that supplies a {@code Map<String, Client>}.
+     * <p>{@code String} - the key, the key is the account number of the client</p>
+     * <p>{@code Client} - the value, the value is the client object</p>
+     * <p>Every client is copied to the heap, use {@link #forEachClient()} or {@link #getClientsAfter()} instead
+     * when there are many clients.</p>
+     * @return a {@code Client} object
+     * @see Map
+     * @see Supplier
+     * @see Client
+     */
+    @Override
+    public Supplier<Map<String, Client>> getAllClients() {
+        return () -> {
+            var clients = new HashMap<String, Client>();
+            forEachClient().accept(client -> clients.put(client.accountNumber(), client));
+            return clients;
+        };
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * <p>Clients are read {@value #PAGE_SIZE} at a time, the lock is not held while the action runs.</p>
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        return action -> {
+            var page = new ArrayList<Client>(PAGE_SIZE);
+            for (var next = 0; next >= 0; page.clear()) {
+                next = readPage(next, PAGE_SIZE, page);
+                page.forEach(action);
+            }
+        };
+    }
+
+    /**
+     * Function that gets a page of clients, ordered by the record where the client is stored.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * <p>Clients saved in the record of a removed client while paging may be skipped.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @throws ClientNotFoundException if the client of the previous page was removed.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() throws ClientNotFoundException {
+        return (accountNumber, limit) -> {
+            var page = new ArrayList<Client>(Math.min(limit, PAGE_SIZE));
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                var from = accountNumber == null ? 0 : record(accountNumber) + 1;
+                readPage(from, limit, page);
+                return page;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that returns a {@code Optional<Client>} object based on the {@code String}
+     * that contains the account number.
+     * <p>T - a {@code String} containing the account number to be search from the database.</p>
+     * <p>R - a {@code Optional<Client>} containing the result if the client is found or not.</p>
+     * @return a {@code Optional<Client>} object.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @see Optional
+     * @see Function
+     * @see Client
+     */
+    @Override
+    public Function<String, Optional<Client>> getClientByAccountNumber() throws ClientNotFoundException {
+        return accountNumber -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return Optional.of(read(record(accountNumber)));
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return accountNumber -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return find(accountNumber) >= 0;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code Double} containing the savings of the client with the account number.
+     * @see Function
+     */
+    @Override
+    public Function<String, Double> getClientSavingsByAccountNumber() {
+        return accountNumber -> Money.toDouble(getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without creating a {@code Client}.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() {
+        return accountNumber -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                var record = record(accountNumber);
+                return (long) LONGS.getVolatile(chunk(record), offset(record) + SAVINGS);
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that removes a client in the database using the account number.
+     * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
+     * <p>R - the {@code Status} of the operation if {@link Status#SUCCESS} or {@link Status#ERROR}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Status
+     */
+    @Override
+    public Function<String, Status> removeClientByAccountNumber() {
+        return accountNumber -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                var slot = find(accountNumber);
+                if (slot < 0) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+                var record = (int) index.get(slot) - 1;
+                index.put(slot, TOMBSTONE);
+                size--;
+                tombstones++;
+                chunk(record).put(offset(record) + FLAGS, (byte) 0);
+                if (freeCount == freeRecords.length) freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+                freeRecords[freeCount++] = record;
+                return SUCCESS;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that removes all the clients in the database.
+     * The chunks are kept and reused by the next clients.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllClients() {
+        return () -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                index = allocateIndex(initialIndexCapacity);
+                indexMask = initialIndexCapacity - 1;
+                size = 0;
+                tombstones = 0;
+                records = 0;
+                freeCount = 0;
+                return SUCCESS;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Boolean}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Boolean}, {@code true} if the client account should be locked, default is false.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
+        return (accountNumber, status) -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                var record = record(accountNumber);
+                var chunk = chunk(record);
+                var flags = chunk.get(offset(record) + FLAGS);
+                chunk.put(offset(record) + FLAGS, (byte) (status ? flags | LOCKED : flags & ~LOCKED));
+                return SUCCESS;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Double}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     * @see Client
+     * @see Loan
+     */
+    @Override
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+        return (accountNumber, savings) -> updateClientSavingsInCentsByAccountNumber().apply(accountNumber, Money.toCents(savings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return (accountNumber, savingsCents) -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                var record = record(accountNumber);
+                LONGS.setVolatile(chunk(record), offset(record) + SAVINGS, savingsCents);
+                return SUCCESS;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * <p>The amount is added with a compare-and-set loop on the record of the client, without creating a {@code Client}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to deposit must be positive");
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                addSavings(record(accountNumber), cents);
+                return SUCCESS;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * <p>The amount is subtracted with a compare-and-set loop on the record of the client, without creating a {@code Client}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> {
+            if (cents <= 0) throw new IllegalArgumentException("Amount to withdraw must be positive");
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                var record = record(accountNumber);
+                var chunk = chunk(record);
+                var offset = offset(record) + SAVINGS;
+                long current;
+                do {
+                    current = (long) LONGS.getVolatile(chunk, offset);
+                    if (current < cents) return CANNOT_PERFORM_OPERATION;
+                } while (!LONGS.compareAndSet(chunk, offset, current, current - cents));
+                return SUCCESS;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that save a client to the database. The function takes a {@code Client} object,
+     * the object to be saved in the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if a field of the client is longer than its maximum length.
+     * @see Function
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Client, Status> saveClient() throws IllegalArgumentException {
+        return client -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                if (find(client.accountNumber()) >= 0) throw new ClientAlreadyExistException(format("Client with account number [%s] already exist", client.accountNumber()));
+                put(client);
+                return SUCCESS;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table.
+     * Clients with the account number of a saved client replace the saved client.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if a field of a client is longer than its maximum length.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Collection<Client>, Status> saveAllClients() throws IllegalArgumentException {
+        return clients -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                for (var client : clients) put(client);
+                return SUCCESS;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that submits a loan request.
+     * The Function takes a {@code Loan} object containing the loan information.
+     * The loan number of the loan is set to the next loan number of the account.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> requestLoan() {
+        return loan -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                loan.setLoanNumber(LOAN_NUMBERS.merge(loan.accountNumber(), 1, Integer::sum));
+                var loans = LOANS.computeIfAbsent(loan.accountNumber(), k -> new TreeMap<>());
+                return loans.putIfAbsent(loan.loanNumber(), loan) == null ? SUCCESS : ERROR;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that returns a key value pair, a {@code Map<String, List<Loan>>} in particular.
+     * <p>K - is a {@code String} containing the key, the key is the account number of the client who requested a loan.</p>
+     * <p>V - is a {@code String} containing the value, the value is all the loans that the account requested. It is a {@code List<Loan>}</p>
+     * @return a {@code Map<String, List<Loan>>} a key value pair containing all the loans from the table in the database.
+     * @see Supplier
+     * @see Map
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Supplier<Map<String, List<Loan>>> getAllLoans() {
+        return () -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return LOANS.entrySet()
+                        .stream()
+                        .filter(e -> !e.getValue().isEmpty())
+                        .collect(Collectors.toMap(Map.Entry::getKey, e -> new ArrayList<>(e.getValue().values())));
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return accountNumber -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                var loans = LOANS.get(accountNumber);
+                return loans == null ? List.of() : new ArrayList<>(loans.values());
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return (last, limit) -> {
+            var page = new ArrayList<Loan>(Math.min(limit, PAGE_SIZE));
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                var accounts = last == null ? LOANS : LOANS.tailMap(last.accountNumber(), true);
+                for (var entry : accounts.entrySet()) {
+                    var loans = last != null && entry.getKey().equals(last.accountNumber())
+                            ? entry.getValue().tailMap(last.loanNumber(), false)
+                            : entry.getValue();
+                    for (var loan : loans.values()) {
+                        if (page.size() == limit) return page;
+                        page.add(loan);
+                    }
+                }
+                return page;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return action -> {
+            for (var page = getLoansAfter().apply(null, PAGE_SIZE); !page.isEmpty(); page = getLoansAfter().apply(page.get(page.size() - 1), PAGE_SIZE)) {
+                page.forEach(action);
+            }
+        };
+    }
+
+    /**
+     * Function that gets the loan of a client using loan number and account number.
+     * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
+     * and the string containing the account number.
+     * @return an {@code Optional<Loan>} whether the loan exist or not.
+     * @see BiFunction
+     * @see Optional
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
+        return (loanNumber, accountNumber) -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return Optional.ofNullable(getLoan(loanNumber, accountNumber));
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that gets the latest loan count of a client and returns the count.
+     * The function takes a {@code String} containing the account number that holds a loan.
+     * @return a {@code Integer} containing the loan count of a client.
+     * @see Function
+     */
+    @Override
+    public Function<String, Integer> getLoanCount() {
+        return accountNumber -> {
+            var readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return LOAN_NUMBERS.getOrDefault(accountNumber, 0) + 1;
+            } finally {
+                readLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that approves a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * A loan that is no longer pending or is declined cannot be approved again.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS}, {@link Status#ERROR}
+     * if the loan does not exist, or {@link Status#CANNOT_PERFORM_OPERATION} if the loan is already resolved.
+     * @see BiFunction
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        return (loan, client) -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                var stored = getLoan(loan.loanNumber(), loan.accountNumber());
+                if (stored == null) return ERROR;
+                if (!stored.pending() || stored.isDeclined()) return CANNOT_PERFORM_OPERATION;
+                addSavings(record(client.accountNumber()), stored.amountCents());
+                stored.setPending(false);
+                return SUCCESS;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that declines a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> declineLoan() {
+        return loan -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                var stored = getLoan(loan.loanNumber(), loan.accountNumber());
+                if (stored == null) return ERROR;
+                stored.setDeclined(true);
+                return stored.isDeclined() ? SUCCESS : ERROR;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that removes a loan.
+     * The function takes a {@code Loan} object containing the loan information to be removed.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> removeLoan() {
+        return loan -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                var loans = LOANS.get(loan.accountNumber());
+                return loans != null && loans.remove(loan.loanNumber()) != null ? SUCCESS : ERROR;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Function that removes all the loans from the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllLoans() {
+        return () -> {
+            var writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                LOANS.clear();
+                LOAN_NUMBERS.clear();
+                return LOANS.isEmpty() ? SUCCESS : ERROR;
+            } finally {
+                writeLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of bytes allocated or mapped outside the heap for the records and the index.
+     * @return the number of bytes.
+     */
+    public long offHeapBytes() {
+        var readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return (long) CHUNKS.size() * CHUNK_SIZE + (long) index.capacity() * Long.BYTES;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the clients and loans to a snapshot that can be mapped with {@link #mapSnapshot(Path)}.
+     * <p>The snapshot is version {@value #SNAPSHOT_VERSION} of the format: a header, the records and the index
+     * as they are stored in memory, the free records, then the loans. The records are not converted,
+     * so writing and mapping a snapshot do not depend on the number of clients, only on the size of the file.</p>
+     * <p>The snapshot is written to a temporary file that replaces the file when it is complete, an existing snapshot
+     * stays valid if writing fails. Every operation waits while the snapshot is written.</p>
+     * <p>The snapshot is not encrypted, it holds the pins, the details and the savings of the clients in plaintext.
+     * It is created readable and writable only by its owner, see {@link OwnerOnlyFiles}.</p>
+     * @param file the snapshot, replaced if it exists.
+     * @return the number of clients in the snapshot.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public int writeSnapshot(Path file) throws IOException {
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        var writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            try (var channel = OwnerOnlyFiles.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                var chunks = (records + RECORDS_PER_CHUNK - 1) >>> CHUNK_SHIFT;
+                var indexOffset = SNAPSHOT_HEADER_SIZE + (long) chunks * CHUNK_SIZE;
+                var freeOffset = indexOffset + (long) index.capacity() * Long.BYTES;
+                var loansOffset = freeOffset + (long) freeCount * Integer.BYTES;
+                // only the used records are written, the rest of the last chunk is a hole in the file
+                for (var i = 0; i < chunks; i++) {
+                    var used = Math.min(RECORDS_PER_CHUNK, records - (i << CHUNK_SHIFT)) * RECORD_SIZE;
+                    writeFully(channel, CHUNKS.get(i).duplicate().position(0).limit(used), SNAPSHOT_HEADER_SIZE + (long) i * CHUNK_SIZE);
+                }
+                var buffer = ByteBuffer.allocateDirect(64 * 1024).order(ORDER);
+                for (var i = 0; i < index.capacity(); ) {
+                    var count = Math.min(buffer.capacity() / Long.BYTES, index.capacity() - i);
+                    buffer.clear();
+                    buffer.asLongBuffer().put(index.duplicate().position(i).limit(i + count));
+                    writeFully(channel, buffer.limit(count * Long.BYTES), indexOffset + (long) i * Long.BYTES);
+                    i += count;
+                }
+                var free = ByteBuffer.allocate(freeCount * Integer.BYTES).order(ORDER);
+                free.asIntBuffer().put(freeRecords, 0, freeCount);
+                writeFully(channel, free, freeOffset);
+                var loans = writeLoans();
+                writeFully(channel, ByteBuffer.wrap(loans), loansOffset);
+                var header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ORDER)
+                        .putLong(SNAPSHOT_MAGIC)
+                        .putInt(SNAPSHOT_VERSION)
+                        .putInt(RECORD_SIZE)
+                        .putInt(RECORDS_PER_CHUNK)
+                        .putInt(records)
+                        .putInt(size)
+                        .putInt(tombstones)
+                        .putInt(index.capacity())
+                        .putInt(freeCount)
+                        .putInt(loans.length)
+                        .clear();
+                writeFully(channel, header, 0);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the clients stored from a record.
+     * @param from the first record to read.
+     * @param limit the maximum number of clients to read.
+     * @param page the list the clients are added to.
+     * @return the record after the last client read, or {@code -1} if there are no more records.
+     */
+    private int readPage(int from, int limit, List<Client> page) {
+        var readLock = lock.readLock();
+        readLock.lock();
+        try {
+            var record = from;
+            for (; record < records && page.size() < limit; record++) {
+                if ((chunk(record).get(offset(record) + FLAGS) & USED) != 0) page.add(read(record));
+            }
+            return record < records ? record : -1;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a {@code Client} from a record, must be called while holding a lock.
+     * @param record the record of the client.
+     * @return the {@code Client}.
+     */
+    private Client read(int record) {
+        var chunk = chunk(record);
+        var offset = offset(record);
+        var flags = chunk.get(offset + FLAGS);
+        Person details = null;
+        if ((flags & HAS_DETAILS) != 0) {
+            var gender = chunk.get(offset + GENDER);
+            var birthDate = chunk.getInt(offset + BIRTH_DATE);
+            details = Person.builder()
+                    .firstName(getString(chunk, offset + FIRST_NAME))
+                    .lastName(getString(chunk, offset + LAST_NAME))
+                    .gender(gender < 0 ? null : Gender.values()[gender])
+                    .address(getString(chunk, offset + ADDRESS))
+                    .birthDate(birthDate == NULL_DATE ? null : LocalDate.ofEpochDay(birthDate))
+                    .build();
+        }
+        var client = new Client(getString(chunk, offset + ACCOUNT_NUMBER), getString(chunk, offset + PIN), details, 0, (flags & LOCKED) != 0);
+        client.setSavingsCents((long) LONGS.getVolatile(chunk, offset + SAVINGS));
+        return client;
+    }
+
+    /**
+     * Stores a client in its record, or in a new record if the client is not saved yet.
+     * Must be called while holding the write lock.
+     * @param client the client.
+     * @throws IllegalArgumentException if a field of the client is longer than its maximum length.
+     */
+    private void put(Client client) throws IllegalArgumentException {
+        var accountNumber = client.accountNumber();
+        if (accountNumber == null) throw new IllegalArgumentException("Account number must not be null");
+        if (!accountNumber.chars().allMatch(c -> c < 0x80)) throw new IllegalArgumentException(format("Account number [%s] must only contain ASCII characters", accountNumber));
+        var details = client.details();
+        var fields = new byte[][] {
+                encode("Account number", accountNumber, ACCOUNT_NUMBER_LENGTH),
+                encode("Pin", client.pin(), PIN_LENGTH),
+                details == null ? null : encode("First name", details.getFirstName(), NAME_LENGTH),
+                details == null ? null : encode("Last name", details.getLastName(), NAME_LENGTH),
+                details == null ? null : encode("Address", details.getAddress(), ADDRESS_LENGTH)
+        };
+        var slot = find(accountNumber);
+        // the index grows before a record is taken, so a client that does not fit leaves no record behind
+        if (slot < 0 && size + tombstones + 1 > (indexMask + 1) / 2) resizeIndex(size + 1);
+        var record = slot >= 0 ? (int) index.get(slot) - 1 : freeCount > 0 ? freeRecords[--freeCount] : newRecord();
+        var chunk = chunk(record);
+        var offset = offset(record);
+        putBytes(chunk, offset + ACCOUNT_NUMBER, fields[0]);
+        putBytes(chunk, offset + PIN, fields[1]);
+        if (details != null) {
+            putBytes(chunk, offset + FIRST_NAME, fields[2]);
+            putBytes(chunk, offset + LAST_NAME, fields[3]);
+            putBytes(chunk, offset + ADDRESS, fields[4]);
+            chunk.put(offset + GENDER, (byte) (details.getGender() == null ? -1 : details.getGender().ordinal()));
+            chunk.putInt(offset + BIRTH_DATE, details.getBirthDate() == null ? NULL_DATE : (int) details.getBirthDate().toEpochDay());
+        }
+        LONGS.setVolatile(chunk, offset + SAVINGS, client.savingsCents());
+        chunk.put(offset + FLAGS, (byte) (USED | (client.isLocked() ? LOCKED : 0) | (details != null ? HAS_DETAILS : 0)));
+        if (slot >= 0) return;
+        insert(hash(accountNumber), record);
+    }
+
+    /**
+     * Adds cents to the savings of a record, retrying if another thread changes the savings at the same time.
+     * @param record the record of the client.
+     * @param cents the cents to add.
+     * @throws ArithmeticException if the savings overflow.
+     */
+    private void addSavings(int record, long cents) throws ArithmeticException {
+        var chunk = chunk(record);
+        var offset = offset(record) + SAVINGS;
+        long current;
+        do {
+            current = (long) LONGS.getVolatile(chunk, offset);
+        } while (!LONGS.compareAndSet(chunk, offset, current, Money.add(current, cents)));
+    }
+
+    /**
+     * Gets the record of a client, must be called while holding a lock.
+     * @param accountNumber the account number of the client.
+     * @return the record of the client.
+     * @throws ClientNotFoundException if the client does not exist.
+     */
+    private int record(String accountNumber) throws ClientNotFoundException {
+        var slot = find(accountNumber);
+        if (slot < 0) throw new ClientNotFoundException(format("Client with account number [%s] does not exist", accountNumber));
+        return (int) index.get(slot) - 1;
+    }
+
+    /**
+     * Finds the index entry of an account number using linear probing, must be called while holding a lock.
+     * @param accountNumber the account number.
+     * @return the position of the entry in the index, or {@code -1} if the account number is not saved.
+     */
+    private int find(String accountNumber) {
+        var hash = hash(accountNumber);
+        for (var slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+            var entry = index.get(slot);
+            if (entry == EMPTY) return -1;
+            if (entry != TOMBSTONE && (int) (entry >>> 32) == hash) {
+                var record = (int) entry - 1;
+                if (accountNumberEquals(chunk(record), offset(record) + ACCOUNT_NUMBER, accountNumber)) return slot;
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the index, the account number must not be in the index.
+     * @param hash the hash of the account number.
+     * @param record the record of the client.
+     */
+    private void insert(int hash, int record) {
+        var slot = hash & indexMask;
+        while (index.get(slot) != EMPTY && index.get(slot) != TOMBSTONE) slot = (slot + 1) & indexMask;
+        if (index.get(slot) == TOMBSTONE) tombstones--;
+        index.put(slot, ((long) hash << 32) | (record + 1L));
+        size++;
+    }
+
+    /**
+     * Moves the entries to a new index with room for the number of clients, dropping the removed entries.
+     * The index is at most half full, so a full index doubles, and an index full of removed entries keeps its capacity.
+     * @param clients the number of clients the index must hold.
+     * @throws IllegalStateException if the index cannot hold the number of clients.
+     */
+    private void resizeIndex(int clients) throws IllegalStateException {
+        if (clients > maxIndexCapacity / 2) throw new IllegalStateException("Cannot store more than " + maxIndexCapacity / 2 + " clients");
+        var old = index;
+        var capacity = Math.max(indexCapacityFor(clients, maxIndexCapacity), initialIndexCapacity);
+        index = allocateIndex(capacity);
+        indexMask = capacity - 1;
+        size = 0;
+        tombstones = 0;
+        for (var i = 0; i < old.capacity(); i++) {
+            var entry = old.get(i);
+            if (entry != EMPTY && entry != TOMBSTONE) insert((int) (entry >>> 32), (int) entry - 1);
+        }
+    }
+
+    /**
+     * Takes the next unused record, allocating a new chunk if every chunk is full.
+     * @return the record.
+     */
+    private int newRecord() {
+        if (records == CHUNKS.size() * RECORDS_PER_CHUNK) {
+            CHUNKS.add(ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE + Long.BYTES)
+                    .alignedSlice(Long.BYTES)
+                    .order(ORDER));
+        }
+        return records++;
+    }
+
+    private ByteBuffer chunk(int record) {
+        return CHUNKS.get(record >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(int record) {
+        return (record & (RECORDS_PER_CHUNK - 1)) * RECORD_SIZE;
+    }
+
+    private static int requireExpectedClients(int expectedClients, int maxIndexCapacity) throws IllegalArgumentException {
+        if (maxIndexCapacity < MIN_INDEX_CAPACITY || maxIndexCapacity > MAX_INDEX_CAPACITY || Integer.bitCount(maxIndexCapacity) != 1) {
+            throw new IllegalArgumentException(format("Maximum index capacity must be a power of two between %d and %d", MIN_INDEX_CAPACITY, MAX_INDEX_CAPACITY));
+        }
+        if (expectedClients < 0) throw new IllegalArgumentException("Expected clients must not be negative");
+        if (expectedClients > maxIndexCapacity / 2) throw new IllegalArgumentException("Expected clients must be at most " + maxIndexCapacity / 2);
+        return expectedClients;
+    }
+
+    /**
+     * Gets the smallest capacity of the index that is at most half full with the number of clients.
+     */
+    private static int indexCapacityFor(int clients, int maxIndexCapacity) {
+        var capacity = MIN_INDEX_CAPACITY;
+        while (capacity < maxIndexCapacity && capacity / 2 < clients) capacity <<= 1;
+        return capacity;
+    }
+
+    private static LongBuffer allocateIndex(int capacity) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Long.BYTES)).order(ORDER).asLongBuffer();
+    }
+
+    /**
+     * Hash of the account number spread over the bits (MurmurHash3 finalizer), so that linear probing does not cluster.
+     */
+    private static int hash(String accountNumber) {
+        var hash = accountNumber.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Compares a stored ASCII account number with an account number without creating a {@code String}.
+     */
+    private static boolean accountNumberEquals(ByteBuffer chunk, int offset, String accountNumber) {
+        var length = chunk.get(offset) & 0xFF;
+        if (length != accountNumber.length()) return false;
+        for (var i = 0; i < length; i++) {
+            if (chunk.get(offset + 1 + i) != accountNumber.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a {@code String} to UTF-8.
+     * @return the bytes, or {@code null} if the value is {@code null}.
+     * @throws IllegalArgumentException if the {@code String} is longer than the maximum length.
+     */
+    private static byte[] encode(String field, String value, int maxLength) throws IllegalArgumentException {
+        if (value == null) return null;
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxLength) throw new IllegalArgumentException(format("%s must be at most %d bytes, but [%s] is %d bytes", field, maxLength, value, bytes.length));
+        return bytes;
+    }
+
+    /**
+     * Writes encoded bytes as their length in one byte followed by the bytes.
+     */
+    private static void putBytes(ByteBuffer chunk, int offset, byte[] bytes) {
+        if (bytes == null) {
+            chunk.put(offset, (byte) NULL_LENGTH);
+            return;
+        }
+        chunk.put(offset, (byte) bytes.length);
+        for (var i = 0; i < bytes.length; i++) chunk.put(offset + 1 + i, bytes[i]);
+    }
+
+    private static String getString(ByteBuffer chunk, int offset) {
+        var length = chunk.get(offset) & 0xFF;
+        if (length == NULL_LENGTH) return null;
+        var bytes = new byte[length];
+        for (var i = 0; i < length; i++) bytes[i] = chunk.get(offset + 1 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the last loan number and the loans of every account, must be called while holding a lock.
+     */
+    private byte[] writeLoans() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(LOAN_NUMBERS.size());
+            for (var entry : LOAN_NUMBERS.entrySet()) {
+                var loans = LOANS.getOrDefault(entry.getKey(), Collections.emptyNavigableMap());
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+                out.writeInt(loans.size());
+                for (var loan : loans.values()) {
+                    out.writeInt(loan.loanNumber());
+                    out.writeLong(loan.dateOfLoan() == null ? NULL_EPOCH_DAY : loan.dateOfLoan().toEpochDay());
+                    out.writeLong(loan.amountCents());
+                    out.writeBoolean(loan.pending());
+                    out.writeBoolean(loan.isDeclined());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the loans written by {@link #writeLoans()}.
+     */
+    private void readLoans(byte[] bytes) throws IOException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            for (var accounts = in.readInt(); accounts > 0; accounts--) {
+                var accountNumber = in.readUTF();
+                LOAN_NUMBERS.put(accountNumber, in.readInt());
+                var count = in.readInt();
+                if (count == 0) continue;
+                var loans = new TreeMap<Integer, Loan>();
+                for (var i = 0; i < count; i++) {
+                    var loanNumber = in.readInt();
+                    var epochDay = in.readLong();
+                    var loan = new Loan(loanNumber, accountNumber, epochDay == NULL_EPOCH_DAY ? null : LocalDate.ofEpochDay(epochDay), 0, false, false);
+                    loan.setAmountCents(in.readLong());
+                    loan.setPending(in.readBoolean());
+                    loan.setDeclined(in.readBoolean());
+                    loans.put(loanNumber, loan);
+                }
+                LOANS.put(accountNumber, loans);
+            }
+        }
+    }
+
+    private static Loan copy(Loan loan) {
+        var copy = new Loan(loan.loanNumber(), loan.accountNumber(), loan.dateOfLoan(), 0, loan.pending(), loan.isDeclined());
+        copy.setAmountCents(loan.amountCents());
+        return copy;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException("Snapshot ends before position " + (position + buffer.limit()));
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        var start = buffer.position();
+        while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position() - start);
+    }
+
+    /**
+     * Gets a loan using the account number and loan number, must be called while holding a lock.
+     * @param loanNumber the loan number.
+     * @param accountNumber the account number that made the loan.
+     * @return the {@code Loan}, or {@code null} if it does not exist.
+     */
+    private Loan getLoan(int loanNumber, String accountNumber) {
+        var loans = LOANS.get(accountNumber);
+        return loans == null ? null : loans.get(loanNumber);
+    }
+
+}
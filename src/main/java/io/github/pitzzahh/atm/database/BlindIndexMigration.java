@@ -0,0 +1,153 @@
+package io.github.pitzzahh.atm.database;
+
+import io.github.pitzzahh.atm.security.BlindIndex;
+import io.github.pitzzahh.atm.security.Crypto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.Future;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.List;
+
+/**
+ * Adds the {@code account_hash} blind index columns to {@code clients} and {@code loans} tables created
+ * before the columns existed, and computes the column for the existing rows.
+ * <p>Run it once with the same key as {@link InDatabase}, before running {@code loan_sequences.sql}.
+ * Account numbers are read one page at a time and every page is decrypted, hashed and updated on a separate thread,
+ * so the {@code DataSource} should allow at least {@link #setThreads(int) threads} + 1 connections.</p>
+ * @see BlindIndex
+ */
+public class BlindIndexMigration {
+
+    private static final String[] ADD_COLUMNS = {
+            "ALTER TABLE clients ADD COLUMN IF NOT EXISTS account_hash BYTEA",
+            "ALTER TABLE loans ADD COLUMN IF NOT EXISTS account_hash BYTEA"
+    };
+
+    private static final String[] ADD_INDEXES = {
+            "ALTER TABLE clients ALTER COLUMN account_hash SET NOT NULL",
+            "ALTER TABLE loans ALTER COLUMN account_hash SET NOT NULL",
+            "CREATE UNIQUE INDEX IF NOT EXISTS clients_account_hash ON clients (account_hash)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS loans_account_hash_loan_number ON loans (account_hash, loan_number)",
+            "DROP INDEX IF EXISTS loans_account_number_loan_number"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlindIndex blindIndex;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 1_000;
+
+    /**
+     * Creates a migration of the tables in the database.
+     * @param dataSource the {@code DataSource} of the database.
+     * @param blindIndex the blind index used by {@link InDatabase}.
+     */
+    public BlindIndexMigration(DataSource dataSource, BlindIndex blindIndex) {
+        this.jdbcTemplate = new JdbcTemplate(Objects.requireNonNull(dataSource, "DataSource must not be null"));
+        this.blindIndex = Objects.requireNonNull(blindIndex, "Blind index must not be null");
+    }
+
+    /**
+     * Sets the number of threads that compute and update the blind index, default is the number of processors.
+     * @param threads the number of threads.
+     * @return this {@code BlindIndexMigration} object.
+     * @throws IllegalArgumentException if the number of threads is less than one.
+     */
+    public BlindIndexMigration setThreads(int threads) throws IllegalArgumentException {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1");
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the number of account numbers in one page, default is 1000.
+     * @param batchSize the number of account numbers per page.
+     * @return this {@code BlindIndexMigration} object.
+     * @throws IllegalArgumentException if the batch size is less than one.
+     */
+    public BlindIndexMigration setBatchSize(int batchSize) throws IllegalArgumentException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Adds the columns, computes the blind index of every row without one, then adds the indexes.
+     * Rows that already have a blind index are skipped, so a failed migration can be run again.
+     * @return the number of rows updated.
+     * @throws IllegalStateException if the migration is interrupted or a page fails to be updated.
+     */
+    public long migrate() throws IllegalStateException {
+        for (var statement : ADD_COLUMNS) jdbcTemplate.execute(statement);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var updated = backfill("clients", executor) + backfill("loans", executor);
+            for (var statement : ADD_INDEXES) jdbcTemplate.execute(statement);
+            return updated;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Computes the blind index of the rows of a table, one page of account numbers per task.
+     * The next page is read while the previous pages are updated, at most two pages per thread wait to be updated.
+     * @param table the table, {@code clients} or {@code loans}.
+     * @param executor the threads that update the pages.
+     * @return the number of rows updated.
+     */
+    private long backfill(String table, ExecutorService executor) {
+        final var PAGE = "SELECT DISTINCT account_number FROM " + table +
+                " WHERE account_hash IS NULL AND account_number > ? ORDER BY account_number LIMIT ?";
+        final var UPDATE = "UPDATE " + table + " SET account_hash = ? WHERE account_number = ? AND account_hash IS NULL";
+        var pending = new Semaphore(threads * 2);
+        var futures = new ArrayList<Future<Long>>();
+        try {
+            var last = "";
+            for (var page = jdbcTemplate.queryForList(PAGE, String.class, last, batchSize);
+                 !page.isEmpty();
+                 page = jdbcTemplate.queryForList(PAGE, String.class, last, batchSize)) {
+                last = page.get(page.size() - 1);
+                var accountNumbers = page;
+                pending.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return update(UPDATE, accountNumbers);
+                    } finally {
+                        pending.release();
+                    }
+                }));
+            }
+            var updated = 0L;
+            for (var future : futures) updated += future.get();
+            return updated;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Blind index migration of " + table + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Blind index migration of " + table + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Decrypts the account numbers of a page and sets their blind index in one batch.
+     * @param query the update statement.
+     * @param accountNumbers the encrypted account numbers.
+     * @return the number of rows updated.
+     */
+    private long update(String query, List<String> accountNumbers) {
+        var arguments = new ArrayList<Object[]>(accountNumbers.size());
+        for (var accountNumber : accountNumbers) {
+            arguments.add(new Object[] {blindIndex.hash(Crypto.decrypt(accountNumber)), accountNumber});
+        }
+        var updated = 0L;
+        for (var count : jdbcTemplate.batchUpdate(query, arguments)) updated += Math.max(count, 0);
+        return updated;
+    }
+
+}
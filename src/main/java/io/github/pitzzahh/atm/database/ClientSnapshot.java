@@ -0,0 +1,141 @@
+package io.github.pitzzahh.atm.database;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.SUCCESS;
+import io.github.pitzzahh.atm.dao.OffHeapInMemory;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Exports the clients and loans of {@link InDatabase} to a snapshot that {@link OffHeapInMemory#mapSnapshot(Path)}
+ * maps at startup, and imports a snapshot back into the database.
+ * <p>Export once, for example every night, then start the in-memory DAO from the snapshot instead of reading and
+ * decrypting every client with {@link InDatabase#getAllClients()}:</p>
+ * <pre>{@code
+ * new ClientSnapshot(inDatabase).exportTo(Path.of("clients.snapshot"));
+ * AtmService atmService = new AtmService(OffHeapInMemory.mapSnapshot(Path.of("clients.snapshot")));
+ * }</pre>
+ * <p>The snapshot is not encrypted like the database, it holds the pins, the details and the savings of the clients
+ * in plaintext. It is created readable and writable only by its owner, keep it on an encrypted disk.</p>
+ * @see OffHeapInMemory
+ */
+public class ClientSnapshot {
+
+    private static final System.Logger LOGGER = System.getLogger(ClientSnapshot.class.getName());
+
+    private final AtmDAO database;
+    private int batchSize = 1_000;
+
+    /**
+     * Creates the export and import of a database.
+     * @param database the {@code AtmDAO} of the database, usually {@link InDatabase}.
+     */
+    public ClientSnapshot(AtmDAO database) {
+        this.database = Objects.requireNonNull(database, "Database must not be null");
+    }
+
+    /**
+     * Sets the number of clients saved to the database at a time when importing, default is 1000.
+     * @param batchSize the number of clients per batch.
+     * @return this {@code ClientSnapshot} object.
+     * @throws IllegalArgumentException if the batch size is less than one.
+     */
+    public ClientSnapshot setBatchSize(int batchSize) throws IllegalArgumentException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Reads every client and loan of the database and writes them to a snapshot, keeping the loan numbers.
+     * The clients are copied outside the heap first, the heap only has to hold one page of clients and the loans.
+     * @param file the snapshot, replaced if it exists, only its owner can read and write it.
+     * @return the number of clients exported.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalArgumentException if a field of a client is longer than {@link OffHeapInMemory} allows.
+     */
+    public int exportTo(Path file) throws IOException, IllegalArgumentException {
+        return OffHeapInMemory.copyOf(database).writeSnapshot(file);
+    }
+
+    /**
+     * Saves the clients and loans of a snapshot to an empty database.
+     * <p>The loans of every client are requested in loan number order. The numbers of removed loans are requested
+     * and removed again, so that the loans keep their loan numbers and the next loan of a client gets the same
+     * number it would have got before the export.</p>
+     * <p>The loans of an account that has no client in the snapshot, for example the loans of a removed client,
+     * are imported after the clients in the same way.</p>
+     * <p>If the database does not save a batch of clients completely, every client of the batch is checked with
+     * {@code doesClientExist}: the clients that were not saved are logged as a warning, they and their loans
+     * are skipped and not counted.</p>
+     * @param file the snapshot.
+     * @return the number of clients imported.
+     * @throws IOException if the snapshot cannot be read.
+     */
+    public long importFrom(Path file) throws IOException {
+        var snapshot = OffHeapInMemory.mapSnapshot(file);
+        var clients = new ArrayList<Client>(batchSize);
+        var imported = new long[1];
+        snapshot.forEachClient().accept(client -> {
+            clients.add(client);
+            if (clients.size() < batchSize) return;
+            imported[0] += save(snapshot, clients);
+        });
+        imported[0] += save(snapshot, clients);
+        for (var accountNumber : snapshot.getAllLoans().get().keySet()) {
+            if (!snapshot.doesClientExist().test(accountNumber)) saveLoans(snapshot, accountNumber);
+        }
+        return imported[0];
+    }
+
+    /**
+     * Saves a batch of clients, then the loans of the clients that were saved, and clears the batch.
+     * @return the number of clients saved.
+     */
+    private int save(AtmDAO snapshot, List<Client> clients) {
+        if (clients.isEmpty()) return 0;
+        var saved = database.saveAllClients().apply(clients) == SUCCESS ? clients : clients.stream()
+                .filter(client -> database.doesClientExist().test(client.accountNumber()))
+                .collect(Collectors.toList());
+        var skipped = clients.size() - saved.size();
+        if (skipped > 0) LOGGER.log(System.Logger.Level.WARNING, skipped + " clients of the snapshot were not saved, they and their loans are skipped");
+        for (var client : saved) saveLoans(snapshot, client.accountNumber());
+        var count = saved.size();
+        clients.clear();
+        return count;
+    }
+
+    /**
+     * Requests the loans of an account in loan number order, keeping the loan numbers.
+     */
+    private void saveLoans(AtmDAO snapshot, String accountNumber) {
+        var next = 1;
+        for (var loan : snapshot.getLoansByAccountNumber().apply(accountNumber)) {
+            var loanNumber = loan.loanNumber();
+            skipLoanNumbers(accountNumber, loanNumber - next);
+            database.requestLoan().apply(loan);
+            next = loanNumber + 1;
+        }
+        skipLoanNumbers(accountNumber, snapshot.getLoanCount().apply(accountNumber) - next);
+    }
+
+    /**
+     * Requests and removes loans to use up the loan numbers of removed loans.
+     */
+    private void skipLoanNumbers(String accountNumber, int count) {
+        for (var i = 0; i < count; i++) {
+            var skipped = new Loan(accountNumber, LocalDate.EPOCH, 0, true);
+            database.requestLoan().apply(skipped);
+            database.removeLoan().apply(skipped);
+        }
+    }
+
+}
@@ -1,6 +1,9 @@
 package io.github.pitzzahh.atm.database;
 
+import java.time.Duration;
+import com.zaxxer.hikari.HikariConfig;
 import io.github.pitzzahh.atm.dao.InDatabase;
+import com.zaxxer.hikari.HikariDataSource;
 import io.github.pitzzahh.atm.service.AtmService;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
@@ -13,6 +16,13 @@ public class DatabaseConnection {
     private String url;
     private String username;
     private String password;
+    private int minimumIdle = 1;
+    private int maximumPoolSize = 10;
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    private Duration connectionTimeout = Duration.ofSeconds(30);
+    private Duration validationTimeout = Duration.ofSeconds(5);
+    private String connectionTestQuery;
+    private PoolMetrics poolMetrics;
 
     /**
      * Sets the driver class name.
@@ -61,8 +71,108 @@ public class DatabaseConnection {
     }
 
     /**
-     * Returns the complete data source.
+     * Sets the minimum number of idle connections kept by the pool, default is 1.
+     * @param minimumIdle the minimum number of idle connections.
+     * @return a {@code DatabaseConnection} object.
+     * @see #getPooledDataSource()
+     */
+    public DatabaseConnection setMinimumIdle(int minimumIdle) {
+        this.minimumIdle = minimumIdle;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of connections of the pool, active and idle, default is 10.
+     * @param maximumPoolSize the maximum number of connections.
+     * @return a {@code DatabaseConnection} object.
+     * @see #getPooledDataSource()
+     */
+    public DatabaseConnection setMaximumPoolSize(int maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+        return this;
+    }
+
+    /**
+     * Sets how long a connection above the minimum idle can stay idle before it is closed, default is 10 minutes.
+     * @param idleTimeout the idle timeout.
+     * @return a {@code DatabaseConnection} object.
+     * @see #getPooledDataSource()
+     */
+    public DatabaseConnection setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how long a caller waits for a connection before failing, default is 30 seconds.
+     * @param connectionTimeout the acquisition timeout.
+     * @return a {@code DatabaseConnection} object.
+     * @see #getPooledDataSource()
+     */
+    public DatabaseConnection setConnectionTimeout(Duration connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how long the pool waits for a connection to be validated, default is 5 seconds.
+     * @param validationTimeout the validation timeout.
+     * @return a {@code DatabaseConnection} object.
+     * @see #getPooledDataSource()
+     */
+    public DatabaseConnection setValidationTimeout(Duration validationTimeout) {
+        this.validationTimeout = validationTimeout;
+        return this;
+    }
+
+    /**
+     * Sets the query used to validate connections, only needed for drivers that do not support {@code Connection.isValid()}.
+     * @param connectionTestQuery the validation query, example: {@code SELECT 1}.
+     * @return a {@code DatabaseConnection} object.
+     * @see #getPooledDataSource()
+     */
+    public DatabaseConnection setConnectionTestQuery(String connectionTestQuery) {
+        this.connectionTestQuery = connectionTestQuery;
+        return this;
+    }
+
+    /**
+     * Returns a data source that reuses connections from a pool.
+     * The pool should be closed when it is no longer needed.
+     * @return the pooled datasource.
+     * @see #getPoolMetrics()
+     * @see AtmService
+     * @see InDatabase
+     */
+    public HikariDataSource getPooledDataSource() {
+        var config = new HikariConfig();
+        if (this.driverClassName != null) config.setDriverClassName(this.driverClassName);
+        config.setJdbcUrl(this.url);
+        config.setUsername(this.username);
+        config.setPassword(this.password);
+        config.setMinimumIdle(this.minimumIdle);
+        config.setMaximumPoolSize(this.maximumPoolSize);
+        config.setIdleTimeout(this.idleTimeout.toMillis());
+        config.setConnectionTimeout(this.connectionTimeout.toMillis());
+        config.setValidationTimeout(this.validationTimeout.toMillis());
+        if (this.connectionTestQuery != null) config.setConnectionTestQuery(this.connectionTestQuery);
+        this.poolMetrics = new PoolMetrics();
+        config.setMetricsTrackerFactory(this.poolMetrics);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Returns the metrics of the last pool created by {@link #getPooledDataSource()}.
+     * @return the {@code PoolMetrics}, or {@code null} if no pool was created.
+     */
+    public PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
+    /**
+     * Returns the complete data source, the data source opens a new connection every time one is needed.
      * @return the datasource.
+     * @see #getPooledDataSource()
      * @see AtmService
      * @see InDatabase
      */
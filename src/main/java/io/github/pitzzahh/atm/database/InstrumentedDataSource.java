@@ -0,0 +1,257 @@
+package io.github.pitzzahh.atm.database;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.ResultSet;
+import javax.sql.DataSource;
+import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@code DataSource} that records every statement executed on its connections as a {@code JdbcStatement} event
+ * of Java Flight Recorder, with the SQL, the account hash bound to the statement and the number of rows.
+ * <p>Pass it to {@code InDatabase} instead of the {@code DataSource} it wraps:</p>
+ * <pre>
+ * inDatabase.setDataSource().accept(new InstrumentedDataSource(databaseConnection.getPooledDataSource()));
+ * </pre>
+ * <p>Set a {@link StatementStatistics} to also keep the count, the time and the rows of every distinct statement,
+ * and to log the slow statements. A batch of statements added with {@code addBatch(String)} is recorded under
+ * the distinct SQL of its statements.</p>
+ * <p>The connections, statements and result sets are proxies, every call goes through reflection.
+ * The result set of a query is only wrapped to count the rows while a recording has the event enabled,
+ * or if there is a {@code StatementStatistics}.</p>
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private volatile StatementStatistics statementStatistics;
+
+    /**
+     * Creates an instrumented {@code DataSource}.
+     * @param targetDataSource the {@code DataSource} that creates the connections.
+     */
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * Records the statistics of the statements executed on the connections created after this call.
+     * @param statementStatistics the statistics, {@code null} to stop recording them.
+     * @return this {@code InstrumentedDataSource} object.
+     */
+    public InstrumentedDataSource setStatementStatistics(StatementStatistics statementStatistics) {
+        this.statementStatistics = statementStatistics;
+        return this;
+    }
+
+    /**
+     * Get the statistics of the statements.
+     * @return the {@code StatementStatistics}, {@code null} if they are not recorded.
+     */
+    public StatementStatistics getStatementStatistics() {
+        return statementStatistics;
+    }
+
+    /**
+     * Gets a connection of the wrapped {@code DataSource} that records its statements.
+     * @return a {@code Connection} object.
+     * @throws SQLException if the wrapped {@code DataSource} cannot connect.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(obtainTargetDataSource().getConnection());
+    }
+
+    /**
+     * Gets a connection of the wrapped {@code DataSource} that records its statements.
+     * @param username the username of the database.
+     * @param password the password of the database.
+     * @return a {@code Connection} object.
+     * @throws SQLException if the wrapped {@code DataSource} cannot connect.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection connection(Connection connection) {
+        var statistics = statementStatistics;
+        return proxy(Connection.class, (proxy, method, args) -> {
+            var result = invoke(connection, method, args);
+            // createStatement, prepareStatement and prepareCall
+            if (result instanceof Statement) {
+                var sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return proxy(method.getReturnType(), new StatementHandler((Statement) result, sql, statistics));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Records the parameters and the executions of a statement.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String sql;
+        private final StatementStatistics statistics;
+        private final List<Object> parameters = new ArrayList<>();
+        private final List<String> batchSql = new ArrayList<>();
+        private int accountHashIndex;
+        private byte[] accountHash;
+        private int batchSize;
+
+        private StatementHandler(Statement statement, String sql, StatementStatistics statistics) {
+            this.statement = statement;
+            this.sql = sql;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (statistics != null && args != null && args.length > 1 && args[0] instanceof Integer && method.getName().startsWith("set")) {
+                var index = (int) args[0];
+                while (parameters.size() < index) parameters.add(null);
+                parameters.set(index - 1, "setNull".equals(method.getName()) ? null : args[1]);
+            }
+            switch (method.getName()) {
+                case "setBytes":
+                case "setObject":
+                    if (args[1] instanceof byte[] && (accountHashIndex == 0 || accountHashIndex == (int) args[0])) {
+                        accountHashIndex = (int) args[0];
+                        accountHash = (byte[]) args[1];
+                    }
+                    break;
+                case "clearParameters":
+                    parameters.clear();
+                    accountHashIndex = 0;
+                    accountHash = null;
+                    break;
+                case "addBatch":
+                    if (args != null && args[0] instanceof String) batchSql.add((String) args[0]);
+                    batchSize++;
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    batchSql.clear();
+                    break;
+                case "executeQuery":
+                    return executeQuery(method, args);
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(method, args);
+                default:
+            }
+            return InstrumentedDataSource.invoke(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            var start = System.nanoTime();
+            var event = new JdbcStatementEvent();
+            event.begin();
+            var rowCount = -1L;
+            try {
+                var result = InstrumentedDataSource.invoke(statement, method, args);
+                rowCount = rowCount(result);
+                return result;
+            } finally {
+                finish(event, System.nanoTime() - start, 0, args, rowCount);
+                if (method.getName().endsWith("Batch")) {
+                    batchSize = 0;
+                    batchSql.clear();
+                }
+            }
+        }
+
+        private ResultSet executeQuery(Method method, Object[] args) throws Throwable {
+            var start = System.nanoTime();
+            var event = new JdbcStatementEvent();
+            event.begin();
+            ResultSet resultSet;
+            try {
+                resultSet = (ResultSet) InstrumentedDataSource.invoke(statement, method, args);
+            } catch (Throwable e) {
+                finish(event, System.nanoTime() - start, 0, args, -1);
+                throw e;
+            }
+            var executed = System.nanoTime();
+            if (!event.isEnabled() && statistics == null) return resultSet;
+            var rows = new long[1];
+            var closed = new boolean[1];
+            return proxy(ResultSet.class, (proxy, resultSetMethod, resultSetArgs) -> {
+                var result = InstrumentedDataSource.invoke(resultSet, resultSetMethod, resultSetArgs);
+                if ("next".equals(resultSetMethod.getName()) && (Boolean) result) rows[0]++;
+                else if ("close".equals(resultSetMethod.getName()) && !closed[0]) {
+                    closed[0] = true;
+                    finish(event, executed - start, System.nanoTime() - executed, args, rows[0]);
+                }
+                return result;
+            });
+        }
+
+        private long rowCount(Object result) throws SQLException {
+            if (result instanceof Integer || result instanceof Long) return ((Number) result).longValue();
+            if (Boolean.FALSE.equals(result)) return statement.getUpdateCount();
+            var rows = 0L;
+            if (result instanceof int[]) for (var count : (int[]) result) rows += Math.max(count, 0);
+            else if (result instanceof long[]) for (var count : (long[]) result) rows += Math.max(count, 0);
+            else return -1;
+            return rows;
+        }
+
+        private void finish(JdbcStatementEvent event, long nanos, long fetchNanos, Object[] args, long rowCount) {
+            var executed = sql(args);
+            if (statistics != null) statistics.record(executed, nanos, fetchNanos, rowCount, batchSize, parameters);
+            event.end();
+            if (event.shouldCommit()) {
+                event.sql = executed;
+                event.accountHash = accountHash == null ? null : hex(accountHash);
+                event.rowCount = rowCount;
+                event.batchSize = batchSize;
+                event.commit();
+            }
+        }
+
+        /**
+         * The SQL passed to the execute method, the SQL of the statement, or the distinct SQL of a batch.
+         */
+        private String sql(Object[] args) {
+            if (args != null && args.length > 0 && args[0] instanceof String) return (String) args[0];
+            if (sql == null && !batchSql.isEmpty()) return batchSql.stream().distinct().collect(Collectors.joining("; "));
+            return sql;
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        var chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.pitzzahh.atm.database;
+
+import jdk.jfr.Description;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * A statement executed on a connection of an {@link InstrumentedDataSource}, recorded by Java Flight Recorder.
+ * A query lasts until its result set is closed, so it includes reading and mapping the rows.
+ */
+@Name("io.github.pitzzahh.atm.JdbcStatement")
+@Label("JDBC Statement")
+@Category({"ATM", "JDBC"})
+@Description("A statement executed by the ATM API, a query lasts until its result set is closed")
+final class JdbcStatementEvent extends Event {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Account Hash")
+    @Description("The hexadecimal blind index of the account bound to the statement, of the last row of a batch")
+    String accountHash;
+
+    @Label("Row Count")
+    @Description("The number of rows changed, or read from the result set of a query, -1 if unknown or failed")
+    long rowCount;
+
+    @Label("Batch Size")
+    @Description("The number of rows of a batch, 0 if the statement is not a batch")
+    int batchSize;
+}
@@ -0,0 +1,127 @@
+package io.github.pitzzahh.atm.database;
+
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Metrics of a connection pool created by {@link DatabaseConnection#getPooledDataSource()}.
+ * <p>Connection counts are sampled from the pool at most once per second,
+ * acquire latency and timeouts are recorded on every {@code getConnection()} call.</p>
+ * @see DatabaseConnection
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private volatile PoolStats poolStats;
+
+    /**
+     * Creates the tracker used by the pool, called once when the pool starts.
+     * @param poolName the name of the pool.
+     * @param poolStats the connection counts of the pool.
+     * @return an {@code IMetricsTracker} that records into this object.
+     */
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireCount.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                maxAcquireNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.increment();
+            }
+        };
+    }
+
+    /**
+     * Get the number of connections that are in use.
+     * @return the number of active connections, {@code 0} if the pool has not started.
+     */
+    public int getActiveConnections() {
+        var stats = poolStats;
+        return stats == null ? 0 : stats.getActiveConnections();
+    }
+
+    /**
+     * Get the number of connections that are waiting to be used.
+     * @return the number of idle connections, {@code 0} if the pool has not started.
+     */
+    public int getIdleConnections() {
+        var stats = poolStats;
+        return stats == null ? 0 : stats.getIdleConnections();
+    }
+
+    /**
+     * Get the number of open connections, active and idle.
+     * @return the number of connections, {@code 0} if the pool has not started.
+     */
+    public int getTotalConnections() {
+        var stats = poolStats;
+        return stats == null ? 0 : stats.getTotalConnections();
+    }
+
+    /**
+     * Get the number of threads waiting for a connection.
+     * @return the number of waiting threads, {@code 0} if the pool has not started.
+     */
+    public int getWaitingThreads() {
+        var stats = poolStats;
+        return stats == null ? 0 : stats.getPendingThreads();
+    }
+
+    /**
+     * Get the number of connections handed out by the pool.
+     * @return the number of acquired connections.
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * Get the average time it took to acquire a connection.
+     * @return the average acquire latency in nanoseconds, {@code 0} if no connection was acquired.
+     */
+    public long getAverageAcquireNanos() {
+        var count = acquireCount.sum();
+        return count == 0 ? 0 : acquireNanos.sum() / count;
+    }
+
+    /**
+     * Get the longest time it took to acquire a connection.
+     * @return the maximum acquire latency in nanoseconds.
+     */
+    public long getMaxAcquireNanos() {
+        return maxAcquireNanos.get();
+    }
+
+    /**
+     * Get the number of times a connection could not be acquired within the connection timeout.
+     * @return the number of acquire timeouts.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + getActiveConnections() +
+                ", idle=" + getIdleConnections() +
+                ", waiting=" + getWaitingThreads() +
+                ", acquired=" + getAcquireCount() +
+                ", averageAcquireNanos=" + getAverageAcquireNanos() +
+                ", maxAcquireNanos=" + getMaxAcquireNanos() +
+                ", timeouts=" + getTimeoutCount();
+    }
+
+}
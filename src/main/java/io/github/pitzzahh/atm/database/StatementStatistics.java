@@ -0,0 +1,232 @@
+package io.github.pitzzahh.atm.database;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.Comparator;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the statements executed on the connections of an {@link InstrumentedDataSource}, for every distinct SQL.
+ * <p>Every statement records its count, its time and the number of rows it changed, or read for a query.
+ * The time of a query is the time of {@code executeQuery}, the time spent reading and mapping its rows until
+ * the result set is closed is recorded separately as its fetch time.
+ * The statements added to a batch with {@code Statement.addBatch(String)} are recorded together,
+ * under their distinct SQL joined by {@code "; "}.</p>
+ * <p>Statements that take longer than the slow statement threshold are logged as a warning, with the shapes of their
+ * parameters, the type and the length of every value but not the value. The threshold is disabled by default
+ * and only applies to the time of the statement, not to the fetch time of a query.</p>
+ * @see InstrumentedDataSource#setStatementStatistics(StatementStatistics)
+ */
+public class StatementStatistics {
+
+    private static final System.Logger LOGGER = System.getLogger(StatementStatistics.class.getName());
+
+    private final ConcurrentMap<String, Query> queries = new ConcurrentHashMap<>();
+    private volatile long slowStatementThresholdNanos = Long.MAX_VALUE;
+    private volatile System.Logger logger = LOGGER;
+
+    /**
+     * Sets the time after which a statement is logged as slow, disabled by default.
+     * @param slowStatementThreshold the threshold, {@code null} to disable the log.
+     * @return this {@code StatementStatistics} object.
+     * @throws IllegalArgumentException if the threshold is negative.
+     */
+    public StatementStatistics setSlowStatementThreshold(Duration slowStatementThreshold) throws IllegalArgumentException {
+        if (slowStatementThreshold != null && slowStatementThreshold.isNegative()) throw new IllegalArgumentException("Slow statement threshold must not be negative");
+        this.slowStatementThresholdNanos = slowStatementThreshold == null ? Long.MAX_VALUE : slowStatementThreshold.toNanos();
+        return this;
+    }
+
+    /**
+     * Get the time after which a statement is logged as slow.
+     * @return the threshold, {@code null} if the log is disabled.
+     */
+    public Duration getSlowStatementThreshold() {
+        var nanos = slowStatementThresholdNanos;
+        return nanos == Long.MAX_VALUE ? null : Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Sets the logger of the slow statements, default is the {@code System.Logger} named after this class.
+     * @param logger the logger.
+     * @return this {@code StatementStatistics} object.
+     */
+    public StatementStatistics setLogger(System.Logger logger) {
+        this.logger = Objects.requireNonNull(logger, "Logger must not be null");
+        return this;
+    }
+
+    /**
+     * Get the statistics of every statement executed since the last {@link #reset()}.
+     * @return an unmodifiable {@code Map<String, Query>}, the key is the SQL of the statement.
+     */
+    public Map<String, Query> getStatistics() {
+        return Collections.unmodifiableMap(queries);
+    }
+
+    /**
+     * Get the statistics of the statements that took the most time in total, the statements to look at first.
+     * @param limit the maximum number of statements.
+     * @return a {@code List<Query>} sorted by total time, the longest first.
+     */
+    public List<Query> getSlowest(int limit) {
+        return queries.values()
+                .stream()
+                .sorted(Comparator.comparingLong(Query::getTotalNanos).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Removes the statistics of every statement.
+     */
+    public void reset() {
+        queries.clear();
+    }
+
+    /**
+     * Records one execution of a statement, and logs it if it is slow.
+     * @param sql the SQL of the statement.
+     * @param nanos the time of the statement.
+     * @param fetchNanos the time spent reading the result set of a query, {@code 0} for other statements.
+     * @param rowCount the number of rows, negative if unknown.
+     * @param batchSize the number of rows of the batch, {@code 0} if the statement is not a batch.
+     * @param parameters the parameters of the statement, of the last row of a batch.
+     */
+    void record(String sql, long nanos, long fetchNanos, long rowCount, int batchSize, List<Object> parameters) {
+        if (sql == null) return;
+        queries.computeIfAbsent(sql, Query::new).record(nanos, fetchNanos, rowCount);
+        if (nanos < slowStatementThresholdNanos) return;
+        logger.log(System.Logger.Level.WARNING, () -> String.format(
+                "Slow statement took %.3f ms, %d rows%s%s, parameters %s: %s",
+                nanos / 1e6,
+                rowCount,
+                fetchNanos == 0 ? "" : String.format(" fetched in %.3f ms", fetchNanos / 1e6),
+                batchSize == 0 ? "" : ", batch of " + batchSize,
+                shapes(parameters),
+                sql
+        ));
+    }
+
+    /**
+     * Describes the parameters without their values, for example {@code [byte[32], String(44), Boolean]}.
+     */
+    private static String shapes(List<Object> parameters) {
+        return parameters.stream()
+                .map(value -> {
+                    if (value == null) return "null";
+                    if (value instanceof byte[]) return "byte[" + ((byte[]) value).length + "]";
+                    if (value instanceof CharSequence) return "String(" + ((CharSequence) value).length() + ")";
+                    return value.getClass().getSimpleName();
+                })
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    @Override
+    public String toString() {
+        return getSlowest(Integer.MAX_VALUE)
+                .stream()
+                .map(Query::toString)
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /**
+     * The statistics of one statement.
+     */
+    public static final class Query {
+
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder fetchNanos = new LongAdder();
+        private final LongAdder rowCount = new LongAdder();
+
+        private Query(String sql) {
+            this.sql = Objects.requireNonNull(sql);
+        }
+
+        private void record(long nanos, long fetch, long rows) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            fetchNanos.add(fetch);
+            if (rows > 0) rowCount.add(rows);
+        }
+
+        /**
+         * Get the SQL of the statement.
+         * @return the SQL.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Get the number of times the statement was executed.
+         * @return the number of executions.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Get the time of every execution of the statement.
+         * @return the total time in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Get the average time of an execution of the statement.
+         * @return the average time in nanoseconds, {@code 0} if the statement was not executed.
+         */
+        public long getAverageNanos() {
+            var executions = count.sum();
+            return executions == 0 ? 0 : totalNanos.sum() / executions;
+        }
+
+        /**
+         * Get the longest time of an execution of the statement.
+         * @return the maximum time in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Get the time spent reading the rows of the result sets of a query, after every execution.
+         * @return the total fetch time in nanoseconds, {@code 0} if the statement is not a query.
+         */
+        public long getFetchNanos() {
+            return fetchNanos.sum();
+        }
+
+        /**
+         * Get the number of rows changed, or read for a query, by every execution of the statement.
+         * @return the number of rows.
+         */
+        public long getRowCount() {
+            return rowCount.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() +
+                    ", totalNanos=" + getTotalNanos() +
+                    ", averageNanos=" + getAverageNanos() +
+                    ", maxNanos=" + getMaxNanos() +
+                    ", fetchNanos=" + getFetchNanos() +
+                    ", rows=" + getRowCount() +
+                    ", sql=" + sql;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package io.github.pitzzahh.atm.entity;
 import java.util.Objects;
 import java.util.Currency;
 import java.text.NumberFormat;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.function.Supplier;
 import io.github.pitzzahh.util.utilities.classes.Person;
 import static io.github.pitzzahh.util.utilities.classes.Colors.*;
 
@@ -15,27 +18,62 @@ public final class Client {
      * {@code NumberFormat} object for formatting numbers.
      */
     private static final NumberFormat NUMBER_FORMAT = NumberFormat.getInstance();
+
+    /**
+     * {@code VarHandle} of the savings, used to update the savings with compare-and-set instead of a lock.
+     */
+    private static final VarHandle SAVINGS;
+
+    static {
+        try {
+            SAVINGS = MethodHandles.lookup().findVarHandle(Client.class, "savings", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String accountNumber;
     private String pin;
     private Person details;
-    private double savings;
+    private volatile long savings;
     private boolean isLocked;
+    private volatile Supplier<String> pinLoader;
+    private volatile Supplier<Person> detailsLoader;
 
     /**
      * @param accountNumber the account number, denoted by a 9-digit number.
      * @param pin           the pin for the account, denoted by a 6-digit number.
      * @param details       a {@code Person} object containing the details of the person with an account.
-     * @param savings       the current savings in this account.
+     * @param savings       the current savings in this account, rounded to the nearest cent.
      * @param isLocked      {@code true} if the account is locked, otherwise false.
      */
     public Client(String accountNumber, String pin, Person details, double savings, boolean isLocked) {
         this.accountNumber = accountNumber;
         this.pin = pin;
         this.details = details;
-        this.savings = savings;
+        this.savings = Money.toCents(savings);
         this.isLocked = isLocked;
     }
 
+    /**
+     * Creates a client whose pin and details are only computed the first time they are read.
+     * Used when the pin and details are encrypted, so that reading the savings or the status of the account
+     * does not decrypt them. The loaders are called at most once, unless the value is set before.
+     * @param accountNumber the account number, denoted by a 9-digit number.
+     * @param pin           computes the pin for the account.
+     * @param details       computes the details of the person with an account.
+     * @param savingsCents  the current savings in this account, in cents.
+     * @param isLocked      {@code true} if the account is locked, otherwise false.
+     * @return a {@code Client} object.
+     */
+    public static Client lazy(String accountNumber, Supplier<String> pin, Supplier<Person> details, long savingsCents, boolean isLocked) {
+        var client = new Client(accountNumber, null, null, 0, isLocked);
+        client.savings = savingsCents;
+        client.pinLoader = Objects.requireNonNull(pin);
+        client.detailsLoader = Objects.requireNonNull(details);
+        return client;
+    }
+
     /**
      * Empty client object.
      */
@@ -57,7 +95,7 @@ public final class Client {
                 "GENDER        : " + BLUE_BOLD + String.join(" ", this.details().getGender().name().split("_")) + "\n" +
                 "ADDRESS       : " + RED_BOLD + this.details().getAddress() + "\n" +
                 "BIRTH DATE    : " + PURPLE_BOLD + this.details().getBirthDate().toString() + "\n" +
-                "BALANCE       : " + YELLOW_BOLD_BRIGHT + Currency.getInstance("PHP").getSymbol().concat(NUMBER_FORMAT.format(this.savings)) + RESET + "\n";
+                "BALANCE       : " + YELLOW_BOLD_BRIGHT + Currency.getInstance("PHP").getSymbol().concat(NUMBER_FORMAT.format(this.savings())) + RESET + "\n";
     }
 
     /**
@@ -73,6 +111,7 @@ public final class Client {
      * @return the pin of a {@code Client}.
      */
     public String pin() {
+        if (pinLoader != null) loadPin();
         return pin;
     }
 
@@ -82,6 +121,7 @@ public final class Client {
      * @see Person
      */
     public Person details() {
+        if (detailsLoader != null) loadDetails();
         return details;
     }
 
@@ -90,6 +130,15 @@ public final class Client {
      * @return the savings of a client.
      */
     public double savings() {
+        return Money.toDouble(savings);
+    }
+
+    /**
+     * Returns the savings in cents.
+     * @return the savings of a client, in cents.
+     * @see Money
+     */
+    public long savingsCents() {
         return savings;
     }
 
@@ -113,8 +162,9 @@ public final class Client {
      * Sets the pin of a client.
      * @param pin the pin of a client.
      */
-    public void setPin(String pin) {
+    public synchronized void setPin(String pin) {
         this.pin = pin;
+        this.pinLoader = null;
     }
 
     /**
@@ -122,16 +172,66 @@ public final class Client {
      * @param details the details of a client.
      * @see Person
      */
-    public void setDetails(Person details) {
+    public synchronized void setDetails(Person details) {
         this.details = details;
+        this.detailsLoader = null;
     }
 
     /**
-     * Sets the savings of a client.
+     * Sets the savings of a client, rounded to the nearest cent.
      * @param savings the savings of a client.
      */
     public void setSavings(double savings) {
-        this.savings = savings;
+        this.savings = Money.toCents(savings);
+    }
+
+    /**
+     * Sets the savings of a client in cents.
+     * @param savingsCents the savings of a client, in cents.
+     * @see Money
+     */
+    public void setSavingsCents(long savingsCents) {
+        this.savings = savingsCents;
+    }
+
+    /**
+     * Sets the savings of a client in cents, only if the savings are still the expected savings.
+     * @param expectedCents the expected savings, in cents.
+     * @param savingsCents the new savings, in cents.
+     * @return {@code true} if the savings are set, {@code false} if the savings changed.
+     */
+    public boolean compareAndSetSavingsCents(long expectedCents, long savingsCents) {
+        return SAVINGS.compareAndSet(this, expectedCents, savingsCents);
+    }
+
+    /**
+     * Adds cents to the savings of a client without a lock, retrying if another thread changes the savings at the same time.
+     * @param cents the cents to add, negative to subtract.
+     * @return the new savings, in cents.
+     * @throws ArithmeticException if the savings overflow.
+     */
+    public long addSavingsCents(long cents) throws ArithmeticException {
+        long current;
+        long updated;
+        do {
+            current = savings;
+            updated = Money.add(current, cents);
+        } while (!SAVINGS.compareAndSet(this, current, updated));
+        return updated;
+    }
+
+    /**
+     * Subtracts cents from the savings of a client without a lock, only if the savings are enough.
+     * @param cents the cents to subtract.
+     * @return {@code true} if the cents are subtracted, {@code false} if the savings are less than the cents.
+     */
+    public boolean withdrawSavingsCents(long cents) {
+        long current;
+        do {
+            current = savings;
+            if (current < cents) return false;
+        } while (!SAVINGS.compareAndSet(this, current, current - cents));
+        return true;
     }
 
     /**
@@ -142,21 +242,41 @@ public final class Client {
         isLocked = locked;
     }
 
+    /**
+     * Computes the pin of a lazy client, the loader is cleared after so that it is only called once.
+     */
+    private synchronized void loadPin() {
+        var loader = pinLoader;
+        if (loader == null) return;
+        this.pin = loader.get();
+        this.pinLoader = null;
+    }
+
+    /**
+     * Computes the details of a lazy client, the loader is cleared after so that it is only called once.
+     */
+    private synchronized void loadDetails() {
+        var loader = detailsLoader;
+        if (loader == null) return;
+        this.details = loader.get();
+        this.detailsLoader = null;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) return true;
         if (obj == null || obj.getClass() != this.getClass()) return false;
         var that = (Client) obj;
         return Objects.equals(this.accountNumber, that.accountNumber) &&
-                Objects.equals(this.pin, that.pin) &&
-                Objects.equals(this.details, that.details) &&
-                Double.doubleToLongBits(this.savings) == Double.doubleToLongBits(that.savings) &&
+                Objects.equals(this.pin(), that.pin()) &&
+                Objects.equals(this.details(), that.details()) &&
+                this.savings == that.savings &&
                 this.isLocked == that.isLocked;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(accountNumber, pin, details, savings, isLocked);
+        return Objects.hash(accountNumber, pin(), details(), savings, isLocked);
     }
 
 }
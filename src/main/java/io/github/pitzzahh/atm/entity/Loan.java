@@ -18,7 +18,7 @@ public final class Loan {
     private int loanNumber;
     private String accountNumber;
     private LocalDate dateOfLoan;
-    private double amount;
+    private long amount;
     private boolean pending;
     private boolean isDeclined;
 
@@ -34,7 +34,7 @@ public final class Loan {
         this.loanNumber = loanNumber;
         this.accountNumber = accountNumber;
         this.dateOfLoan = dateOfLoan;
-        this.amount = amount;
+        this.amount = Money.toCents(amount);
         this.pending = pending;
         this.isDeclined = isDeclined;
     }
@@ -103,7 +103,7 @@ public final class Loan {
         return "LOAN NUMBER   : " + BLUE_BOLD_BRIGHT + loanNumber + "\n" +
                "ACCOUNT NUMBER: " + CYAN_BOLD_BRIGHT + accountNumber + "\n" +
                "DATE OF LOAN  : " + YELLOW_BOLD_BRIGHT + dateOfLoan + "\n" +
-               "AMOUNT        : " + RED_BOLD_BRIGHT + NUMBER_FORMAT.format(amount) + RESET + "\n";
+               "AMOUNT        : " + RED_BOLD_BRIGHT + NUMBER_FORMAT.format(amount()) + RESET + "\n";
     }
 
     /**
@@ -136,6 +136,15 @@ public final class Loan {
      * @return a {@code double} containing the amount of the loan.
      */
     public double amount() {
+        return Money.toDouble(amount);
+    }
+
+    /**
+     * Returns the amount of the loan in cents.
+     * @return the amount of the loan, in cents.
+     * @see Money
+     */
+    public long amountCents() {
         return amount;
     }
 
@@ -185,7 +194,16 @@ public final class Loan {
      * @param amount a {@code double} containing the amount of the loan.
      */
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amount = Money.toCents(amount);
+    }
+
+    /**
+     * Sets the amount of the loan in cents.
+     * @param amountCents the amount of the loan, in cents.
+     * @see Money
+     */
+    public void setAmountCents(long amountCents) {
+        this.amount = amountCents;
     }
 
     /**
@@ -212,7 +230,7 @@ public final class Loan {
         return this.loanNumber == that.loanNumber &&
                 Objects.equals(this.accountNumber, that.accountNumber) &&
                 Objects.equals(this.dateOfLoan, that.dateOfLoan) &&
-                Double.doubleToLongBits(this.amount) == Double.doubleToLongBits(that.amount) &&
+                this.amount == that.amount &&
                 this.pending == that.pending &&
                 this.isDeclined == that.isDeclined;
     }
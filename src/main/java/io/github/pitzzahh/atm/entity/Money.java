@@ -0,0 +1,68 @@
+package io.github.pitzzahh.atm.entity;
+
+/**
+ * Amounts of money stored as a {@code long} number of cents.
+ * <p>Savings and loan amounts are kept in cents, so adding them never rounds, and the {@code double}
+ * methods of {@link Client} and {@link Loan} are only views of the cents.
+ * The database stores the cents as a short base 36 {@code String} before it is encrypted.</p>
+ */
+public final class Money {
+
+    /**
+     * The number of cents in one unit of the currency.
+     */
+    public static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding to the nearest cent.
+     * @param amount the amount.
+     * @return the amount in cents.
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * CENTS_PER_UNIT);
+    }
+
+    /**
+     * Converts cents to an amount.
+     * @param cents the amount in cents.
+     * @return the amount.
+     */
+    public static double toDouble(long cents) {
+        return (double) cents / CENTS_PER_UNIT;
+    }
+
+    /**
+     * Adds two amounts in cents.
+     * @param cents the first amount in cents.
+     * @param otherCents the second amount in cents.
+     * @return the sum in cents.
+     * @throws ArithmeticException if the sum overflows.
+     */
+    public static long add(long cents, long otherCents) throws ArithmeticException {
+        return Math.addExact(cents, otherCents);
+    }
+
+    /**
+     * Encodes cents to the {@code String} stored in the database, before it is encrypted.
+     * @param cents the amount in cents.
+     * @return the cents in base 36, at most 13 characters.
+     */
+    public static String encode(long cents) {
+        return Long.toString(cents, Character.MAX_RADIX);
+    }
+
+    /**
+     * Decodes the {@code String} stored in the database, after it is decrypted.
+     * Amounts written before the cents existed are {@code double} values, they always contain a {@code '.'}.
+     * @param value the value of the column.
+     * @return the amount in cents.
+     * @throws NumberFormatException if the value is not an amount.
+     */
+    public static long decode(String value) throws NumberFormatException {
+        return value.indexOf('.') >= 0 ? toCents(Double.parseDouble(value)) : Long.parseLong(value, Character.MAX_RADIX);
+    }
+
+}
@@ -0,0 +1,685 @@
+package io.github.pitzzahh.atm.journal;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.CANNOT_PERFORM_OPERATION;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Executors;
+import io.github.pitzzahh.atm.dao.ObjLongFunction;
+import io.github.pitzzahh.atm.security.OwnerOnlyFiles;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import java.io.BufferedOutputStream;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.function.ToLongFunction;
+import java.io.UncheckedIOException;
+import java.util.function.BiFunction;
+import java.nio.channels.FileChannel;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Keeps the data of an in-memory {@link AtmDAO} in a write-ahead log and snapshots, so that it survives restarts.
+ * <p>Every operation that changes the data is called on the in-memory {@code AtmDAO} and then appended to the log,
+ * the operation returns once its record is committed according to the {@link FsyncPolicy}.
+ * Operations that change the data are called one at a time, so that the log has the same order as the changes;
+ * the records of concurrent operations are written together (group commit). Operations that only read the data
+ * are called on the in-memory {@code AtmDAO} directly.</p>
+ * <p>A snapshot writes the whole state as a compact log and starts a new log, the older snapshot and logs are then deleted.
+ * Operations that change the data wait while a snapshot is written. When created, the latest snapshot and the logs
+ * written after it are replayed into the in-memory {@code AtmDAO}, a record that was not completely written is dropped.</p>
+ * <p>The directory contains {@code snapshot-<generation>.bin} and {@code journal-<generation>.log} files,
+ * only one {@code DurableAtmDAO} may use a directory at a time.</p>
+ * <p>The files are not encrypted, they hold the pins, the details and the savings of the clients in plaintext.
+ * They are created readable and writable only by their owner, and a directory that is created is only accessible
+ * by its owner; on file systems without POSIX permissions, restrict the access to the directory instead.</p>
+ * @see OwnerOnlyFiles
+ * @see FsyncPolicy
+ */
+public class DurableAtmDAO implements AtmDAO, AutoCloseable {
+
+    private static final Pattern FILE_NAME = Pattern.compile("(snapshot|journal)-(\\d+)\\.(bin|log)");
+    private static final int SNAPSHOT_BATCH_SIZE = 1_000;
+
+    private final AtmDAO delegate;
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScheduledExecutorService snapshots;
+    private WriteAheadLog log;
+    private long generation;
+
+    /**
+     * Creates a {@code DurableAtmDAO} and loads the data saved in the directory into the in-memory {@code AtmDAO}.
+     * @param delegate the empty in-memory {@code AtmDAO}, for example {@code InMemory}, that keeps the data.
+     * @param directory the directory of the snapshots and logs, created if it does not exist.
+     * @param policy when the records are forced to the disk.
+     * @throws UncheckedIOException if the snapshot or the logs cannot be read, or the log cannot be opened.
+     */
+    public DurableAtmDAO(AtmDAO delegate, Path directory, FsyncPolicy policy) throws UncheckedIOException {
+        this.delegate = Objects.requireNonNull(delegate, "AtmDAO must not be null");
+        this.directory = Objects.requireNonNull(directory, "Directory must not be null");
+        this.policy = Objects.requireNonNull(policy, "Fsync policy must not be null");
+        try {
+            OwnerOnlyFiles.createDirectories(directory);
+            recover();
+            this.log = new WriteAheadLog(journal(generation), policy);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover the data in " + directory, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot periodically, in a background thread.
+     * @param interval the time between the end of a snapshot and the start of the next one.
+     * @return this {@code DurableAtmDAO} object.
+     * @throws IllegalArgumentException if the interval is not positive.
+     * @throws IllegalStateException if snapshots are already scheduled.
+     */
+    public DurableAtmDAO scheduleSnapshots(Duration interval) throws IllegalArgumentException, IllegalStateException {
+        if (interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("Snapshot interval must be positive");
+        if (snapshots != null) throw new IllegalStateException("Snapshots are already scheduled");
+        snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "snapshot-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshots.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                System.getLogger(DurableAtmDAO.class.getName()).log(System.Logger.Level.WARNING, "Snapshot of " + directory + " failed", e);
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        return this;
+    }
+
+    /**
+     * Writes the whole state to a new snapshot, starts a new log, then deletes the older snapshots and logs.
+     * If writing the snapshot fails, the older snapshot and logs are kept and still contain every change.
+     * @throws UncheckedIOException if the snapshot cannot be written.
+     */
+    public void snapshot() throws UncheckedIOException {
+        long snapshot;
+        lock.lock();
+        try {
+            snapshot = generation + 1;
+            var next = new WriteAheadLog(journal(snapshot), policy);
+            log.close();
+            log = next;
+            generation = snapshot;
+            writeSnapshot(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write a snapshot in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(2)) < snapshot) Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete the snapshots and logs older than " + snapshot + " in " + directory, e);
+        }
+    }
+
+    /**
+     * Stops the snapshots, writes the pending records and closes the log.
+     * @throws UncheckedIOException if the pending records cannot be written.
+     */
+    @Override
+    public void close() throws UncheckedIOException {
+        if (snapshots != null) snapshots.shutdownNow();
+        lock.lock();
+        try {
+            log.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Function that supplies a {@code Map<String, Client>}.
+     * <p>{@code String} - the key, the key is the account number of the client</p>
+     * <p>{@code Client} - the value, the value is the client object</p>
+     * @return a {@code Client} object
+     * @see Map
+     * @see Supplier
+     * @see Client
+     */
+    @Override
+    public Supplier<Map<String, Client>> getAllClients() {
+        return delegate.getAllClients();
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        return delegate.forEachClient();
+    }
+
+    /**
+     * Function that gets a page of clients, in the order of the in-memory {@code AtmDAO}.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return delegate.getClientsAfter();
+    }
+
+    /**
+     * Function that returns a {@code Optional<Client>} object based on the {@code String}
+     * that contains the account number.
+     * <p>T - a {@code String} containing the account number to be search from the database.</p>
+     * <p>R - a {@code Optional<Client>} containing the result if the client is found or not.</p>
+     * @return a {@code Optional<Client>} object.
+     * @throws IllegalArgumentException if the account number does not belong to any client.
+     * @see Optional
+     * @see Function
+     * @see Client
+     */
+    @Override
+    public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
+        return delegate.getClientByAccountNumber();
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return delegate.doesClientExist();
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code Double} containing the savings of the client with the account number.
+     * @see Function
+     */
+    @Override
+    public Function<String, Double> getClientSavingsByAccountNumber() {
+        return delegate.getClientSavingsByAccountNumber();
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without boxing the savings.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() {
+        return delegate.getClientSavingsInCentsByAccountNumber();
+    }
+
+    /**
+     * Function that removes a client in the database using the account number.
+     * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
+     * <p>R - the {@code Status} of the operation if {@link Status#SUCCESS} or {@link Status#ERROR}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Status
+     */
+    @Override
+    public Function<String, Status> removeClientByAccountNumber() {
+        return accountNumber -> journal(
+                JournalRecords.removeClient(accountNumber),
+                () -> delegate.removeClientByAccountNumber().apply(accountNumber)
+        );
+    }
+
+    /**
+     * Function that removes all the clients in the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllClients() {
+        return () -> journal(
+                JournalRecords.of(JournalRecords.REMOVE_ALL_CLIENTS),
+                () -> delegate.removeAllClients().get()
+        );
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Boolean}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Boolean}, {@code true} if the client account should be locked, default is false.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
+        return (accountNumber, status) -> journal(
+                JournalRecords.updateStatus(accountNumber, status),
+                () -> delegate.updateClientStatusByAccountNumber().apply(accountNumber, status)
+        );
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Double}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     * @see Client
+     * @see Loan
+     */
+    @Override
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+        return (accountNumber, savings) -> updateClientSavingsInCentsByAccountNumber().apply(accountNumber, Money.toCents(savings));
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return (accountNumber, savingsCents) -> journal(
+                JournalRecords.savings(JournalRecords.UPDATE_SAVINGS, accountNumber, savingsCents),
+                () -> delegate.updateClientSavingsInCentsByAccountNumber().apply(accountNumber, savingsCents)
+        );
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> journal(
+                JournalRecords.savings(JournalRecords.DEPOSIT, accountNumber, cents),
+                () -> delegate.depositInCentsByAccountNumber().apply(accountNumber, cents)
+        );
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return (accountNumber, cents) -> journal(
+                JournalRecords.savings(JournalRecords.WITHDRAW, accountNumber, cents),
+                () -> delegate.withdrawInCentsByAccountNumber().apply(accountNumber, cents)
+        );
+    }
+
+    /**
+     * Function that save a client to the database. The function takes a {@code Client} object,
+     * the object to be saved in the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Client, Status> saveClient() {
+        return client -> journal(
+                JournalRecords.saveClient(client),
+                () -> delegate.saveClient().apply(client)
+        );
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table.
+     * The clients are written to the log as one record, so they are all saved again or none of them are.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the clients are larger than the largest record of the log.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Collection<Client>, Status> saveAllClients() throws IllegalArgumentException {
+        return clients -> journal(
+                JournalRecords.saveAllClients(clients),
+                () -> delegate.saveAllClients().apply(clients)
+        );
+    }
+
+    /**
+     * Function that submits a loan request.
+     * The Function takes a {@code Loan} object containing the loan information.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> requestLoan() {
+        return loan -> journal(
+                JournalRecords.requestLoan(loan),
+                () -> delegate.requestLoan().apply(loan)
+        );
+    }
+
+    /**
+     * Function that returns a key value pair, a {@code Map<String, List<Loan>>} in particular.
+     * <p>K - is a {@code String} containing the key, the key is the account number of the client who requested a loan.</p>
+     * <p>V - is a {@code String} containing the value, the value is all the loans that the account requested. It is a {@code List<Loan>}</p>
+     * @return a {@code Map<String, List<Loan>>} a key value pair containing all the loans from the table in the database.
+     * @see Supplier
+     * @see Map
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Supplier<Map<String, List<Loan>>> getAllLoans() {
+        return delegate.getAllLoans();
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return delegate.getLoansByAccountNumber();
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return delegate.forEachLoan();
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return delegate.getLoansAfter();
+    }
+
+    /**
+     * Function that gets the loan of a client using loan number and account number.
+     * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
+     * and the string containing the account number.
+     * @return an {@code Optional<Loan>} whether the loan exist or not.
+     * @see BiFunction
+     * @see Optional
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
+        return delegate.getLoanByLoanNumberAndAccountNumber();
+    }
+
+    /**
+     * Function that gets the latest loan count of a client and returns the count.
+     * The function takes a {@code String} containing the account number that holds a loan.
+     * @return a {@code Integer} containing the loan count of a client.
+     * @see Function
+     */
+    @Override
+    public Function<String, Integer> getLoanCount() {
+        return delegate.getLoanCount();
+    }
+
+    /**
+     * Function that approves a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        return (loan, client) -> journal(
+                JournalRecords.approveLoan(loan, client),
+                () -> delegate.approveLoan().apply(loan, client)
+        );
+    }
+
+    /**
+     * Function that declines a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> declineLoan() {
+        return loan -> journal(
+                JournalRecords.loan(JournalRecords.DECLINE_LOAN, loan),
+                () -> delegate.declineLoan().apply(loan)
+        );
+    }
+
+    /**
+     * Function that removes a loan.
+     * The function takes a {@code Loan} object containing the loan information to be removed.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> removeLoan() {
+        return loan -> journal(
+                JournalRecords.loan(JournalRecords.REMOVE_LOAN, loan),
+                () -> delegate.removeLoan().apply(loan)
+        );
+    }
+
+    /**
+     * Function that removes all the loans from the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllLoans() {
+        return () -> journal(
+                JournalRecords.of(JournalRecords.REMOVE_ALL_LOANS),
+                () -> delegate.removeAllLoans().get()
+        );
+    }
+
+    /**
+     * Calls an operation that changes the data and appends its record to the log, then waits until the record is committed.
+     * The record is appended even if the operation throws an exception, the operation may have changed part of the data.
+     * Operations that return {@link Status#CANNOT_PERFORM_OPERATION} did not change anything and are not appended.
+     * @param record the record of the operation, encoded before the operation is called.
+     * @param operation the operation.
+     * @return the {@code Status} returned by the operation.
+     * @throws UncheckedIOException if the record cannot be written to the log.
+     */
+    private Status journal(byte[] record, Supplier<Status> operation) throws UncheckedIOException {
+        WriteAheadLog current;
+        long sequence;
+        Status status = null;
+        lock.lock();
+        try {
+            try {
+                status = operation.get();
+            } finally {
+                current = log;
+                sequence = status == CANNOT_PERFORM_OPERATION ? 0 : current.append(record);
+            }
+        } finally {
+            lock.unlock();
+        }
+        current.awaitCommitted(sequence);
+        return status;
+    }
+
+    /**
+     * Replays the latest snapshot and the logs written after it into the in-memory {@code AtmDAO}.
+     * Records that were not completely written are removed from the end of the logs.
+     */
+    private void recover() throws IOException {
+        var snapshots = new TreeSet<Long>();
+        var journals = new TreeSet<Long>();
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) Files.delete(file);
+                var matcher = FILE_NAME.matcher(name);
+                if (!matcher.matches()) continue;
+                (matcher.group(1).equals("snapshot") ? snapshots : journals).add(Long.parseLong(matcher.group(2)));
+            }
+        }
+        var first = snapshots.isEmpty() ? 0 : snapshots.last();
+        if (!snapshots.isEmpty()) WriteAheadLog.read(snapshot(first), record -> JournalRecords.apply(record, delegate));
+        generation = first;
+        for (var journal : journals.tailSet(first, true)) {
+            var file = journal(journal);
+            var valid = WriteAheadLog.read(file, record -> JournalRecords.apply(record, delegate));
+            if (valid < Files.size(file)) {
+                try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+            generation = journal;
+        }
+    }
+
+    /**
+     * Writes the state as the records that recreate it, to a temporary file that is renamed once it is on the disk.
+     * Must be called while holding the lock.
+     * <p>Loans are requested again in the order of their loan numbers. The loan numbers of removed loans are
+     * skipped with {@link JournalRecords#SKIP_LOAN_NUMBERS}, so that the next loan of an account gets the same number.
+     * The loan numbers of an account that is not a client and whose loans were all removed are not kept.</p>
+     */
+    private void writeSnapshot(long snapshot) throws IOException {
+        var temporary = directory.resolve(String.format("snapshot-%020d.tmp", snapshot));
+        try (var channel = OwnerOnlyFiles.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var out = new BufferedOutputStream(Channels.newOutputStream(channel), 256 * 1024);
+            var loans = delegate.getAllLoans().get();
+            var batch = new ArrayList<Client>(SNAPSHOT_BATCH_SIZE);
+            var failure = new IOException[1];
+            Consumer<byte[]> write = record -> {
+                try {
+                    out.write(WriteAheadLog.frame(record));
+                } catch (IOException e) {
+                    if (failure[0] == null) failure[0] = e;
+                }
+            };
+            delegate.forEachClient().accept(client -> {
+                batch.add(client);
+                if (batch.size() == SNAPSHOT_BATCH_SIZE) {
+                    write.accept(JournalRecords.saveAllClients(batch));
+                    batch.clear();
+                }
+                var count = delegate.getLoanCount().apply(client.accountNumber()) - 1;
+                if (count > 0 && !loans.containsKey(client.accountNumber())) {
+                    write.accept(JournalRecords.skipLoanNumbers(client.accountNumber(), count));
+                }
+            });
+            if (!batch.isEmpty()) write.accept(JournalRecords.saveAllClients(batch));
+            for (var entry : loans.entrySet()) {
+                var accountLoans = new ArrayList<>(entry.getValue());
+                accountLoans.sort(Comparator.comparingInt(Loan::loanNumber));
+                var last = 0;
+                for (var loan : accountLoans) {
+                    if (loan.loanNumber() > last + 1) write.accept(JournalRecords.skipLoanNumbers(entry.getKey(), loan.loanNumber() - last - 1));
+                    write.accept(JournalRecords.requestLoan(loan));
+                    last = loan.loanNumber();
+                }
+                var count = delegate.getLoanCount().apply(entry.getKey()) - 1;
+                if (count > last) write.accept(JournalRecords.skipLoanNumbers(entry.getKey(), count - last));
+            }
+            if (failure[0] != null) throw failure[0];
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, snapshot(snapshot), StandardCopyOption.ATOMIC_MOVE);
+        try (var channel = FileChannel.open(directory)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // not every platform can force a directory, the rename is still atomic
+        }
+    }
+
+    private Path snapshot(long generation) {
+        return directory.resolve(String.format("snapshot-%020d.bin", generation));
+    }
+
+    private Path journal(long generation) {
+        return directory.resolve(String.format("journal-%020d.log", generation));
+    }
+
+}
@@ -0,0 +1,33 @@
+package io.github.pitzzahh.atm.journal;
+
+/**
+ * When the write-ahead log forces the records it wrote to the disk.
+ * <p>A record that is written but not forced survives the application crashing, but not the machine crashing.</p>
+ * @see WriteAheadLog
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every record is forced to the disk on its own before the next one is written.
+     * The slowest policy, used to compare against {@link #GROUP_COMMIT}.
+     */
+    EVERY_WRITE,
+
+    /**
+     * The records appended while the previous records were being forced are written and forced together,
+     * every operation waits until its record is forced to the disk. No operation is ever lost.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Operations wait until their record is written, the records are forced to the disk at most once every second.
+     * Up to one second of operations can be lost if the machine crashes.
+     */
+    EVERY_SECOND,
+
+    /**
+     * Operations wait until their record is written, the operating system decides when to write them to the disk.
+     */
+    NEVER
+
+}
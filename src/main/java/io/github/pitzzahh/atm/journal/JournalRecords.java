@@ -0,0 +1,301 @@
+package io.github.pitzzahh.atm.journal;
+
+import io.github.pitzzahh.util.utilities.classes.enums.Gender;
+import io.github.pitzzahh.util.utilities.classes.Person;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.io.UncheckedIOException;
+import java.io.DataOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.ArrayList;
+
+/**
+ * Encodes the operations that change an {@link AtmDAO} as records of the write-ahead log,
+ * and applies the records to an {@code AtmDAO} when the log is replayed.
+ * <p>A record is the type of the operation followed by its arguments. Replaying the records in the order they were
+ * appended calls the same operations with the same arguments, so the {@code AtmDAO} ends in the same state.</p>
+ */
+final class JournalRecords {
+
+    static final byte SAVE_CLIENT = 1;
+    static final byte SAVE_ALL_CLIENTS = 2;
+    static final byte REMOVE_CLIENT = 3;
+    static final byte REMOVE_ALL_CLIENTS = 4;
+    static final byte UPDATE_STATUS = 5;
+    static final byte UPDATE_SAVINGS = 6;
+    static final byte DEPOSIT = 7;
+    static final byte WITHDRAW = 8;
+    static final byte REQUEST_LOAN = 9;
+    static final byte APPROVE_LOAN = 10;
+    static final byte DECLINE_LOAN = 11;
+    static final byte REMOVE_LOAN = 12;
+    static final byte REMOVE_ALL_LOANS = 13;
+
+    /**
+     * Requests and removes loans to use up loan numbers, written by snapshots for the numbers of removed loans.
+     */
+    static final byte SKIP_LOAN_NUMBERS = 14;
+
+    private JournalRecords() {}
+
+    static byte[] saveClient(Client client) {
+        return encode(SAVE_CLIENT, out -> writeClient(out, client));
+    }
+
+    static byte[] saveAllClients(Collection<Client> clients) {
+        return encode(SAVE_ALL_CLIENTS, out -> {
+            out.writeInt(clients.size());
+            for (var client : clients) writeClient(out, client);
+        });
+    }
+
+    static byte[] removeClient(String accountNumber) {
+        return encode(REMOVE_CLIENT, out -> out.writeUTF(accountNumber));
+    }
+
+    static byte[] updateStatus(String accountNumber, boolean locked) {
+        return encode(UPDATE_STATUS, out -> {
+            out.writeUTF(accountNumber);
+            out.writeBoolean(locked);
+        });
+    }
+
+    /**
+     * Encodes an operation on the savings of a client.
+     * @param type {@link #UPDATE_SAVINGS}, {@link #DEPOSIT} or {@link #WITHDRAW}.
+     */
+    static byte[] savings(byte type, String accountNumber, long cents) {
+        return encode(type, out -> {
+            out.writeUTF(accountNumber);
+            out.writeLong(cents);
+        });
+    }
+
+    static byte[] requestLoan(Loan loan) {
+        return encode(REQUEST_LOAN, out -> {
+            out.writeUTF(loan.accountNumber());
+            writeNullableDate(out, loan.dateOfLoan());
+            out.writeLong(loan.amountCents());
+            out.writeBoolean(loan.pending());
+            out.writeBoolean(loan.isDeclined());
+        });
+    }
+
+    static byte[] approveLoan(Loan loan, Client client) {
+        return encode(APPROVE_LOAN, out -> {
+            out.writeInt(loan.loanNumber());
+            out.writeUTF(loan.accountNumber());
+            out.writeUTF(client.accountNumber());
+        });
+    }
+
+    /**
+     * Encodes an operation on one loan.
+     * @param type {@link #DECLINE_LOAN} or {@link #REMOVE_LOAN}.
+     */
+    static byte[] loan(byte type, Loan loan) {
+        return encode(type, out -> {
+            out.writeInt(loan.loanNumber());
+            out.writeUTF(loan.accountNumber());
+        });
+    }
+
+    static byte[] skipLoanNumbers(String accountNumber, int count) {
+        return encode(SKIP_LOAN_NUMBERS, out -> {
+            out.writeUTF(accountNumber);
+            out.writeInt(count);
+        });
+    }
+
+    /**
+     * Encodes an operation without arguments.
+     * @param type {@link #REMOVE_ALL_CLIENTS} or {@link #REMOVE_ALL_LOANS}.
+     */
+    static byte[] of(byte type) {
+        return new byte[] {type};
+    }
+
+    /**
+     * Calls the operation of a record on an {@code AtmDAO}.
+     * <p>Exceptions thrown by the operation are ignored, the operation threw the same exception when it was called,
+     * after changing the same part of the state.</p>
+     * @param record the bytes of the record.
+     * @param dao the {@code AtmDAO}.
+     * @throws IllegalStateException if the type of the record is unknown.
+     */
+    static void apply(byte[] record, AtmDAO dao) throws IllegalStateException {
+        Runnable operation;
+        try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+            var type = in.readByte();
+            switch (type) {
+                case SAVE_CLIENT: {
+                    var client = readClient(in);
+                    operation = () -> dao.saveClient().apply(client);
+                    break;
+                }
+                case SAVE_ALL_CLIENTS: {
+                    var size = in.readInt();
+                    var clients = new ArrayList<Client>(size);
+                    for (int i = 0; i < size; i++) clients.add(readClient(in));
+                    operation = () -> dao.saveAllClients().apply(clients);
+                    break;
+                }
+                case REMOVE_CLIENT: {
+                    var accountNumber = in.readUTF();
+                    operation = () -> dao.removeClientByAccountNumber().apply(accountNumber);
+                    break;
+                }
+                case REMOVE_ALL_CLIENTS:
+                    operation = () -> dao.removeAllClients().get();
+                    break;
+                case UPDATE_STATUS: {
+                    var accountNumber = in.readUTF();
+                    var locked = in.readBoolean();
+                    operation = () -> dao.updateClientStatusByAccountNumber().apply(accountNumber, locked);
+                    break;
+                }
+                case UPDATE_SAVINGS:
+                case DEPOSIT:
+                case WITHDRAW: {
+                    var accountNumber = in.readUTF();
+                    var cents = in.readLong();
+                    var function = type == UPDATE_SAVINGS ? dao.updateClientSavingsInCentsByAccountNumber()
+                            : type == DEPOSIT ? dao.depositInCentsByAccountNumber()
+                            : dao.withdrawInCentsByAccountNumber();
+                    operation = () -> function.apply(accountNumber, cents);
+                    break;
+                }
+                case REQUEST_LOAN: {
+                    var loan = new Loan(in.readUTF(), readNullableDate(in), 0, false);
+                    loan.setAmountCents(in.readLong());
+                    loan.setPending(in.readBoolean());
+                    loan.setDeclined(in.readBoolean());
+                    operation = () -> dao.requestLoan().apply(loan);
+                    break;
+                }
+                case APPROVE_LOAN: {
+                    var loan = new Loan(in.readInt(), in.readUTF(), true);
+                    var client = new Client(in.readUTF(), null, null, 0, false);
+                    operation = () -> dao.approveLoan().apply(loan, client);
+                    break;
+                }
+                case DECLINE_LOAN: {
+                    var loan = new Loan(in.readInt(), in.readUTF(), true);
+                    operation = () -> dao.declineLoan().apply(loan);
+                    break;
+                }
+                case REMOVE_LOAN: {
+                    var loan = new Loan(in.readInt(), in.readUTF(), true);
+                    operation = () -> dao.removeLoan().apply(loan);
+                    break;
+                }
+                case REMOVE_ALL_LOANS:
+                    operation = () -> dao.removeAllLoans().get();
+                    break;
+                case SKIP_LOAN_NUMBERS: {
+                    var accountNumber = in.readUTF();
+                    var count = in.readInt();
+                    operation = () -> {
+                        for (int i = 0; i < count; i++) {
+                            var skipped = new Loan(accountNumber, null, 0, true);
+                            dao.requestLoan().apply(skipped);
+                            dao.removeLoan().apply(skipped);
+                        }
+                    };
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown journal record type: " + type);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Journal record cannot be decoded", e);
+        }
+        try {
+            operation.run();
+        } catch (RuntimeException ignored) {
+            // the operation failed the same way when it was called
+        }
+    }
+
+    private static void writeClient(DataOutputStream out, Client client) throws IOException {
+        out.writeUTF(client.accountNumber());
+        writeNullableString(out, client.pin());
+        var details = client.details();
+        out.writeBoolean(details != null);
+        if (details != null) {
+            writeNullableString(out, details.getFirstName());
+            writeNullableString(out, details.getLastName());
+            writeNullableString(out, details.getGender() == null ? null : details.getGender().name());
+            writeNullableString(out, details.getAddress());
+            writeNullableDate(out, details.getBirthDate());
+        }
+        out.writeLong(client.savingsCents());
+        out.writeBoolean(client.isLocked());
+    }
+
+    private static Client readClient(DataInputStream in) throws IOException {
+        var accountNumber = in.readUTF();
+        var pin = readNullableString(in);
+        Person details = null;
+        if (in.readBoolean()) {
+            var firstName = readNullableString(in);
+            var lastName = readNullableString(in);
+            var gender = readNullableString(in);
+            details = Person.builder()
+                    .firstName(firstName)
+                    .lastName(lastName)
+                    .gender(gender == null ? null : Gender.valueOf(gender))
+                    .address(readNullableString(in))
+                    .birthDate(readNullableDate(in))
+                    .build();
+        }
+        var client = new Client(accountNumber, pin, details, 0, false);
+        client.setSavingsCents(in.readLong());
+        client.setLocked(in.readBoolean());
+        return client;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableDate(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeLong(value.toEpochDay());
+    }
+
+    private static LocalDate readNullableDate(DataInputStream in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+
+    /**
+     * Writes the type of a record followed by its arguments.
+     */
+    private static byte[] encode(byte type, Writer writer) {
+        var bytes = new ByteArrayOutputStream(64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+}
@@ -0,0 +1,276 @@
+package io.github.pitzzahh.atm.journal;
+
+import io.github.pitzzahh.atm.security.OwnerOnlyFiles;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.Condition;
+import java.nio.file.StandardOpenOption;
+import java.io.BufferedInputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
+import java.io.DataInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.util.zip.CRC32C;
+import java.io.IOException;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.List;
+
+/**
+ * Append-only file of records, written by one background thread using group commit:
+ * the records appended while the previous records are being written are written together with one {@code write}
+ * and, depending on the {@link FsyncPolicy}, one {@code fsync}.
+ * <p>Every record is its length, its CRC32C and its bytes. A record that was not completely written when
+ * the application crashed fails the checksum, it and everything after it are ignored by {@link #read(Path, Consumer)}.</p>
+ * <p>The records are not encrypted, the file can only be read and written by its owner.</p>
+ */
+final class WriteAheadLog implements Closeable {
+
+    /**
+     * The largest record that can be read, larger lengths are treated as a torn record.
+     */
+    static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasRecords = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+    private final Thread writer;
+
+    private List<byte[]> pending = new ArrayList<>();
+    private long appended;
+    private long written;
+    private long forced;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Opens a log, records are appended after the existing records.
+     * @param file the log file, created if it does not exist, only its owner can read and write it.
+     * @param policy when the records are forced to the disk.
+     * @throws IOException if the file cannot be opened, or its permissions cannot be changed.
+     */
+    WriteAheadLog(Path file, FsyncPolicy policy) throws IOException {
+        this.policy = Objects.requireNonNull(policy, "Fsync policy must not be null");
+        this.channel = OwnerOnlyFiles.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.writer = new Thread(this::run, "write-ahead-log-" + file.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Adds a record to the log, it is written by the background thread.
+     * @param record the bytes of the record.
+     * @return the sequence number of the record, used to wait until it is committed with {@link #awaitCommitted(long)}.
+     * @throws UncheckedIOException if a previous write failed.
+     * @throws IllegalStateException if the log is closed.
+     */
+    long append(byte[] record) throws UncheckedIOException, IllegalStateException {
+        var framed = frame(record);
+        lock.lock();
+        try {
+            if (failure != null) throw new UncheckedIOException("Write-ahead log failed", failure);
+            if (closed) throw new IllegalStateException("Write-ahead log is closed");
+            pending.add(framed);
+            hasRecords.signal();
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a record is committed: forced to the disk for {@link FsyncPolicy#EVERY_WRITE} and
+     * {@link FsyncPolicy#GROUP_COMMIT}, written to the file for the other policies.
+     * @param sequence the sequence number returned by {@link #append(byte[])}.
+     * @throws UncheckedIOException if the record could not be written.
+     */
+    void awaitCommitted(long sequence) throws UncheckedIOException {
+        var durable = policy == FsyncPolicy.EVERY_WRITE || policy == FsyncPolicy.GROUP_COMMIT;
+        lock.lock();
+        try {
+            while ((durable ? forced : written) < sequence) {
+                if (failure != null) throw new UncheckedIOException("Write-ahead log failed", failure);
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the pending records, forces the file to the disk unless the policy is {@link FsyncPolicy#NEVER}, and closes it.
+     * @throws IOException if the records could not be written or the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            hasRecords.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure != null) throw failure;
+            if (policy != FsyncPolicy.NEVER) channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the records of a log or a snapshot, stopping at the first record that is not complete.
+     * @param file the file.
+     * @param action called with the bytes of every record, in the order they were appended.
+     * @return the length of the complete records, in bytes.
+     * @throws IOException if the file cannot be read.
+     */
+    static long read(Path file, Consumer<byte[]> action) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(FileChannel.open(file)), 64 * 1024))) {
+            var valid = 0L;
+            var crc = new CRC32C();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] record;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) return valid;
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    return valid;
+                }
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) return valid;
+                action.accept(record);
+                valid += HEADER_SIZE + length;
+            }
+        }
+    }
+
+    /**
+     * Adds the length and the checksum in front of a record.
+     * @param record the bytes of the record.
+     * @return the bytes written to the file.
+     */
+    static byte[] frame(byte[] record) {
+        if (record.length > MAX_RECORD_SIZE) throw new IllegalArgumentException("Record must be at most " + MAX_RECORD_SIZE + " bytes");
+        var crc = new CRC32C();
+        crc.update(record);
+        return ByteBuffer.allocate(HEADER_SIZE + record.length)
+                .putInt(record.length)
+                .putInt((int) crc.getValue())
+                .put(record)
+                .array();
+    }
+
+    /**
+     * The background thread, takes all the pending records, writes them, forces them if the policy requires it,
+     * then wakes up the operations waiting for them.
+     */
+    private void run() {
+        var lastForce = System.nanoTime();
+        try {
+            while (true) {
+                List<byte[]> batch;
+                long sequence;
+                lock.lock();
+                try {
+                    while (pending.isEmpty() && !closed) {
+                        if (policy != FsyncPolicy.EVERY_SECOND || written == forced) {
+                            hasRecords.await();
+                            continue;
+                        }
+                        var wait = lastForce + ONE_SECOND - System.nanoTime();
+                        if (wait <= 0) break;
+                        hasRecords.awaitNanos(wait);
+                    }
+                    if (pending.isEmpty() && closed) return;
+                    batch = pending;
+                    pending = new ArrayList<>();
+                    sequence = appended;
+                } finally {
+                    lock.unlock();
+                }
+                var force = policy == FsyncPolicy.GROUP_COMMIT;
+                if (policy == FsyncPolicy.EVERY_WRITE) {
+                    for (var record : batch) {
+                        write(List.of(record));
+                        channel.force(false);
+                    }
+                } else {
+                    write(batch);
+                }
+                if (policy == FsyncPolicy.EVERY_SECOND && System.nanoTime() - lastForce >= ONE_SECOND) force = true;
+                if (force) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                }
+                lock.lock();
+                try {
+                    written = sequence;
+                    if (force || policy == FsyncPolicy.EVERY_WRITE) forced = sequence;
+                    committed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            lock.lock();
+            try {
+                failure = e instanceof IOException ? (IOException) e : new InterruptedIOException("Write-ahead log writer was interrupted");
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Copies the records to the direct buffer and writes the buffer every time it is full.
+     */
+    private void write(List<byte[]> records) throws IOException {
+        for (var record : records) {
+            if (record.length > buffer.remaining()) flush();
+            if (record.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(record));
+            } else {
+                buffer.put(record);
+            }
+        }
+        flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) channel.write(source);
+    }
+
+}
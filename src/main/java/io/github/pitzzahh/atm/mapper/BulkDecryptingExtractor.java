@@ -0,0 +1,78 @@
+package io.github.pitzzahh.atm.mapper;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinPool;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Maps every row of a {@code ResultSet} to an object, decrypting the rows in parallel.
+ * The rows are read on the calling thread in batches, and every batch is decrypted by a task on a {@code ForkJoinPool}
+ * while the next batch is read. The objects are returned in the order of the rows.
+ * @param <T> the type of the objects.
+ * @see DecryptingRowMapper
+ */
+public class BulkDecryptingExtractor<T> implements ResultSetExtractor<List<T>> {
+
+    private final DecryptingRowMapper<T> mapper;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    /**
+     * Creates an extractor that decrypts batches of 256 rows on the common pool.
+     * @param mapper the mapper of the rows.
+     */
+    public BulkDecryptingExtractor(DecryptingRowMapper<T> mapper) {
+        this(mapper, ForkJoinPool.commonPool(), 256);
+    }
+
+    /**
+     * Creates an extractor.
+     * @param mapper the mapper of the rows.
+     * @param pool the pool that decrypts the rows.
+     * @param batchSize the number of rows decrypted by one task.
+     * @throws IllegalArgumentException if the batch size is less than one.
+     */
+    public BulkDecryptingExtractor(DecryptingRowMapper<T> mapper, ForkJoinPool pool, int batchSize) throws IllegalArgumentException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.mapper = mapper;
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads every row and decrypts them in parallel.
+     * @param resultSet the ResultSet to map.
+     * @return the objects, in the order of the rows.
+     * @throws SQLException if something went wrong.
+     */
+    @Override
+    public List<T> extractData(ResultSet resultSet) throws SQLException {
+        var tasks = new ArrayList<ForkJoinTask<List<T>>>();
+        var batch = new ArrayList<Object[]>(batchSize);
+        var rows = 0;
+        while (resultSet.next()) {
+            batch.add(mapper.read(resultSet));
+            rows++;
+            if (batch.size() == batchSize) {
+                tasks.add(submit(batch));
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) tasks.add(submit(batch));
+        var result = new ArrayList<T>(rows);
+        for (var task : tasks) result.addAll(task.join());
+        return result;
+    }
+
+    private ForkJoinTask<List<T>> submit(List<Object[]> batch) {
+        return pool.submit(() -> {
+            var decrypted = new ArrayList<T>(batch.size());
+            for (var row : batch) decrypted.add(mapper.decrypt(row));
+            return decrypted;
+        });
+    }
+}
@@ -1,39 +1,82 @@
 package io.github.pitzzahh.atm.mapper;
 
 import java.sql.ResultSet;
+import java.time.LocalDate;
 import java.sql.SQLException;
 import io.github.pitzzahh.atm.entity.Client;
-import org.springframework.jdbc.core.RowMapper;
-import io.github.pitzzahh.util.utilities.SecurityUtil;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.security.Crypto;
 import io.github.pitzzahh.util.utilities.classes.Person;
 import io.github.pitzzahh.util.utilities.classes.enums.Gender;
 
 /**
  * Class used to map data from the table to a {@code Client} object
  */
-public class ClientMapper implements RowMapper<Client> {
+public class ClientMapper implements DecryptingRowMapper<Client> {
 
     /**
-     * maps the data from the table to a {@code Client} object.
-     * @param resultSet the ResultSet to map (pre-initialized for the current row)
-     * @param numberOfRow the number of the current row
-     * @return {@code Client} object.
+     * Tells if a recording enables the event, so that no event is allocated for the rows that are not recorded.
+     */
+    private static final RowDecodeEvent EVENT = new RowDecodeEvent();
+
+    /**
+     * reads the encrypted columns of the client from the table.
+     * @param resultSet the ResultSet to read (pre-initialized for the current row)
+     * @return the values of the columns.
      * @throws SQLException if something went wrong.
      */
     @Override
-    public Client mapRow(ResultSet resultSet, int numberOfRow) throws SQLException {
-        return new Client(
-                SecurityUtil.decrypt(resultSet.getString("account_number")),
-                SecurityUtil.decrypt(resultSet.getString("pin")),
-                new Person(
-                        SecurityUtil.decrypt(resultSet.getString("first_name")),
-                        SecurityUtil.decrypt(resultSet.getString("last_name")),
-                        Gender.valueOf(resultSet.getString("gender")),
-                        SecurityUtil.decrypt(resultSet.getString("address")),
-                        resultSet.getDate("date_of_birth").toLocalDate()
-                ),
-                Double.parseDouble(SecurityUtil.decrypt(resultSet.getString("savings"))),
+    public Object[] read(ResultSet resultSet) throws SQLException {
+        return new Object[] {
+                resultSet.getString("account_number"),
+                resultSet.getString("pin"),
+                resultSet.getString("first_name"),
+                resultSet.getString("last_name"),
+                resultSet.getString("gender"),
+                resultSet.getString("address"),
+                resultSet.getDate("date_of_birth").toLocalDate(),
+                resultSet.getString("savings"),
                 resultSet.getBoolean("isLocked")
+        };
+    }
+
+    /**
+     * decrypts the columns of the client to a {@code Client} object.
+     * Only the account number and the savings are decrypted, the pin and the details
+     * are decrypted the first time they are read. The savings are decoded with {@link Money#decode(String)}.
+     * Recorded as a {@code RowDecode} event of Java Flight Recorder when a recording enables it.
+     * @param row the values of the columns.
+     * @return {@code Client} object.
+     * @see Client#lazy
+     */
+    @Override
+    public Client decrypt(Object[] row) {
+        if (!EVENT.isEnabled()) return client(row);
+        var event = new RowDecodeEvent();
+        event.begin();
+        var client = client(row);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = "Client";
+            event.commit();
+        }
+        return client;
+    }
+
+    private static Client client(Object[] row) {
+        var pin = (String) row[1];
+        return Client.lazy(
+                Crypto.decrypt((String) row[0]),
+                () -> Crypto.decrypt(pin),
+                () -> new Person(
+                        Crypto.decrypt((String) row[2]),
+                        Crypto.decrypt((String) row[3]),
+                        Gender.valueOf((String) row[4]),
+                        Crypto.decrypt((String) row[5]),
+                        (LocalDate) row[6]
+                ),
+                Money.decode(Crypto.decrypt((String) row[7])),
+                (Boolean) row[8]
         );
     }
 }
@@ -0,0 +1,42 @@
+package io.github.pitzzahh.atm.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * A {@code RowMapper} that maps a row in two steps, reading the encrypted columns of the row
+ * and then decrypting them into the object. The decryption does not use the {@code ResultSet},
+ * so it can run on another thread while the next rows are read.
+ * @param <T> the type of the object.
+ * @see BulkDecryptingExtractor
+ */
+public interface DecryptingRowMapper<T> extends RowMapper<T> {
+
+    /**
+     * Reads the columns of the current row without decrypting them.
+     * @param resultSet the ResultSet to read (pre-initialized for the current row)
+     * @return the values of the columns.
+     * @throws SQLException if something went wrong.
+     */
+    Object[] read(ResultSet resultSet) throws SQLException;
+
+    /**
+     * Decrypts the columns read by {@link #read(ResultSet)} into the object.
+     * @param row the values of the columns.
+     * @return the object.
+     */
+    T decrypt(Object[] row);
+
+    /**
+     * maps the data from the table to the object, reading and decrypting the row on the calling thread.
+     * @param resultSet the ResultSet to map (pre-initialized for the current row)
+     * @param numberOfRow the number of the current row
+     * @return the object.
+     * @throws SQLException if something went wrong.
+     */
+    @Override
+    default T mapRow(ResultSet resultSet, int numberOfRow) throws SQLException {
+        return decrypt(read(resultSet));
+    }
+}
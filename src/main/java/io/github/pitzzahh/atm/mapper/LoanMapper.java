@@ -1,32 +1,72 @@
 package io.github.pitzzahh.atm.mapper;
 
 import java.sql.ResultSet;
+import java.time.LocalDate;
 import java.sql.SQLException;
 import io.github.pitzzahh.atm.entity.Loan;
-import org.springframework.jdbc.core.RowMapper;
-import io.github.pitzzahh.util.utilities.SecurityUtil;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.security.Crypto;
 
 /**
  * Used to map loan history row from the database to a {@code Loan} object.
  */
-public class LoanMapper implements RowMapper<Loan> {
+public class LoanMapper implements DecryptingRowMapper<Loan> {
 
     /**
-     * maps the data from the table to a {@code Loan} object.
-     * @param resultSet the ResultSet to map (pre-initialized for the current row)
-     * @param numberOfRow the number of the current row
-     * @return {@code Loan} object.
+     * Tells if a recording enables the event, so that no event is allocated for the rows that are not recorded.
+     */
+    private static final RowDecodeEvent EVENT = new RowDecodeEvent();
+
+    /**
+     * reads the encrypted columns of the loan from the table.
+     * @param resultSet the ResultSet to read (pre-initialized for the current row)
+     * @return the values of the columns.
      * @throws SQLException if something went wrong.
      */
     @Override
-    public Loan mapRow(ResultSet resultSet, int numberOfRow) throws SQLException {
-        return new Loan(
+    public Object[] read(ResultSet resultSet) throws SQLException {
+        return new Object[] {
                 resultSet.getInt("loan_number"),
-                SecurityUtil.decrypt(resultSet.getString("account_number")),
+                resultSet.getString("account_number"),
                 resultSet.getDate("date_of_loan").toLocalDate(),
-                Double.parseDouble(SecurityUtil.decrypt(resultSet.getString("amount"))),
-                Boolean.parseBoolean(SecurityUtil.decrypt(resultSet.getString("pending"))),
-                Boolean.parseBoolean(SecurityUtil.decrypt(resultSet.getString("declined")))
+                resultSet.getString("amount"),
+                resultSet.getString("pending"),
+                resultSet.getString("declined")
+        };
+    }
+
+    /**
+     * decrypts the columns of the loan to a {@code Loan} object.
+     * The amount is decoded with {@link Money#decode(String)}.
+     * The {@code pending} and {@code declined} columns only have two values, they are decrypted once per thread.
+     * Recorded as a {@code RowDecode} event of Java Flight Recorder when a recording enables it.
+     * @param row the values of the columns.
+     * @return {@code Loan} object.
+     */
+    @Override
+    public Loan decrypt(Object[] row) {
+        if (!EVENT.isEnabled()) return loan(row);
+        var event = new RowDecodeEvent();
+        event.begin();
+        var loan = loan(row);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = "Loan";
+            event.commit();
+        }
+        return loan;
+    }
+
+    private static Loan loan(Object[] row) {
+        var loan = new Loan(
+                (Integer) row[0],
+                Crypto.decrypt((String) row[1]),
+                (LocalDate) row[2],
+                0,
+                Crypto.decryptBoolean((String) row[4]),
+                Crypto.decryptBoolean((String) row[5])
         );
+        loan.setAmountCents(Money.decode(Crypto.decrypt((String) row[3])));
+        return loan;
     }
 }
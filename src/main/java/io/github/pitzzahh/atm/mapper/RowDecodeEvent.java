@@ -0,0 +1,26 @@
+package io.github.pitzzahh.atm.mapper;
+
+import jdk.jfr.Description;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * A row decrypted into an object by a {@link DecryptingRowMapper}, recorded by Java Flight Recorder.
+ * Disabled by default, there is one event for every row read.
+ */
+@Name("io.github.pitzzahh.atm.RowDecode")
+@Label("Row Decode")
+@Category({"ATM", "JDBC"})
+@Description("A row decrypted into a client or a loan by the ATM API")
+@Enabled(false)
+@StackTrace(false)
+final class RowDecodeEvent extends Event {
+
+    @Label("Type")
+    @Description("The type of the object, Client or Loan")
+    String type;
+}
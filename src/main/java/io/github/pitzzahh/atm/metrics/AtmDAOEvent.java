@@ -0,0 +1,31 @@
+package io.github.pitzzahh.atm.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * An operation called on an {@link InstrumentedAtmDAO}, recorded by Java Flight Recorder.
+ */
+@Name("io.github.pitzzahh.atm.AtmDAO")
+@Label("AtmDAO Operation")
+@Category({"ATM", "AtmDAO"})
+@Description("An operation of an AtmDAO wrapped in an InstrumentedAtmDAO")
+@StackTrace(false)
+final class AtmDAOEvent extends Event {
+
+    @Label("Operation")
+    @Description("The name of the AtmDAO method")
+    String operation;
+
+    @Label("Implementation")
+    @Description("The class of the wrapped AtmDAO")
+    Class<?> implementation;
+
+    @Label("Failed")
+    @Description("Whether the operation threw an exception or returned ERROR")
+    boolean failed;
+}
@@ -0,0 +1,127 @@
+package io.github.pitzzahh.atm.metrics;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.ObjectName;
+import javax.management.JMException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Map;
+
+/**
+ * Keeps the count, the error count and a {@link LatencyHistogram} of every operation in memory,
+ * read them with {@link #statistics()} or through JMX after {@link #registerMBeans()}.
+ * <p>Every operation is registered as an {@link OperationStatisticsMXBean} named
+ * {@code io.github.pitzzahh.atm:type=AtmDAO,registry=<name>,operation=<operation>}, for example in JConsole or VisualVM.</p>
+ */
+public class HistogramMetricsRegistry implements MetricsRegistry {
+
+    /**
+     * The JMX domain of the MXBeans.
+     */
+    public static final String DOMAIN = "io.github.pitzzahh.atm";
+
+    private final String name;
+    private final ConcurrentMap<String, OperationRecorder> operations = new ConcurrentSkipListMap<>();
+    private volatile boolean registered;
+
+    /**
+     * Creates a registry named {@code default}.
+     */
+    public HistogramMetricsRegistry() {
+        this("default");
+    }
+
+    /**
+     * Creates a registry.
+     * @param name the name of the registry in the names of its MXBeans, different for every registry of the JVM.
+     */
+    public HistogramMetricsRegistry(String name) {
+        this.name = Objects.requireNonNull(name, "Name must not be null");
+    }
+
+    /**
+     * Gets the metrics of an operation, created the first time and registered if the MXBeans are registered.
+     * @param name the name of the operation.
+     * @return the {@code OperationMetrics} of the operation.
+     * @throws IllegalStateException if the MXBean of a new operation cannot be registered.
+     */
+    @Override
+    public OperationMetrics operation(String name) throws IllegalStateException {
+        var created = new boolean[1];
+        var recorder = operations.computeIfAbsent(name, key -> {
+            created[0] = true;
+            return new OperationRecorder();
+        });
+        if (created[0] && registered) register(name, recorder);
+        return recorder;
+    }
+
+    /**
+     * Gets the statistics of every operation, sorted by name.
+     * @return an unmodifiable {@code Map<String, OperationStatisticsMXBean>}, the key is the name of the operation.
+     */
+    public Map<String, OperationStatisticsMXBean> statistics() {
+        return Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * Gets the histogram of the latencies of an operation.
+     * @param operation the name of the operation.
+     * @return the {@code LatencyHistogram} in nanoseconds, or {@code null} if the operation was never created.
+     */
+    public LatencyHistogram latencies(String operation) {
+        var recorder = operations.get(operation);
+        return recorder == null ? null : recorder.latencies();
+    }
+
+    /**
+     * Sets every count of every operation back to zero.
+     */
+    public void reset() {
+        operations.values().forEach(OperationRecorder::reset);
+    }
+
+    /**
+     * Registers the MXBean of every operation with the platform MBean server, and of the operations created later.
+     * @throws IllegalStateException if an MXBean cannot be registered, for example if another registry has the same name.
+     */
+    public synchronized void registerMBeans() throws IllegalStateException {
+        if (registered) return;
+        registered = true;
+        operations.forEach(this::register);
+    }
+
+    /**
+     * Unregisters the MXBeans of every operation.
+     * @throws IllegalStateException if an MXBean cannot be unregistered.
+     */
+    public synchronized void unregisterMBeans() throws IllegalStateException {
+        if (!registered) return;
+        registered = false;
+        var server = ManagementFactory.getPlatformMBeanServer();
+        for (var operation : operations.keySet()) {
+            try {
+                var objectName = objectName(operation);
+                if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot unregister the MXBean of " + operation, e);
+            }
+        }
+    }
+
+    private void register(String operation, OperationRecorder recorder) {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var objectName = objectName(operation);
+            server.registerMBean(recorder, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the MXBean of " + operation, e);
+        }
+    }
+
+    private ObjectName objectName(String operation) throws JMException {
+        return new ObjectName(DOMAIN + ":type=AtmDAO,registry=" + ObjectName.quote(name) + ",operation=" + ObjectName.quote(operation));
+    }
+}
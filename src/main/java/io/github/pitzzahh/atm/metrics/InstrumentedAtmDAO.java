@@ -0,0 +1,923 @@
+package io.github.pitzzahh.atm.metrics;
+
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.dao.ObjLongFunction;
+import io.github.pitzzahh.atm.entity.Message;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import java.util.function.ToLongFunction;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import java.util.*;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.ERROR;
+
+/**
+ * Records the count, the error count and the latency of every operation of another {@link AtmDAO} in a {@link MetricsRegistry}.
+ * Wrap the {@code AtmDAO} of an {@code AtmService} to measure the operations of the service, the service only calls its {@code AtmDAO}.
+ * <p>An operation fails if it throws an exception or returns {@link Status#ERROR}. The time of {@code forEachClient}
+ * and {@code forEachLoan} includes the time of the action.</p>
+ * <p>The metrics of every operation are looked up once, when this {@code InstrumentedAtmDAO} is created, and the functions
+ * are created once, a call only reads {@link System#nanoTime()} twice and allocates nothing more than the {@code AtmDAO}.
+ * When disabled with {@link #setEnabled(boolean)} a call does not read the time either.</p>
+ * <p>Every call is also recorded as an {@code AtmDAO} event of Java Flight Recorder, with the name of the operation,
+ * so that a recording shows the time spent in every operation, together with the {@code JdbcStatement} events
+ * of an {@code InstrumentedDataSource}. The events are recorded whenever a recording enables them,
+ * even if the metrics are disabled.</p>
+ */
+public class InstrumentedAtmDAO implements AtmDAO {
+
+    private static final long DISABLED = Long.MIN_VALUE;
+    /**
+     * Tells if a recording enables the event, so that no event is allocated for the calls that are not recorded.
+     */
+    private static final AtmDAOEvent EVENT = new AtmDAOEvent();
+
+    private final AtmDAO delegate;
+    private final OperationMetrics[] metrics;
+    private volatile boolean enabled = true;
+
+    private final Supplier<Map<String, Client>> getAllClients;
+    private final Consumer<Consumer<Client>> forEachClient;
+    private final BiFunction<String, Integer, List<Client>> getClientsAfter;
+    private final Function<String, Optional<Client>> getClientByAccountNumber;
+    private final Predicate<String> doesClientExist;
+    private final Function<String, Double> getClientSavingsByAccountNumber;
+    private final ToLongFunction<String> getClientSavingsInCentsByAccountNumber;
+    private final Function<String, Status> removeClientByAccountNumber;
+    private final Supplier<Status> removeAllClients;
+    private final BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber;
+    private final BiFunction<String, Double, Status> updateClientSavingsByAccountNumber;
+    private final ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber;
+    private final Function<Map<String, Long>, Status> updateAllClientSavingsInCents;
+    private final ObjLongFunction<String, Status> depositInCentsByAccountNumber;
+    private final ObjLongFunction<String, Status> withdrawInCentsByAccountNumber;
+    private final Function<Client, Status> saveClient;
+    private final Function<Collection<Client>, Status> saveAllClients;
+    private final Function<Loan, Status> requestLoan;
+    private final Supplier<Map<String, List<Loan>>> getAllLoans;
+    private final Function<String, List<Loan>> getLoansByAccountNumber;
+    private final Consumer<Consumer<Loan>> forEachLoan;
+    private final BiFunction<Loan, Integer, List<Loan>> getLoansAfter;
+    private final BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber;
+    private final Function<String, Integer> getLoanCount;
+    private final BiFunction<Loan, Client, Status> approveLoan;
+    private final Function<Loan, Status> declineLoan;
+    private final Function<Loan, Status> removeLoan;
+    private final Supplier<Status> removeAllLoans;
+    private final Function<String, Map<String, List<Message>>> getMessage;
+
+    /**
+     * Creates an instrumented {@code AtmDAO}.
+     * @param delegate the {@code AtmDAO} that keeps the data.
+     * @param registry the {@code MetricsRegistry} that records the operations, by the name of the method of {@code AtmDAO}.
+     */
+    public InstrumentedAtmDAO(AtmDAO delegate, MetricsRegistry registry) {
+        this.delegate = Objects.requireNonNull(delegate, "AtmDAO must not be null");
+        Objects.requireNonNull(registry, "Metrics registry must not be null");
+        var operations = Operation.values();
+        this.metrics = new OperationMetrics[operations.length];
+        for (var operation : operations) metrics[operation.ordinal()] = registry.operation(operation.methodName);
+        // the functions are created once, getting one does not allocate
+        this.getAllClients = () -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var clients = delegate.getAllClients().get();
+                failed = false;
+                return clients;
+            } finally {
+                stop(Operation.GET_ALL_CLIENTS, start, event, failed);
+            }
+        };
+        this.forEachClient = action -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                delegate.forEachClient().accept(action);
+                failed = false;
+            } finally {
+                stop(Operation.FOR_EACH_CLIENT, start, event, failed);
+            }
+        };
+        this.getClientsAfter = (accountNumber, size) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var clients = delegate.getClientsAfter().apply(accountNumber, size);
+                failed = false;
+                return clients;
+            } finally {
+                stop(Operation.GET_CLIENTS_AFTER, start, event, failed);
+            }
+        };
+        this.getClientByAccountNumber = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var client = delegate.getClientByAccountNumber().apply(accountNumber);
+                failed = false;
+                return client;
+            } finally {
+                stop(Operation.GET_CLIENT_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.doesClientExist = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var exists = delegate.doesClientExist().test(accountNumber);
+                failed = false;
+                return exists;
+            } finally {
+                stop(Operation.DOES_CLIENT_EXIST, start, event, failed);
+            }
+        };
+        this.getClientSavingsByAccountNumber = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var savings = delegate.getClientSavingsByAccountNumber().apply(accountNumber);
+                failed = false;
+                return savings;
+            } finally {
+                stop(Operation.GET_CLIENT_SAVINGS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.getClientSavingsInCentsByAccountNumber = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var savingsCents = delegate.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+                failed = false;
+                return savingsCents;
+            } finally {
+                stop(Operation.GET_CLIENT_SAVINGS_IN_CENTS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.removeClientByAccountNumber = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.removeClientByAccountNumber().apply(accountNumber);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.REMOVE_CLIENT_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.removeAllClients = () -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.removeAllClients().get();
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.REMOVE_ALL_CLIENTS, start, event, failed);
+            }
+        };
+        this.updateClientStatusByAccountNumber = (accountNumber, locked) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.updateClientStatusByAccountNumber().apply(accountNumber, locked);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.UPDATE_CLIENT_STATUS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.updateClientSavingsByAccountNumber = (accountNumber, savings) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.updateClientSavingsByAccountNumber().apply(accountNumber, savings);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.UPDATE_CLIENT_SAVINGS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.updateClientSavingsInCentsByAccountNumber = (accountNumber, savingsCents) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.updateClientSavingsInCentsByAccountNumber().apply(accountNumber, savingsCents);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.UPDATE_CLIENT_SAVINGS_IN_CENTS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.updateAllClientSavingsInCents = savings -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.updateAllClientSavingsInCents().apply(savings);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.UPDATE_ALL_CLIENT_SAVINGS_IN_CENTS, start, event, failed);
+            }
+        };
+        this.depositInCentsByAccountNumber = (accountNumber, cents) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.depositInCentsByAccountNumber().apply(accountNumber, cents);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.DEPOSIT_IN_CENTS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.withdrawInCentsByAccountNumber = (accountNumber, cents) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.withdrawInCentsByAccountNumber().apply(accountNumber, cents);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.WITHDRAW_IN_CENTS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.saveClient = client -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.saveClient().apply(client);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.SAVE_CLIENT, start, event, failed);
+            }
+        };
+        this.saveAllClients = clients -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.saveAllClients().apply(clients);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.SAVE_ALL_CLIENTS, start, event, failed);
+            }
+        };
+        this.requestLoan = loan -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.requestLoan().apply(loan);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.REQUEST_LOAN, start, event, failed);
+            }
+        };
+        this.getAllLoans = () -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var loans = delegate.getAllLoans().get();
+                failed = false;
+                return loans;
+            } finally {
+                stop(Operation.GET_ALL_LOANS, start, event, failed);
+            }
+        };
+        this.getLoansByAccountNumber = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var loans = delegate.getLoansByAccountNumber().apply(accountNumber);
+                failed = false;
+                return loans;
+            } finally {
+                stop(Operation.GET_LOANS_BY_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.forEachLoan = action -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                delegate.forEachLoan().accept(action);
+                failed = false;
+            } finally {
+                stop(Operation.FOR_EACH_LOAN, start, event, failed);
+            }
+        };
+        this.getLoansAfter = (after, size) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var loans = delegate.getLoansAfter().apply(after, size);
+                failed = false;
+                return loans;
+            } finally {
+                stop(Operation.GET_LOANS_AFTER, start, event, failed);
+            }
+        };
+        this.getLoanByLoanNumberAndAccountNumber = (loanNumber, accountNumber) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var loan = delegate.getLoanByLoanNumberAndAccountNumber().apply(loanNumber, accountNumber);
+                failed = false;
+                return loan;
+            } finally {
+                stop(Operation.GET_LOAN_BY_LOAN_NUMBER_AND_ACCOUNT_NUMBER, start, event, failed);
+            }
+        };
+        this.getLoanCount = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var count = delegate.getLoanCount().apply(accountNumber);
+                failed = false;
+                return count;
+            } finally {
+                stop(Operation.GET_LOAN_COUNT, start, event, failed);
+            }
+        };
+        this.approveLoan = (loan, client) -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.approveLoan().apply(loan, client);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.APPROVE_LOAN, start, event, failed);
+            }
+        };
+        this.declineLoan = loan -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.declineLoan().apply(loan);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.DECLINE_LOAN, start, event, failed);
+            }
+        };
+        this.removeLoan = loan -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.removeLoan().apply(loan);
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.REMOVE_LOAN, start, event, failed);
+            }
+        };
+        this.removeAllLoans = () -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var status = delegate.removeAllLoans().get();
+                failed = status == ERROR;
+                return status;
+            } finally {
+                stop(Operation.REMOVE_ALL_LOANS, start, event, failed);
+            }
+        };
+        this.getMessage = accountNumber -> {
+            var start = start();
+            var event = begin();
+            var failed = true;
+            try {
+                var messages = delegate.getMessage().apply(accountNumber);
+                failed = false;
+                return messages;
+            } finally {
+                stop(Operation.GET_MESSAGE, start, event, failed);
+            }
+        };
+    }
+
+    /**
+     * Enables or disables the metrics of the operations, enabled by default.
+     * The {@code AtmDAO} events of Java Flight Recorder only depend on the recordings.
+     * @param enabled {@code false} to call the {@code AtmDAO} without recording the metrics.
+     * @return this {@code InstrumentedAtmDAO}.
+     */
+    public InstrumentedAtmDAO setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Checks if the metrics of the operations are recorded.
+     * @return {@code true} if the metrics are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Function that accepts a {@code DataSource} object, passed to the {@code AtmDAO} without being recorded.
+     * @return a {@code Consumer<DataSource>} object, {@code null} if the {@code AtmDAO} does not use a {@code DataSource}.
+     * @throws RuntimeException if the {@code AtmDAO} cannot use the {@code DataSource}.
+     * @see Consumer
+     * @see DataSource
+     */
+    @Override
+    public Consumer<DataSource> setDataSource() throws RuntimeException {
+        return delegate.setDataSource();
+    }
+
+    /**
+     * Function that supplies a {@code Map<String, Client>}.
+     * <p>{@code String} - the key, the key is the account number of the client</p>
+     * <p>{@code Client} - the value, the value is the client object</p>
+     * @return a {@code Client} object
+     * @see Map
+     * @see Supplier
+     * @see Client
+     */
+    @Override
+    public Supplier<Map<String, Client>> getAllClients() {
+        return getAllClients;
+    }
+
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    @Override
+    public Consumer<Consumer<Client>> forEachClient() {
+        return forEachClient;
+    }
+
+    /**
+     * Function that gets a page of clients, in the order of the {@code AtmDAO}.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    @Override
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return getClientsAfter;
+    }
+
+    /**
+     * Function that returns a {@code Optional<Client>} object based on the {@code String}
+     * that contains the account number.
+     * <p>T - a {@code String} containing the account number to be search from the database.</p>
+     * <p>R - a {@code Optional<Client>} containing the result if the client is found or not.</p>
+     * @return a {@code Optional<Client>} object.
+     * @throws IllegalArgumentException if the account number does not belong to any client.
+     * @see Optional
+     * @see Function
+     * @see Client
+     */
+    @Override
+    public Function<String, Optional<Client>> getClientByAccountNumber() throws IllegalArgumentException {
+        return getClientByAccountNumber;
+    }
+
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    @Override
+    public Predicate<String> doesClientExist() {
+        return doesClientExist;
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code Double} containing the savings of the client with the account number.
+     * @see Function
+     */
+    @Override
+    public Function<String, Double> getClientSavingsByAccountNumber() {
+        return getClientSavingsByAccountNumber;
+    }
+
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @throws ClientNotFoundException if the account number does not belong to any client.
+     * @see ToLongFunction
+     * @see Money
+     */
+    @Override
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() throws ClientNotFoundException {
+        return getClientSavingsInCentsByAccountNumber;
+    }
+
+    /**
+     * Function that removes a client in the database using the account number.
+     * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
+     * <p>R - the {@code Status} of the operation if {@link Status#SUCCESS} or {@link Status#ERROR}.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Status
+     */
+    @Override
+    public Function<String, Status> removeClientByAccountNumber() {
+        return removeClientByAccountNumber;
+    }
+
+    /**
+     * Function that removes all the clients in the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllClients() {
+        return removeAllClients;
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Boolean}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Boolean}, {@code true} if the client account should be locked, default is false.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     */
+    @Override
+    public BiFunction<String, Boolean, Status> updateClientStatusByAccountNumber() {
+        return updateClientStatusByAccountNumber;
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code Double}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code Double}, the new savings balance of the client.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Status
+     * @see Client
+     * @see Loan
+     */
+    @Override
+    public BiFunction<String, Double, Status> updateClientSavingsByAccountNumber() {
+        return updateClientSavingsByAccountNumber;
+    }
+
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return updateClientSavingsInCentsByAccountNumber;
+    }
+
+    /**
+     * Function that sets the savings of many clients.
+     * <p>{@code String} - the key, the account number of the client.</p>
+     * <p>{@code Long} - the value, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query, {@link Status#SUCCESS} if every client was updated, otherwise {@link Status#ERROR}.
+     * @see Function
+     * @see Map
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public Function<Map<String, Long>, Status> updateAllClientSavingsInCents() {
+        return updateAllClientSavingsInCents;
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return depositInCentsByAccountNumber;
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    @Override
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return withdrawInCentsByAccountNumber;
+    }
+
+    /**
+     * Function that save a client to the database. The function takes a {@code Client} object,
+     * the object to be saved in the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Client, Status> saveClient() {
+        return saveClient;
+    }
+
+    /**
+     * Function that saves a {@code Collection<Client} to the database table.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Collection
+     * @see Client
+     * @see Status
+     */
+    @Override
+    public Function<Collection<Client>, Status> saveAllClients() {
+        return saveAllClients;
+    }
+
+    /**
+     * Function that submits a loan request.
+     * The Function takes a {@code Loan} object containing the loan information.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> requestLoan() {
+        return requestLoan;
+    }
+
+    /**
+     * Function that returns a key value pair, a {@code Map<String, List<Loan>>} in particular.
+     * <p>K - is a {@code String} containing the key, the key is the account number of the client who requested a loan.</p>
+     * <p>V - is a {@code String} containing the value, the value is all the loans that the account requested. It is a {@code List<Loan>}</p>
+     * @return a {@code Map<String, List<Loan>>} a key value pair containing all the loans from the table in the database.
+     * @see Supplier
+     * @see Map
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Supplier<Map<String, List<Loan>>> getAllLoans() {
+        return getAllLoans;
+    }
+
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return getLoansByAccountNumber;
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    @Override
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return forEachLoan;
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return getLoansAfter;
+    }
+
+    /**
+     * Function that gets the loan of a client using loan number and account number.
+     * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
+     * and the string containing the account number.
+     * @return an {@code Optional<Loan>} whether the loan exist or not.
+     * @see BiFunction
+     * @see Optional
+     * @see Loan
+     */
+    @Override
+    public BiFunction<Integer, String, Optional<Loan>> getLoanByLoanNumberAndAccountNumber() {
+        return getLoanByLoanNumberAndAccountNumber;
+    }
+
+    /**
+     * Function that gets the latest loan count of a client and returns the count.
+     * The function takes a {@code String} containing the account number that holds a loan.
+     * @return a {@code Integer} containing the loan count of a client.
+     * @see Function
+     */
+    @Override
+    public Function<String, Integer> getLoanCount() {
+        return getLoanCount;
+    }
+
+    /**
+     * Function that approves a loan request, the loan is added to the savings of the client.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see BiFunction
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public BiFunction<Loan, Client, Status> approveLoan() {
+        return approveLoan;
+    }
+
+    /**
+     * Function that declines a loan request.
+     * The function takes a {@code Loan} object containing the loan information to be approved.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> declineLoan() {
+        return declineLoan;
+    }
+
+    /**
+     * Function that removes a loan.
+     * The function takes a {@code Loan} object containing the loan information to be removed.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Function
+     * @see Loan
+     * @see Status
+     */
+    @Override
+    public Function<Loan, Status> removeLoan() {
+        return removeLoan;
+    }
+
+    /**
+     * Function that removes all the loans from the database.
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see Supplier
+     * @see Status
+     */
+    @Override
+    public Supplier<Status> removeAllLoans() {
+        return removeAllLoans;
+    }
+
+    /**
+     * Function that gets the message of the loan request of a client to the database.
+     * The Function takes a {@code String}.
+     * The {@code String} contains the account number of the client.
+     * Calls the {@code getMessage} of the {@code AtmDAO}, which may read only the loans of the client.
+     * @return a {@code Map<String, List<Message>>} with one key, the account number, and the messages of the approved or declined loans of the client.
+     * @throws IllegalStateException if the client has no approved or declined loans.
+     * @see Function
+     * @see Map
+     * @see List
+     * @see Message
+     */
+    @Override
+    public Function<String, Map<String, List<Message>>> getMessage() throws IllegalStateException {
+        return getMessage;
+    }
+
+    private long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    private AtmDAOEvent begin() {
+        if (!EVENT.isEnabled()) return null;
+        var event = new AtmDAOEvent();
+        event.begin();
+        return event;
+    }
+
+    private void stop(Operation operation, long start, AtmDAOEvent event, boolean failed) {
+        if (start != DISABLED) metrics[operation.ordinal()].record(System.nanoTime() - start, failed);
+        if (event == null) return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation.methodName;
+            event.implementation = delegate.getClass();
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * The operations of {@code AtmDAO}, named after their methods.
+     */
+    private enum Operation {
+        GET_ALL_CLIENTS("getAllClients"),
+        FOR_EACH_CLIENT("forEachClient"),
+        GET_CLIENTS_AFTER("getClientsAfter"),
+        GET_CLIENT_BY_ACCOUNT_NUMBER("getClientByAccountNumber"),
+        DOES_CLIENT_EXIST("doesClientExist"),
+        GET_CLIENT_SAVINGS_BY_ACCOUNT_NUMBER("getClientSavingsByAccountNumber"),
+        GET_CLIENT_SAVINGS_IN_CENTS_BY_ACCOUNT_NUMBER("getClientSavingsInCentsByAccountNumber"),
+        REMOVE_CLIENT_BY_ACCOUNT_NUMBER("removeClientByAccountNumber"),
+        REMOVE_ALL_CLIENTS("removeAllClients"),
+        UPDATE_CLIENT_STATUS_BY_ACCOUNT_NUMBER("updateClientStatusByAccountNumber"),
+        UPDATE_CLIENT_SAVINGS_BY_ACCOUNT_NUMBER("updateClientSavingsByAccountNumber"),
+        UPDATE_CLIENT_SAVINGS_IN_CENTS_BY_ACCOUNT_NUMBER("updateClientSavingsInCentsByAccountNumber"),
+        UPDATE_ALL_CLIENT_SAVINGS_IN_CENTS("updateAllClientSavingsInCents"),
+        DEPOSIT_IN_CENTS_BY_ACCOUNT_NUMBER("depositInCentsByAccountNumber"),
+        WITHDRAW_IN_CENTS_BY_ACCOUNT_NUMBER("withdrawInCentsByAccountNumber"),
+        SAVE_CLIENT("saveClient"),
+        SAVE_ALL_CLIENTS("saveAllClients"),
+        REQUEST_LOAN("requestLoan"),
+        GET_ALL_LOANS("getAllLoans"),
+        GET_LOANS_BY_ACCOUNT_NUMBER("getLoansByAccountNumber"),
+        FOR_EACH_LOAN("forEachLoan"),
+        GET_LOANS_AFTER("getLoansAfter"),
+        GET_LOAN_BY_LOAN_NUMBER_AND_ACCOUNT_NUMBER("getLoanByLoanNumberAndAccountNumber"),
+        GET_LOAN_COUNT("getLoanCount"),
+        APPROVE_LOAN("approveLoan"),
+        DECLINE_LOAN("declineLoan"),
+        REMOVE_LOAN("removeLoan"),
+        REMOVE_ALL_LOANS("removeAllLoans"),
+        GET_MESSAGE("getMessage");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.pitzzahh.atm.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds, recording does not allocate or lock.
+ * <p>Values are counted in log-linear buckets: every power of two is split in {@value #SUB_BUCKETS} buckets of the same
+ * width, so a percentile is accurate to about 6 percent whatever its magnitude, with a fixed array of counts.
+ * Reading a percentile while values are recorded gives a close but not exact result.</p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value, negative values are recorded as {@code 0}.
+     * @param nanos the value, in nanoseconds.
+     */
+    public void record(long nanos) {
+        var value = Math.max(0, nanos);
+        counts.getAndIncrement(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Get the number of values recorded.
+     * @return the number of values.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Get the average of the values recorded.
+     * @return the average in nanoseconds, {@code 0} if no value was recorded.
+     */
+    public double mean() {
+        var n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Get the highest value recorded.
+     * @return the highest value in nanoseconds, {@code 0} if no value was recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Gets the value that a percentage of the values are less than or equal to.
+     * @param percentile the percentage, from {@code 0} to {@code 100}.
+     * @return the highest value of the bucket of the percentile, at most {@link #max()}, {@code 0} if no value was recorded.
+     * @throws IllegalArgumentException if the percentile is not from {@code 0} to {@code 100}.
+     */
+    public long valueAtPercentile(double percentile) throws IllegalArgumentException {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile must be from 0 to 100");
+        var total = 0L;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        var rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        var seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValue(i), max());
+        }
+        return 0;
+    }
+
+    /**
+     * Removes every value. Values recorded while resetting may be partly removed.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Gets the bucket of a value, values less than {@value #SUB_BUCKETS} have their own bucket.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        var shift = index / SUB_BUCKETS - 1;
+        var lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.pitzzahh.atm.metrics;
+
+/**
+ * Creates the {@link OperationMetrics} that an {@link InstrumentedAtmDAO} records into.
+ * <p>Implement it to send the metrics to another metrics library. {@link #operation(String)} is called once for
+ * every operation when the {@code InstrumentedAtmDAO} is created, the returned {@code OperationMetrics} is then called
+ * on every call of the operation, from many threads.</p>
+ * @see HistogramMetricsRegistry
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Gets the metrics of an operation.
+     * @param name the name of the operation, the name of the {@code AtmDAO} method, for example {@code getClientByAccountNumber}.
+     * @return the {@code OperationMetrics} of the operation.
+     */
+    OperationMetrics operation(String name);
+}
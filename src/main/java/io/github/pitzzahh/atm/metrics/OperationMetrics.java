@@ -0,0 +1,15 @@
+package io.github.pitzzahh.atm.metrics;
+
+/**
+ * Records the calls of one operation.
+ * @see MetricsRegistry
+ */
+public interface OperationMetrics {
+
+    /**
+     * Records one call, called from many threads at a time. It should not allocate or block.
+     * @param nanos the time the call took, in nanoseconds.
+     * @param failed {@code true} if the call threw an exception or returned {@code Status.ERROR}.
+     */
+    void record(long nanos, boolean failed);
+}
@@ -0,0 +1,69 @@
+package io.github.pitzzahh.atm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link OperationMetrics} of {@link HistogramMetricsRegistry}, a {@link LatencyHistogram} and an error count.
+ */
+final class OperationRecorder implements OperationMetrics, OperationStatisticsMXBean {
+
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    @Override
+    public void record(long nanos, boolean failed) {
+        latencies.record(nanos);
+        if (failed) errors.increment();
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.count();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latencies.mean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencies.valueAtPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencies.valueAtPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencies.valueAtPercentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latencies.max() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public void reset() {
+        latencies.reset();
+        errors.reset();
+    }
+
+    /**
+     * Get the histogram of the latencies.
+     * @return the {@code LatencyHistogram}, in nanoseconds.
+     */
+    LatencyHistogram latencies() {
+        return latencies;
+    }
+}
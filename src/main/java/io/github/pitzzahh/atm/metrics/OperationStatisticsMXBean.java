@@ -0,0 +1,55 @@
+package io.github.pitzzahh.atm.metrics;
+
+/**
+ * The statistics of one operation, registered as an MXBean by {@link HistogramMetricsRegistry#registerMBeans()}.
+ * Latencies are in microseconds, percentiles are accurate to about 6 percent.
+ */
+public interface OperationStatisticsMXBean {
+
+    /**
+     * Get the number of calls.
+     * @return the number of calls since the start or the last reset.
+     */
+    long getCount();
+
+    /**
+     * Get the number of calls that failed.
+     * @return the number of calls that threw an exception or returned {@code Status.ERROR}.
+     */
+    long getErrorCount();
+
+    /**
+     * Get the average latency.
+     * @return the average latency in microseconds, {@code 0} if there were no calls.
+     */
+    double getMeanMicros();
+
+    /**
+     * Get the median latency.
+     * @return the latency that half the calls were faster than, in microseconds.
+     */
+    double getP50Micros();
+
+    /**
+     * Get the 99th percentile of the latency.
+     * @return the latency that 99 percent of the calls were faster than, in microseconds.
+     */
+    double getP99Micros();
+
+    /**
+     * Get the 99.9th percentile of the latency.
+     * @return the latency that 99.9 percent of the calls were faster than, in microseconds.
+     */
+    double getP999Micros();
+
+    /**
+     * Get the highest latency.
+     * @return the latency of the slowest call, in microseconds.
+     */
+    double getMaxMicros();
+
+    /**
+     * Sets every count back to zero.
+     */
+    void reset();
+}
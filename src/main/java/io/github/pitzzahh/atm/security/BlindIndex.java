@@ -0,0 +1,89 @@
+package io.github.pitzzahh.atm.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import javax.crypto.Mac;
+
+/**
+ * Keyed HMAC-SHA256 of an account number, stored next to the encrypted account number so that
+ * clients and loans can be looked up by account number using a database index,
+ * without depending on the encryption of the account number being deterministic.
+ * <p>The same key must be used by every application that reads or writes the tables,
+ * changing the key requires the {@code account_hash} columns to be computed again.</p>
+ * @see io.github.pitzzahh.atm.database.BlindIndexMigration
+ */
+public final class BlindIndex {
+
+    /**
+     * The system property containing the Base64 encoded key, example: {@code -Datm.blind-index.key=...}.
+     */
+    public static final String KEY_PROPERTY = "atm.blind-index.key";
+
+    /**
+     * The environment variable containing the Base64 encoded key, used if the system property is not set.
+     */
+    public static final String KEY_ENVIRONMENT_VARIABLE = "ATM_BLIND_INDEX_KEY";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * The key of {@link #development()}, it is public so it must never be used for real data.
+     */
+    private static final byte[] DEVELOPMENT_KEY = "automated-teller-machine-API development key".getBytes(StandardCharsets.UTF_8);
+
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * Creates a blind index using the key.
+     * @param key the HMAC key, at least 16 bytes.
+     * @throws IllegalArgumentException if the key is shorter than 16 bytes.
+     */
+    public BlindIndex(byte[] key) throws IllegalArgumentException {
+        if (key == null || key.length < 16) throw new IllegalArgumentException("Blind index key must be at least 16 bytes");
+        var secretKey = new SecretKeySpec(key.clone(), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                var instance = Mac.getInstance(ALGORITHM);
+                instance.init(secretKey);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        hash("");
+    }
+
+    /**
+     * Creates a blind index using the key from the {@value #KEY_PROPERTY} system property,
+     * or the {@value #KEY_ENVIRONMENT_VARIABLE} environment variable.
+     * @return a {@code BlindIndex} object.
+     * @throws IllegalStateException if neither is set.
+     * @throws IllegalArgumentException if the configured key is not valid Base64 or shorter than 16 bytes.
+     */
+    public static BlindIndex fromEnvironment() throws IllegalStateException, IllegalArgumentException {
+        var key = System.getProperty(KEY_PROPERTY, System.getenv(KEY_ENVIRONMENT_VARIABLE));
+        if (key == null || key.isBlank()) throw new IllegalStateException(String.format("No blind index key, set the %s system property or the %s environment variable", KEY_PROPERTY, KEY_ENVIRONMENT_VARIABLE));
+        return new BlindIndex(Base64.getDecoder().decode(key.trim()));
+    }
+
+    /**
+     * Creates a blind index using a fixed key that is published with the source code, only use it for development and tests.
+     * Anyone can compute the blind index of an account number with this key.
+     * @return a {@code BlindIndex} object.
+     */
+    public static BlindIndex development() {
+        return new BlindIndex(DEVELOPMENT_KEY);
+    }
+
+    /**
+     * Computes the blind index of an account number.
+     * @param accountNumber the account number.
+     * @return the 32 bytes stored in the {@code account_hash} column.
+     */
+    public byte[] hash(String accountNumber) {
+        return mac.get().doFinal(accountNumber.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
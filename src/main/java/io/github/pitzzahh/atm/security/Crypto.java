@@ -0,0 +1,96 @@
+package io.github.pitzzahh.atm.security;
+
+import io.github.pitzzahh.util.utilities.SecurityUtil;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encrypts and decrypts column values using {@link SecurityUtil}.
+ * <p>Columns with only a few distinct values, like the {@code pending} and {@code declined} columns of the loans table,
+ * are remembered per thread, so every row of a result set does not decrypt the same ciphertext again.
+ * The cached methods must only be used with deterministic encryption, the ciphertext of a value is compared in queries.</p>
+ * <p>Every value encrypted or decrypted is recorded as a {@code Crypto} event of Java Flight Recorder when a recording enables it.</p>
+ */
+public final class Crypto {
+
+    /**
+     * The number of values remembered per thread, the cache is cleared when it is full.
+     */
+    private static final int CACHE_SIZE = 64;
+    /**
+     * Tells if a recording enables the event, so that no event is allocated for the values that are not recorded.
+     */
+    private static final CryptoEvent EVENT = new CryptoEvent();
+
+    private static final ThreadLocal<Map<String, String>> ENCRYPTED = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, String>> DECRYPTED = ThreadLocal.withInitial(HashMap::new);
+
+    private Crypto() {
+    }
+
+    /**
+     * Encrypts a value.
+     * @param value the value.
+     * @return the ciphertext.
+     */
+    public static String encrypt(String value) {
+        if (!EVENT.isEnabled()) return SecurityUtil.encrypt(value);
+        var event = new CryptoEvent();
+        event.begin();
+        var ciphertext = SecurityUtil.encrypt(value);
+        commit(event, "encrypt", value);
+        return ciphertext;
+    }
+
+    /**
+     * Decrypts a value.
+     * @param ciphertext the ciphertext.
+     * @return the value.
+     */
+    public static String decrypt(String ciphertext) {
+        if (!EVENT.isEnabled()) return SecurityUtil.decrypt(ciphertext);
+        var event = new CryptoEvent();
+        event.begin();
+        var value = SecurityUtil.decrypt(ciphertext);
+        commit(event, "decrypt", ciphertext);
+        return value;
+    }
+
+    /**
+     * Encrypts a boolean, the ciphertext of {@code true} and {@code false} is computed once per thread.
+     * @param value the value.
+     * @return the ciphertext.
+     */
+    public static String encrypt(boolean value) {
+        return cached(ENCRYPTED.get(), String.valueOf(value), true);
+    }
+
+    /**
+     * Decrypts a boolean, the value of every ciphertext is computed once per thread.
+     * @param ciphertext the ciphertext.
+     * @return the value.
+     */
+    public static boolean decryptBoolean(String ciphertext) {
+        return Boolean.parseBoolean(cached(DECRYPTED.get(), ciphertext, false));
+    }
+
+    private static String cached(Map<String, String> cache, String input, boolean encrypt) {
+        var output = cache.get(input);
+        if (output == null) {
+            output = encrypt ? encrypt(input) : decrypt(input);
+            if (cache.size() == CACHE_SIZE) cache.clear();
+            cache.put(input, output);
+        }
+        return output;
+    }
+
+    private static void commit(CryptoEvent event, String operation, String input) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.length = input == null ? 0 : input.length();
+            event.commit();
+        }
+    }
+
+}
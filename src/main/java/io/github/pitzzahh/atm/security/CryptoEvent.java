@@ -0,0 +1,30 @@
+package io.github.pitzzahh.atm.security;
+
+import jdk.jfr.Description;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * A value encrypted or decrypted by {@link Crypto}, recorded by Java Flight Recorder.
+ * Disabled by default, every column of every row is encrypted or decrypted.
+ */
+@Name("io.github.pitzzahh.atm.Crypto")
+@Label("Encryption")
+@Category({"ATM", "Security"})
+@Description("A value encrypted or decrypted by the ATM API")
+@Enabled(false)
+@StackTrace(false)
+final class CryptoEvent extends Event {
+
+    @Label("Operation")
+    @Description("encrypt or decrypt")
+    String operation;
+
+    @Label("Length")
+    @Description("The length of the value encrypted, or of the ciphertext decrypted")
+    int length;
+}
@@ -0,0 +1,63 @@
+package io.github.pitzzahh.atm.security;
+
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Creates the files and directories that hold client data in plaintext, such as logs and snapshots,
+ * so that only their owner can read and write them.
+ * <p>The permissions are only set on file systems that support POSIX permissions, on other file systems,
+ * such as NTFS, the files inherit the access control list of their directory.</p>
+ */
+public final class OwnerOnlyFiles {
+
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+    private OwnerOnlyFiles() {
+    }
+
+    /**
+     * Opens a file, a file that is created can only be read and written by its owner,
+     * the permissions of an existing file are changed to the same.
+     * @param file the file to open.
+     * @param options how the file is opened, as in {@link FileChannel#open(Path, OpenOption...)}.
+     * @return a {@code FileChannel} of the file.
+     * @throws IOException if the file cannot be opened, or its permissions cannot be changed.
+     */
+    public static FileChannel open(Path file, OpenOption... options) throws IOException {
+        var posix = isPosix(file);
+        var channel = posix ?
+                FileChannel.open(file, Set.of(options), PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS)) :
+                FileChannel.open(file, options);
+        try {
+            if (posix) Files.setPosixFilePermissions(file, FILE_PERMISSIONS);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Creates a directory and its missing parents, the directories that are created can only be used by their owner.
+     * The permissions of an existing directory are not changed.
+     * @param directory the directory to create.
+     * @return the directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    public static Path createDirectories(Path directory) throws IOException {
+        if (Files.isDirectory(directory) || !isPosix(directory)) return Files.createDirectories(directory);
+        return Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+}
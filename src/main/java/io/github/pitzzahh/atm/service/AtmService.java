@@ -5,11 +5,15 @@ import javax.sql.DataSource;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.function.BiFunction;
 import io.github.pitzzahh.atm.dao.AtmDAO;
+import io.github.pitzzahh.atm.dao.ObjLongFunction;
 import io.github.pitzzahh.atm.entity.Loan;
 import io.github.pitzzahh.atm.entity.Client;
 import io.github.pitzzahh.atm.entity.Message;
+import io.github.pitzzahh.atm.entity.Money;
 import io.github.pitzzahh.util.utilities.classes.enums.Status;
 
 /**
@@ -56,6 +60,32 @@ public class AtmService {
         return ATM_DAO.getAllClients();
     }
 
+    /**
+     * Function that passes every client to a {@code Consumer<Client>}, one client at a time.
+     * Use it instead of {@link #getAllClients()} when there are too many clients to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every client.
+     * @see Consumer
+     * @see Client
+     */
+    public Consumer<Consumer<Client>> forEachClient() {
+        return ATM_DAO.forEachClient();
+    }
+
+    /**
+     * Function that gets a page of clients, ordered by account number.
+     * The function takes a {@code String} and an {@code Integer}.
+     * <p>First parameter is a {@code String} containing the account number of the last client of the previous page,
+     * {@code null} to get the first page.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of clients in the page.</p>
+     * @return a {@code List<Client>} containing the clients of the page, empty if there are no more clients.
+     * @see BiFunction
+     * @see List
+     * @see Client
+     */
+    public BiFunction<String, Integer, List<Client>> getClientsAfter() {
+        return ATM_DAO.getClientsAfter();
+    }
+
     /**
      * Function that returns a {@code Optional<Client>} object based on the {@code String}
      * that contains the account number.
@@ -70,6 +100,16 @@ public class AtmService {
         return ATM_DAO.getClientByAccountNumber();
     }
 
+    /**
+     * Function that checks if a client exist using the account number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code Predicate<String>} that returns {@code true} if a client with the account number exist.
+     * @see Predicate
+     */
+    public Predicate<String> doesClientExist() {
+        return ATM_DAO.doesClientExist();
+    }
+
     /**
      * Function that accepts a {@code String} containing the account number.
      * The account number will be used to search for the clients savings.
@@ -80,6 +120,17 @@ public class AtmService {
         return ATM_DAO.getClientSavingsByAccountNumber();
     }
 
+    /**
+     * Function that accepts a {@code String} containing the account number.
+     * The account number will be used to search for the clients savings, without boxing the savings.
+     * @return a {@code long} containing the savings of the client with the account number, in cents.
+     * @see ToLongFunction
+     * @see Money
+     */
+    public ToLongFunction<String> getClientSavingsInCentsByAccountNumber() {
+        return ATM_DAO.getClientSavingsInCentsByAccountNumber();
+    }
+
     /**
      * Function that removes a client in the database using the account number.
      * <p>T - a {@code String} the account number of the client needed in order to remove the client.</p>
@@ -126,6 +177,48 @@ public class AtmService {
         return ATM_DAO.updateClientSavingsByAccountNumber();
     }
 
+    /**
+     * Function that accepts two values. A {@code String} and a {@code long}.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the new savings balance of the client in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    public ObjLongFunction<String, Status> updateClientSavingsInCentsByAccountNumber() {
+        return ATM_DAO.updateClientSavingsInCentsByAccountNumber();
+    }
+
+    /**
+     * Function that adds money to the savings of a client.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to deposit in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS} or {@link Status#ERROR}.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    public ObjLongFunction<String, Status> depositInCentsByAccountNumber() throws IllegalArgumentException {
+        return ATM_DAO.depositInCentsByAccountNumber();
+    }
+
+    /**
+     * Function that takes money from the savings of a client, only if the savings are enough.
+     * <p>First parameter is a {@code String} contains the account number of the client.</p>
+     * <p>Second parameter is a {@code long}, the amount to withdraw in cents.</p>
+     * @return a {@code Status} of the query whether {@link Status#SUCCESS}, {@link Status#ERROR},
+     * or {@link Status#CANNOT_PERFORM_OPERATION} if the savings are less than the amount.
+     * @throws IllegalArgumentException if the amount is not positive.
+     * @see ObjLongFunction
+     * @see Status
+     * @see Money
+     */
+    public ObjLongFunction<String, Status> withdrawInCentsByAccountNumber() throws IllegalArgumentException {
+        return ATM_DAO.withdrawInCentsByAccountNumber();
+    }
+
     /**
      * Function that save a client to the database. The function takes a {@code Client} object,
      * the object to be saved in the database table.
@@ -176,6 +269,44 @@ public class AtmService {
         return ATM_DAO.getAllLoans();
     }
 
+    /**
+     * Function that gets all the loans of a client, ordered by loan number.
+     * The function takes a {@code String} containing the account number of the client.
+     * @return a {@code List<Loan>} containing the loans of the client, empty if the client has no loans.
+     * @see Function
+     * @see List
+     * @see Loan
+     */
+    public Function<String, List<Loan>> getLoansByAccountNumber() {
+        return ATM_DAO.getLoansByAccountNumber();
+    }
+
+    /**
+     * Function that passes every loan to a {@code Consumer<Loan>}, one loan at a time.
+     * Use it instead of {@link #getAllLoans()} when there are too many loans to keep in memory.
+     * @return a {@code Consumer} that takes the action to perform on every loan.
+     * @see Consumer
+     * @see Loan
+     */
+    public Consumer<Consumer<Loan>> forEachLoan() {
+        return ATM_DAO.forEachLoan();
+    }
+
+    /**
+     * Function that gets a page of loans, ordered by account number and then by loan number.
+     * The function takes a {@code Loan} and an {@code Integer}.
+     * <p>First parameter is the {@code Loan} object of the last loan of the previous page,
+     * {@code null} to get the first page. Only the account number and the loan number are used.</p>
+     * <p>Second parameter is an {@code Integer}, the maximum number of loans in the page.</p>
+     * @return a {@code List<Loan>} containing the loans of the page, empty if there are no more loans.
+     * @see BiFunction
+     * @see List
+     * @see Loan
+     */
+    public BiFunction<Loan, Integer, List<Loan>> getLoansAfter() {
+        return ATM_DAO.getLoansAfter();
+    }
+
     /**
      * Function that gets the loan of a client using loan number and account number.
      * The function takes an {@code Integer} and a {@code String}, the integer containing the loan number,
@@ -13,10 +13,11 @@ public interface ServiceValidator extends Predicate<String> {
 
     /**
      * Function that accepts a {@code String} object.
+     * @param dao the {@code AtmDAO} where the client is looked up using {@link AtmDAO#doesClientExist()}.
      * @return a {@code boolean} value
      */
     static ServiceValidator doesClientAlreadyExist(AtmDAO dao) {
-        return dao.getAllClients().get()::containsKey;
+        return dao.doesClientExist()::test;
     }
 
 }
@@ -4,13 +4,21 @@
 module automated.teller.machine.API {
     requires util.classes;
     requires spring.jdbc;
+    requires spring.tx;
+    requires com.zaxxer.hikari;
     requires java.sql;
+    requires java.management;
+    requires jdk.jfr;
 
+    exports io.github.pitzzahh.atm.cache;
     exports io.github.pitzzahh.atm.dao;
     exports io.github.pitzzahh.atm.database;
     exports io.github.pitzzahh.atm.entity;
     exports io.github.pitzzahh.atm.exceptions;
+    exports io.github.pitzzahh.atm.journal;
     exports io.github.pitzzahh.atm.mapper;
+    exports io.github.pitzzahh.atm.metrics;
+    exports io.github.pitzzahh.atm.security;
     exports io.github.pitzzahh.atm.service;
     exports io.github.pitzzahh.atm.validator;
 
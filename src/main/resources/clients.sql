@@ -1,5 +1,6 @@
 CREATE TABLE IF NOT EXISTS clients (
     account_number TEXT NOT NULL PRIMARY KEY,
+    account_hash BYTEA NOT NULL,
     pin TEXT NOT NULL,
     first_name TEXT NOT NULL,
     last_name TEXT NOT NULL,
@@ -8,4 +9,6 @@ CREATE TABLE IF NOT EXISTS clients (
     date_of_birth DATE NOT NULL,
     savings TEXT NOT NULL,
     isLocked BOOL NOT NULL
-);
\ No newline at end of file
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS clients_account_hash ON clients (account_hash);
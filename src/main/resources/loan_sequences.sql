@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS loan_sequences (
+    account_hash BYTEA NOT NULL PRIMARY KEY,
+    last_loan_number INT NOT NULL
+);
+
+INSERT INTO loan_sequences (account_hash, last_loan_number)
+SELECT account_hash, MAX(loan_number) FROM loans GROUP BY account_hash
+ON CONFLICT (account_hash) DO NOTHING;
@@ -1,8 +1,11 @@
 CREATE TABLE IF NOT EXISTS loans (
     loan_number INT NOT NULL,
     account_number TEXT NOT NULL,
+    account_hash BYTEA NOT NULL,
     date_of_loan DATE NOT NULL,
     amount TEXT NOT NULL,
     pending TEXT NOT NULL,
     declined TEXT NOT NULL
-);
\ No newline at end of file
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS loans_account_hash_loan_number ON loans (account_hash, loan_number);
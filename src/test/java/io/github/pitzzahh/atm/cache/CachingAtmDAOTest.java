@@ -0,0 +1,145 @@
+package io.github.pitzzahh.atm.cache;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.nio.charset.StandardCharsets;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.security.BlindIndex;
+import io.github.pitzzahh.atm.dao.InDatabase;
+import io.github.pitzzahh.atm.dao.InMemory;
+import io.github.pitzzahh.atm.dao.AtmDAO;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.List;
+
+class CachingAtmDAOTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        var jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        for (var script : List.of("clients.sql", "loans.sql", "loan_sequences.sql")) {
+            try (var in = Objects.requireNonNull(InDatabase.class.getClassLoader().getResourceAsStream(script), script)) {
+                for (var statement : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+                    if (!statement.isBlank()) jdbcTemplate.execute(statement);
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Nested
+    class WithInMemory extends Consistency {
+
+        @Override
+        AtmDAO newDelegate() {
+            return new InMemory();
+        }
+    }
+
+    @Nested
+    class WithInDatabase extends Consistency {
+
+        @Override
+        AtmDAO newDelegate() {
+            new JdbcTemplate(postgres.getPostgresDatabase()).execute("TRUNCATE clients, loans, loan_sequences");
+            var dao = new InDatabase().setBlindIndex(BlindIndex.development());
+            dao.setDataSource().accept(postgres.getPostgresDatabase());
+            return dao;
+        }
+    }
+
+    /**
+     * Checks that the cache returns what the {@code AtmDAO} returns after every change.
+     */
+    abstract static class Consistency {
+
+        private AtmDAO delegate;
+        private CachingAtmDAO cache;
+
+        abstract AtmDAO newDelegate();
+
+        @BeforeEach
+        void setUp() {
+            delegate = newDelegate();
+            cache = new CachingAtmDAO(delegate, 1_000, Duration.ofMinutes(5));
+            assertEquals(SUCCESS, cache.saveClient().apply(makePeter()));
+        }
+
+        @Test
+        void shouldReadTheClientFromTheCacheAfterTheFirstLookup() {
+            // when
+            var first = cache.getClientByAccountNumber().apply("123123123").orElseThrow();
+            first.setSavingsCents(0);
+            var second = cache.getClientByAccountNumber().apply("123123123").orElseThrow();
+            // then
+            assertEquals(1, cache.missCount());
+            assertEquals(1, cache.hitCount());
+            assertEquals(5_000_000_00L, second.savingsCents());
+            assertEquals("Peter John", second.details().getFirstName());
+        }
+
+        @Test
+        void shouldReadTheChangesMadeThroughTheCache() {
+            // given
+            var loan = makeLoan(makePeter(), 1_000);
+            cache.getClientByAccountNumber().apply("123123123");
+            assertTrue(cache.getLoansByAccountNumber().apply("123123123").isEmpty());
+            // when
+            assertEquals(SUCCESS, cache.depositInCentsByAccountNumber().apply("123123123", 2_550));
+            assertEquals(CANNOT_PERFORM_OPERATION, cache.withdrawInCentsByAccountNumber().apply("123123123", Long.MAX_VALUE));
+            assertEquals(SUCCESS, cache.updateClientStatusByAccountNumber().apply("123123123", true));
+            assertEquals(SUCCESS, cache.requestLoan().apply(loan));
+            assertEquals(1, cache.getLoansByAccountNumber().apply("123123123").size());
+            assertEquals(SUCCESS, cache.approveLoan().apply(loan, makePeter()));
+            // then
+            var cached = cache.getClientByAccountNumber().apply("123123123").orElseThrow();
+            var stored = delegate.getClientByAccountNumber().apply("123123123").orElseThrow();
+            assertEquals(stored.savingsCents(), cached.savingsCents());
+            assertEquals(5_000_000_00L + 2_550 + 1_000_00, cached.savingsCents());
+            assertTrue(cached.isLocked());
+            assertFalse(cache.getLoanByLoanNumberAndAccountNumber().apply(loan.loanNumber(), "123123123").orElseThrow().pending());
+            assertEquals(SUCCESS, cache.removeClientByAccountNumber().apply("123123123"));
+            assertFalse(cache.doesClientExist().test("123123123"));
+        }
+
+        @Test
+        void shouldEvictTheLeastRecentlyUsedClientAndExpireClients() {
+            // given
+            var small = new CachingAtmDAO(delegate, 16, Duration.ofMinutes(5));
+            var clients = new ArrayList<Client>();
+            for (int i = 0; i < 16; i++) clients.add(makePeter(String.format("%09d", i)));
+            for (var client : clients) assertEquals(SUCCESS, small.saveClient().apply(client));
+            // when
+            for (var client : clients) small.getClientByAccountNumber().apply(client.accountNumber());
+            small.getClientByAccountNumber().apply("000000000");
+            small.getClientByAccountNumber().apply("123123123");
+            small.getClientByAccountNumber().apply("000000000");
+            small.getClientByAccountNumber().apply("000000001");
+            var expiring = new CachingAtmDAO(delegate, 16, Duration.ofNanos(1));
+            expiring.getClientByAccountNumber().apply("123123123");
+            expiring.getClientByAccountNumber().apply("123123123");
+            // then
+            assertEquals(2, small.evictionCount());
+            assertEquals(18, small.missCount());
+            assertEquals(2, small.hitCount());
+            assertEquals(2, expiring.missCount());
+            assertEquals(0, expiring.hitCount());
+        }
+    }
+
+}
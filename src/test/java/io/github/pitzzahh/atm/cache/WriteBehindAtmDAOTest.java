@@ -0,0 +1,79 @@
+package io.github.pitzzahh.atm.cache;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.dao.InMemory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+class WriteBehindAtmDAOTest {
+
+    private BatchCountingInMemory delegate;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new BatchCountingInMemory();
+        assertEquals(SUCCESS, delegate.saveAllClients().apply(List.of(makePeter(), makeMark())));
+    }
+
+    @Test
+    void shouldCoalesceTheChangesOfAnAccountIntoOneUpdate() {
+        // given
+        try (var dao = new WriteBehindAtmDAO(delegate, 100, Duration.ofHours(1), 100)) {
+            // when
+            for (int i = 0; i < 10; i++) assertEquals(SUCCESS, dao.depositInCentsByAccountNumber().apply("123123123", 1_00));
+            assertEquals(CANNOT_PERFORM_OPERATION, dao.withdrawInCentsByAccountNumber().apply("143143143", Long.MAX_VALUE));
+            assertEquals(SUCCESS, dao.withdrawInCentsByAccountNumber().apply("123123123", 50));
+            // then
+            assertEquals(1, dao.pendingCount());
+            assertEquals(5_000_000_00L, delegate.getClientSavingsInCentsByAccountNumber().applyAsLong("123123123"));
+            assertEquals(5_000_000_00L + 10_00 - 50, dao.getClientSavingsInCentsByAccountNumber().applyAsLong("123123123"));
+            assertEquals(5_000_000_00L + 10_00 - 50, dao.getClientByAccountNumber().apply("123123123").orElseThrow().savingsCents());
+            dao.flush();
+            assertEquals(0, dao.pendingCount());
+            assertEquals(1, delegate.batches.get());
+            assertEquals(5_000_000_00L + 10_00 - 50, delegate.getClientSavingsInCentsByAccountNumber().applyAsLong("123123123"));
+        }
+    }
+
+    @Test
+    void shouldWriteTheChangesWhenABatchIsFullAndWhenClosed() throws InterruptedException {
+        // given
+        var dao = new WriteBehindAtmDAO(delegate, 2, Duration.ofHours(1), 2);
+        // when
+        assertEquals(SUCCESS, dao.updateClientSavingsInCentsByAccountNumber().apply("123123123", 1_00));
+        assertEquals(SUCCESS, dao.updateClientSavingsInCentsByAccountNumber().apply("143143143", 2_00));
+        while (dao.pendingCount() > 0) Thread.sleep(1);
+        assertEquals(SUCCESS, dao.depositInCentsByAccountNumber().apply("123123123", 3_00));
+        dao.close();
+        // then
+        assertEquals(4_00, delegate.getClientSavingsInCentsByAccountNumber().applyAsLong("123123123"));
+        assertEquals(2_00, delegate.getClientSavingsInCentsByAccountNumber().applyAsLong("143143143"));
+        assertEquals(2, delegate.batches.get());
+        assertThrows(IllegalStateException.class, () -> dao.depositInCentsByAccountNumber().apply("123123123", 1_00));
+    }
+
+    /**
+     * Counts the batches written by the {@code WriteBehindAtmDAO}.
+     */
+    private static class BatchCountingInMemory extends InMemory {
+
+        private final AtomicInteger batches = new AtomicInteger();
+
+        @Override
+        public Function<Map<String, Long>, Status> updateAllClientSavingsInCents() {
+            return savings -> {
+                batches.incrementAndGet();
+                return super.updateAllClientSavingsInCents().apply(savings);
+            };
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package io.github.pitzzahh.atm.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    private static final int CLIENTS = 10_000;
+
+    @Test
+    void shouldContainEveryAccountNumberThatWasAdded() {
+        // given
+        var filter = new BloomFilter(CLIENTS, 0.01);
+        // when
+        for (int i = 0; i < CLIENTS; i++) filter.add(accountNumber(i));
+        // then
+        for (int i = 0; i < CLIENTS; i++) assertTrue(filter.mightContain(accountNumber(i)));
+    }
+
+    @Test
+    void shouldNotContainMostAccountNumbersThatWereNeverAdded() {
+        // given
+        var filter = new BloomFilter(CLIENTS, 0.01);
+        for (int i = 0; i < CLIENTS; i++) filter.add(accountNumber(i));
+        // when
+        var falsePositives = 0;
+        for (int i = CLIENTS; i < CLIENTS * 2; i++) if (filter.mightContain(accountNumber(i))) falsePositives++;
+        // then
+        assertTrue(falsePositives < CLIENTS * 0.02, falsePositives + " false positives");
+    }
+
+    @Test
+    void shouldNotContainAnythingWhenEmpty() {
+        assertFalse(new BloomFilter(CLIENTS, 0.01).mightContain(accountNumber(0)));
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(CLIENTS, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(CLIENTS, 1));
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("%09d", i);
+    }
+
+}
@@ -0,0 +1,205 @@
+package io.github.pitzzahh.atm.dao;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.service.AtmService;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import io.github.pitzzahh.atm.entity.Loan;
+import org.junit.jupiter.api.*;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
+
+class ConcurrentInMemoryTest {
+
+    private static final int THREADS = 16;
+    private static final int LOANS_PER_THREAD = 500;
+
+    private AtmService atmService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        atmService = new AtmService(new ConcurrentInMemory());
+        executor = Executors.newFixedThreadPool(THREADS);
+        assertEquals(SUCCESS, atmService.saveAllClients().apply(List.of(makePeter(), makeMark())));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldAssignUniqueLoanNumbersToConcurrentLoanRequests() throws Exception {
+        // given
+        var client = makePeter();
+        // when
+        var statuses = runConcurrently(() -> atmService.requestLoan().apply(makeLoan(client, 1)));
+        // then
+        statuses.forEach(status -> assertEquals(SUCCESS, status));
+        var loanNumbers = atmService.getAllLoans()
+                .get()
+                .get(client.accountNumber())
+                .stream()
+                .map(Loan::loanNumber)
+                .collect(Collectors.toSet());
+        assertEquals(THREADS * LOANS_PER_THREAD, loanNumbers.size());
+        assertEquals(THREADS * LOANS_PER_THREAD + 1, atmService.getLoanCount().apply(client.accountNumber()));
+    }
+
+    @Test
+    void shouldNotLoseUpdatesWhenApprovingLoansConcurrently() throws Exception {
+        // given
+        var client = makeMark();
+        var initialSavings = atmService.getClientSavingsByAccountNumber().apply(client.accountNumber());
+        for (int i = 0; i < THREADS * LOANS_PER_THREAD; i++) {
+            assertEquals(SUCCESS, atmService.requestLoan().apply(makeLoan(client, 1)));
+        }
+        var loans = atmService.getAllLoans().get().get(client.accountNumber());
+        var next = new AtomicInteger();
+        // when
+        var statuses = runConcurrently(() -> atmService.approveLoan().apply(loans.get(next.getAndIncrement()), client));
+        // then
+        statuses.forEach(status -> assertEquals(SUCCESS, status));
+        assertEquals(initialSavings + THREADS * LOANS_PER_THREAD, atmService.getClientSavingsByAccountNumber().apply(client.accountNumber()));
+    }
+
+    @Test
+    void shouldApproveALoanOnlyOnceWhenApprovedConcurrently() throws Exception {
+        // given
+        var client = makePeter();
+        var initialSavings = atmService.getClientSavingsByAccountNumber().apply(client.accountNumber());
+        assertEquals(SUCCESS, atmService.requestLoan().apply(makeLoan(client, 10_000)));
+        var loan = atmService.getLoanByLoanNumberAndAccountNumber().apply(1, client.accountNumber()).orElseThrow();
+        // when
+        var statuses = runConcurrently(() -> atmService.approveLoan().apply(loan, client));
+        // then
+        assertEquals(1, statuses.stream().filter(SUCCESS::equals).count());
+        assertEquals(initialSavings + 10_000, atmService.getClientSavingsByAccountNumber().apply(client.accountNumber()));
+    }
+
+    @Test
+    void shouldNotCorruptLoansOfDifferentAccountsWhenRequestedConcurrently() throws Exception {
+        // when
+        var statuses = runConcurrently(() -> {
+            var peter = atmService.requestLoan().apply(makeLoan(makePeter(), 1));
+            var mark = atmService.requestLoan().apply(makeLoan(makeMark(), 1));
+            return peter == SUCCESS && mark == SUCCESS ? SUCCESS : ERROR;
+        });
+        // then
+        statuses.forEach(status -> assertEquals(SUCCESS, status));
+        var total = atmService.getAllLoans()
+                .get()
+                .values()
+                .stream()
+                .mapToLong(Collection::size)
+                .sum();
+        assertEquals(2L * THREADS * LOANS_PER_THREAD, total);
+    }
+
+    @Test
+    void shouldNotLoseDepositsAndWithdrawalsOnOneAccount() throws Exception {
+        // given
+        var accountNumber = makePeter().accountNumber();
+        var initialSavings = atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber);
+        var next = new AtomicInteger();
+        // when
+        var statuses = runConcurrently(() -> next.getAndIncrement() % 2 == 0
+                ? atmService.depositInCentsByAccountNumber().apply(accountNumber, 300)
+                : atmService.withdrawInCentsByAccountNumber().apply(accountNumber, 100));
+        // then
+        statuses.forEach(status -> assertEquals(SUCCESS, status));
+        assertEquals(initialSavings + THREADS * LOANS_PER_THREAD / 2 * 200L, atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    @Test
+    void shouldNotWithdrawMoreThanTheSavingsWhenWithdrawnConcurrently() throws Exception {
+        // given
+        var accountNumber = makeMark().accountNumber();
+        assertEquals(SUCCESS, atmService.updateClientSavingsInCentsByAccountNumber().apply(accountNumber, 1_000));
+        // when
+        var statuses = runConcurrently(() -> atmService.withdrawInCentsByAccountNumber().apply(accountNumber, 1));
+        // then
+        assertEquals(1_000, statuses.stream().filter(SUCCESS::equals).count());
+        assertEquals(THREADS * LOANS_PER_THREAD - 1_000, statuses.stream().filter(CANNOT_PERFORM_OPERATION::equals).count());
+        assertEquals(0, atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    @Test
+    void shouldGetAllClientsAndLoansOnePageAtATime() {
+        // given
+        for (var client : List.of(makePeter(), makeMark(), makePeter())) {
+            assertEquals(SUCCESS, atmService.requestLoan().apply(makeLoan(client, 1)));
+        }
+        var clients = new ArrayList<String>();
+        var loans = new ArrayList<String>();
+        // when
+        for (var page = atmService.getClientsAfter().apply(null, 1); !page.isEmpty(); page = atmService.getClientsAfter().apply(page.get(0).accountNumber(), 1)) {
+            clients.add(page.get(0).accountNumber());
+        }
+        for (var page = atmService.getLoansAfter().apply(null, 2); !page.isEmpty(); page = atmService.getLoansAfter().apply(page.get(page.size() - 1), 2)) {
+            page.forEach(loan -> loans.add(loan.accountNumber() + "/" + loan.loanNumber()));
+        }
+        // then
+        var peter = makePeter().accountNumber();
+        var mark = makeMark().accountNumber();
+        assertEquals(List.of(peter, mark), clients);
+        assertEquals(List.of(peter + "/1", peter + "/2", mark + "/1"), loans);
+    }
+
+    @Test
+    void shouldNotChangeTheStoredClientsAndLoansWhenTheReturnedOnesAreChanged() {
+        // given
+        var client = makePeter();
+        assertEquals(SUCCESS, atmService.requestLoan().apply(makeLoan(client, 10_000)));
+        var savings = atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(client.accountNumber());
+        // when
+        atmService.getClientByAccountNumber().apply(client.accountNumber()).orElseThrow().setSavingsCents(0);
+        atmService.getAllClients().get().get(client.accountNumber()).setLocked(true);
+        atmService.getLoanByLoanNumberAndAccountNumber().apply(1, client.accountNumber()).orElseThrow().setDeclined(true);
+        atmService.getLoansByAccountNumber().apply(client.accountNumber()).get(0).setPending(false);
+        // then
+        var stored = atmService.getClientByAccountNumber().apply(client.accountNumber()).orElseThrow();
+        assertEquals(savings, stored.savingsCents());
+        assertFalse(stored.isLocked());
+        var loan = atmService.getLoanByLoanNumberAndAccountNumber().apply(1, client.accountNumber()).orElseThrow();
+        assertTrue(loan.pending());
+        assertFalse(loan.isDeclined());
+    }
+
+    /**
+     * Runs the task {@link #LOANS_PER_THREAD} times on each of the {@link #THREADS} threads, all threads start at the same time.
+     * @param task the task to run.
+     * @return the status of every run.
+     */
+    private List<Status> runConcurrently(Callable<Status> task) throws Exception {
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<List<Status>>>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                var statuses = new ArrayList<Status>();
+                for (int i = 0; i < LOANS_PER_THREAD; i++) statuses.add(task.call());
+                return statuses;
+            }));
+        }
+        start.countDown();
+        var result = new ArrayList<Status>();
+        for (var future : futures) result.addAll(future.get(1, TimeUnit.MINUTES));
+        return result;
+    }
+
+}
@@ -0,0 +1,134 @@
+package io.github.pitzzahh.atm.dao;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+import io.github.pitzzahh.atm.security.BlindIndex;
+import io.github.pitzzahh.atm.entity.Client;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs {@link InDatabase} against an embedded PostgreSQL database with the table scripts of the API.
+ */
+class EmbeddedInDatabaseTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    private InDatabase inDatabase;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        for (var script : new String[] {"clients.sql", "loans.sql", "loan_sequences.sql"}) {
+            try (var in = Objects.requireNonNull(InDatabase.class.getClassLoader().getResourceAsStream(script), script)) {
+                for (var statement : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+                    if (!statement.isBlank()) jdbcTemplate.execute(statement);
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE clients, loans, loan_sequences");
+        inDatabase = new InDatabase().setBlindIndex(BlindIndex.development());
+        inDatabase.setDataSource().accept(postgres.getPostgresDatabase());
+    }
+
+    @Test
+    void shouldRemoveAPendingLoanByTheBlindIndexOfTheAccount() {
+        // given
+        var peter = makePeter();
+        assertEquals(SUCCESS, inDatabase.saveClient().apply(peter));
+        var loan = makeLoan(peter, 10_000);
+        assertEquals(SUCCESS, inDatabase.requestLoan().apply(loan));
+        // when
+        var result = inDatabase.removeLoan().apply(loan);
+        // then
+        assertEquals(SUCCESS, result);
+        assertTrue(inDatabase.getLoansByAccountNumber().apply(peter.accountNumber()).isEmpty());
+        assertEquals(ERROR, inDatabase.removeLoan().apply(loan));
+    }
+
+    @Test
+    void shouldCheckIfAClientExistWithoutTheBloomFilter() {
+        // given
+        var peter = makePeter();
+        // when
+        assertEquals(SUCCESS, inDatabase.saveClient().apply(peter));
+        // then
+        assertTrue(inDatabase.doesClientExist().test(peter.accountNumber()));
+        assertFalse(inDatabase.doesClientExist().test(makeMark().accountNumber()));
+    }
+
+    @Test
+    void shouldCheckIfAClientExistWithTheBloomFilter() {
+        // given
+        var peter = makePeter();
+        var mark = makeMark();
+        assertEquals(SUCCESS, inDatabase.saveClient().apply(peter));
+        // when
+        inDatabase.enableBloomFilter(100, 0.01);
+        assertEquals(SUCCESS, inDatabase.saveClient().apply(mark));
+        // then
+        assertTrue(inDatabase.doesClientExist().test(peter.accountNumber()));
+        assertTrue(inDatabase.doesClientExist().test(mark.accountNumber()));
+        assertFalse(inDatabase.doesClientExist().test("555555555"));
+    }
+
+    @Test
+    void shouldReportTheDuplicateClientInTheMiddleOfABatchAsTheOneThatFailed() {
+        // given
+        var peter = makePeter();
+        assertEquals(SUCCESS, inDatabase.saveClient().apply(peter));
+        var mark = makeMark();
+        var other = new Client("555555555", "555555", mark.details(), 1_000, false);
+        // when
+        var result = inDatabase.saveAllClientsInBatch().apply(List.of(mark, makePeter(), other));
+        // then
+        assertEquals(CANNOT_PERFORM_OPERATION, result.get(mark.accountNumber()));
+        assertEquals(ERROR, result.get(peter.accountNumber()));
+        assertEquals(CANNOT_PERFORM_OPERATION, result.get(other.accountNumber()));
+        assertEquals(Set.of(peter.accountNumber()), inDatabase.getAllClients().get().keySet());
+    }
+
+    @Test
+    void shouldUpdateTheSavingsOfTheClientsThatExistInEveryBatch() {
+        // given
+        var peter = makePeter();
+        var mark = makeMark();
+        assertEquals(SUCCESS, inDatabase.saveAllClients().apply(List.of(peter, mark)));
+        inDatabase.setBatchSize(2);
+        var savings = new LinkedHashMap<String, Long>();
+        savings.put(peter.accountNumber(), 1_23L);
+        savings.put("555555555", 5L);
+        savings.put(mark.accountNumber(), 4_56L);
+        // when
+        var result = inDatabase.updateAllClientSavingsInCents().apply(savings);
+        // then
+        assertEquals(ERROR, result);
+        assertEquals(1_23L, inDatabase.getClientSavingsInCentsByAccountNumber().applyAsLong(peter.accountNumber()));
+        assertEquals(4_56L, inDatabase.getClientSavingsInCentsByAccountNumber().applyAsLong(mark.accountNumber()));
+        assertFalse(inDatabase.doesClientExist().test("555555555"));
+        assertEquals(SUCCESS, inDatabase.updateAllClientSavingsInCents().apply(Map.of(peter.accountNumber(), 0L, mark.accountNumber(), 7L)));
+        assertEquals(0L, inDatabase.getClientSavingsInCentsByAccountNumber().applyAsLong(peter.accountNumber()));
+        assertEquals(7L, inDatabase.getClientSavingsInCentsByAccountNumber().applyAsLong(mark.accountNumber()));
+    }
+
+}
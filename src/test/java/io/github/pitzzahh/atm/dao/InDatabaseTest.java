@@ -2,6 +2,7 @@ package io.github.pitzzahh.atm.dao;
 
 import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
 import io.github.pitzzahh.atm.database.DatabaseConnection;
+import io.github.pitzzahh.atm.security.BlindIndex;
 import io.github.pitzzahh.util.utilities.classes.enums.*;
 import io.github.pitzzahh.atm.service.AtmService;
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,11 +21,14 @@ class InDatabaseTest extends InDatabase {
 
     private static AtmService atmService;
 
+    private static InDatabase inDatabase;
+
     private static final DatabaseConnection DATABASE_CONNECTION = new DatabaseConnection();
 
     @BeforeAll
     static void setUp() {
-        atmService = new AtmService(new InDatabase());
+        inDatabase = new InDatabase().setBlindIndex(BlindIndex.development());
+        atmService = new AtmService(inDatabase);
         atmService.setDataSource().accept(
                 DATABASE_CONNECTION
                         .setDriverClassName("org.postgresql.Driver")
@@ -52,6 +56,21 @@ class InDatabaseTest extends InDatabase {
         assertEquals(Status.SUCCESS, result);
     }
 
+    @Test
+    @Order(2)
+    void A_shouldNotSaveAnyClientWhenOneClientAlreadyExist() {
+        // given
+        var newClient = makePeter();
+        newClient.setAccountNumber("111111111");
+        var clients = List.of(newClient, makeMark());
+        // when
+        var result = inDatabase.saveAllClientsInBatch().apply(clients);
+        // then
+        assertEquals(Status.CANNOT_PERFORM_OPERATION, result.get(newClient.accountNumber()));
+        assertEquals(Status.ERROR, result.get(makeMark().accountNumber()));
+        assertThrows(ClientNotFoundException.class, () -> atmService.getClientByAccountNumber().apply(newClient.accountNumber()));
+    }
+
     @Test
     @Order(2)
     void B_shouldPrintAllClientsBeforeLoanRequests() {
@@ -126,6 +145,26 @@ class InDatabaseTest extends InDatabase {
         assertEquals(Status.SUCCESS, result);
     }
 
+    @Test
+    @Order(6)
+    void F_shouldNotApproveLoanTwice() {
+
+        var client = makeMark();
+        var loan = atmService.getAllLoans()
+                .get()
+                .values()
+                .stream()
+                .flatMap(Collection::stream)
+                .filter(l -> l.accountNumber().equals(client.accountNumber()) && !l.pending())
+                .findAny()
+                .orElseThrow(IllegalStateException::new);
+        var savings = atmService.getClientSavingsByAccountNumber().apply(client.accountNumber());
+
+        var result = atmService.approveLoan().apply(loan, client);
+        assertEquals(Status.CANNOT_PERFORM_OPERATION, result);
+        assertEquals(savings, atmService.getClientSavingsByAccountNumber().apply(client.accountNumber()));
+    }
+
     @Test
     @Order(7)
     void J_shouldGetLoanMessage() {
@@ -5,6 +5,8 @@ import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
 import static io.github.pitzzahh.util.utilities.Print.println;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import io.github.pitzzahh.atm.exceptions.LoanNotFoundException;
 import io.github.pitzzahh.atm.service.AtmService;
 import static io.github.pitzzahh.atm.dao.Util.*;
@@ -13,7 +15,9 @@ import io.github.pitzzahh.atm.entity.Loan;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.*;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -47,6 +51,13 @@ class InMemoryTest {
         var apply = atmService.getClientByAccountNumber().apply(makePeter().accountNumber()).orElse(null);
         System.out.println("apply = " + apply);
     }
+    @Test
+    @Order(2)
+    void shouldCheckIfClientExist() {
+        assertTrue(atmService.doesClientExist().test(makePeter().accountNumber()));
+        assertFalse(atmService.doesClientExist().test("123456789"));
+    }
+
     @Test
     @Order(3)
     void B_shouldPrintAllClientsBeforeLoanRequests() {
@@ -152,6 +163,18 @@ class InMemoryTest {
         result.forEach(Print::println);
     }
 
+    @Test
+    @Order(9)
+    void K_shouldOnlyGetLoanMessagesOfTheAccount() {
+        // given
+        var accountNumber = makePeter().accountNumber();
+        // when
+        var result = atmService.getMessage().apply(accountNumber);
+        // then
+        assertEquals(Set.of(accountNumber), result.keySet());
+        result.get(accountNumber).forEach(message -> assertEquals(accountNumber, message.client().accountNumber()));
+    }
+
     @Test
     @Order(10)
     void G_shouldPrintAllClientsAfterLoanRequests() {
@@ -240,6 +263,26 @@ class InMemoryTest {
                 .forEach(Print::println);
     }
 
+    @Test
+    @Order(16)
+    void shouldGetAllClientsAndLoansOnePageAtATime() {
+        // given
+        var clients = new ArrayList<String>();
+        var loans = new ArrayList<Loan>();
+        // when
+        for (var page = atmService.getClientsAfter().apply(null, 1); !page.isEmpty(); page = atmService.getClientsAfter().apply(page.get(0).accountNumber(), 1)) {
+            clients.add(page.get(0).accountNumber());
+        }
+        for (var page = atmService.getLoansAfter().apply(null, 2); !page.isEmpty(); page = atmService.getLoansAfter().apply(page.get(page.size() - 1), 2)) {
+            loans.addAll(page);
+        }
+        var streamed = new ArrayList<Loan>();
+        atmService.forEachLoan().accept(streamed::add);
+        // then
+        assertEquals(List.of(makePeter().accountNumber(), makeMark().accountNumber()), clients);
+        assertEquals(streamed, loans);
+    }
+
     @Test
     @Order(17)
     void shouldThrowExceptionBecauseClientDoesNotExist() {
@@ -248,4 +291,17 @@ class InMemoryTest {
         assertThrows(ClientNotFoundException.class, () -> atmService.getClientByAccountNumber().apply(accountNumber));
     }
 
+    @Test
+    @Order(17)
+    void shouldThrowExceptionBecauseClientOfTheSavingsDoesNotExist() {
+        // given
+        var accountNumber = "123456789";
+        // then
+        assertThrows(ClientNotFoundException.class, () -> atmService.getClientSavingsByAccountNumber().apply(accountNumber));
+        assertThrows(ClientNotFoundException.class, () -> atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+        assertThrows(ClientNotFoundException.class, () -> atmService.updateClientSavingsByAccountNumber().apply(accountNumber, 1.0));
+        assertThrows(ClientNotFoundException.class, () -> atmService.updateClientSavingsInCentsByAccountNumber().apply(accountNumber, 100));
+        assertFalse(atmService.doesClientExist().test(accountNumber));
+    }
+
 }
\ No newline at end of file
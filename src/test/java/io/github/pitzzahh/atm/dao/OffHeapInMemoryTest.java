@@ -0,0 +1,183 @@
+package io.github.pitzzahh.atm.dao;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import io.github.pitzzahh.atm.exceptions.ClientAlreadyExistException;
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import io.github.pitzzahh.atm.service.AtmService;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Money;
+import io.github.pitzzahh.atm.entity.Loan;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.*;
+import java.util.stream.Collectors;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+class OffHeapInMemoryTest {
+
+    private AtmService atmService;
+
+    @BeforeEach
+    void setUp() {
+        atmService = new AtmService(new OffHeapInMemory());
+        assertEquals(SUCCESS, atmService.saveAllClients().apply(List.of(makePeter(), makeMark())));
+    }
+
+    @Test
+    void shouldReadTheSavedClient() {
+        // given
+        var peter = makePeter();
+        // when
+        var client = atmService.getClientByAccountNumber().apply(peter.accountNumber()).orElseThrow();
+        // then
+        assertEquals(peter.accountNumber(), client.accountNumber());
+        assertEquals(peter.pin(), client.pin());
+        assertEquals(peter.savingsCents(), client.savingsCents());
+        assertEquals(peter.isLocked(), client.isLocked());
+        assertEquals(peter.details().getFirstName(), client.details().getFirstName());
+        assertEquals(peter.details().getLastName(), client.details().getLastName());
+        assertEquals(peter.details().getGender(), client.details().getGender());
+        assertEquals(peter.details().getAddress(), client.details().getAddress());
+        assertEquals(peter.details().getBirthDate(), client.details().getBirthDate());
+    }
+
+    @Test
+    void shouldApproveALoanOnlyOnce() {
+        // given
+        var peter = makePeter();
+        assertEquals(SUCCESS, atmService.requestLoan().apply(makeLoan(peter, 1_000)));
+        assertEquals(SUCCESS, atmService.requestLoan().apply(makeLoan(peter, 2_000)));
+        assertEquals(SUCCESS, atmService.declineLoan().apply(new Loan(2, peter.accountNumber(), true)));
+        // when
+        var first = atmService.approveLoan().apply(new Loan(1, peter.accountNumber(), true), peter);
+        var second = atmService.approveLoan().apply(new Loan(1, peter.accountNumber(), true), peter);
+        var declined = atmService.approveLoan().apply(new Loan(2, peter.accountNumber(), true), peter);
+        // then
+        assertEquals(SUCCESS, first);
+        assertEquals(CANNOT_PERFORM_OPERATION, second);
+        assertEquals(CANNOT_PERFORM_OPERATION, declined);
+        assertEquals(peter.savingsCents() + 1_000_00, atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(peter.accountNumber()));
+    }
+
+    @Test
+    void shouldUpdateTheRecordInsteadOfTheReturnedClient() {
+        // given
+        var accountNumber = makeMark().accountNumber();
+        // when
+        atmService.getClientByAccountNumber().apply(accountNumber).orElseThrow().setLocked(true);
+        var unchanged = atmService.getClientByAccountNumber().apply(accountNumber).orElseThrow().isLocked();
+        assertEquals(SUCCESS, atmService.updateClientAccountStatusByAccountNumber().apply(accountNumber, true));
+        assertEquals(SUCCESS, atmService.depositInCentsByAccountNumber().apply(accountNumber, 150));
+        assertEquals(CANNOT_PERFORM_OPERATION, atmService.withdrawInCentsByAccountNumber().apply(accountNumber, Long.MAX_VALUE));
+        // then
+        assertFalse(unchanged);
+        assertTrue(atmService.getClientByAccountNumber().apply(accountNumber).orElseThrow().isLocked());
+        assertEquals(makeMark().savingsCents() + 150, atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+    }
+
+    @Test
+    void shouldFindEveryClientAfterGrowingTheIndexAndReusingRemovedRecords() {
+        // given
+        var clients = new ArrayList<Client>();
+        for (int i = 0; i < 100_000; i++) clients.add(new Client(String.format("%09d", i), "123123", null, i, false));
+        assertEquals(SUCCESS, atmService.saveAllClients().apply(clients));
+        // when
+        for (int i = 0; i < clients.size(); i += 2) {
+            assertEquals(SUCCESS, atmService.removeClientByAccountNumber().apply(clients.get(i).accountNumber()));
+        }
+        for (int i = 0; i < clients.size(); i += 4) {
+            assertEquals(SUCCESS, atmService.saveClient().apply(clients.get(i)));
+        }
+        // then
+        for (int i = 0; i < clients.size(); i++) {
+            var accountNumber = clients.get(i).accountNumber();
+            var saved = i % 2 != 0 || i % 4 == 0;
+            assertEquals(saved, atmService.doesClientExist().test(accountNumber), accountNumber);
+            if (saved) assertEquals(Money.toCents(i), atmService.getClientSavingsInCentsByAccountNumber().applyAsLong(accountNumber));
+        }
+        var paged = new HashSet<String>();
+        for (var page = atmService.getClientsAfter().apply(null, 1_000); !page.isEmpty(); page = atmService.getClientsAfter().apply(page.get(page.size() - 1).accountNumber(), 1_000)) {
+            page.forEach(client -> assertTrue(paged.add(client.accountNumber())));
+        }
+        assertEquals(atmService.getAllClients().get().keySet(), paged);
+        assertEquals(2 + clients.size() / 2 + clients.size() / 4, paged.size());
+    }
+
+    @Test
+    void shouldMapASnapshotWithoutChangingIt(@TempDir Path directory) throws IOException {
+        // given
+        var file = directory.resolve("clients.snapshot");
+        var peter = makePeter();
+        var dao = new OffHeapInMemory();
+        assertEquals(SUCCESS, dao.saveAllClients().apply(List.of(peter, makeMark())));
+        assertEquals(SUCCESS, dao.removeClientByAccountNumber().apply(makeMark().accountNumber()));
+        for (int i = 0; i < 3; i++) assertEquals(SUCCESS, dao.requestLoan().apply(makeLoan(peter, 1_000)));
+        assertEquals(SUCCESS, dao.removeLoan().apply(new Loan(2, peter.accountNumber(), true)));
+        assertEquals(SUCCESS, dao.declineLoan().apply(new Loan(3, peter.accountNumber(), true)));
+        assertEquals(1, dao.writeSnapshot(file));
+        // when
+        var mapped = OffHeapInMemory.mapSnapshot(file);
+        assertEquals(SUCCESS, mapped.depositInCentsByAccountNumber().apply(peter.accountNumber(), 1));
+        assertEquals(SUCCESS, mapped.saveClient().apply(makeMark()));
+        // then
+        assertEquals(peter.savingsCents() + 1, mapped.getClientSavingsInCentsByAccountNumber().applyAsLong(peter.accountNumber()));
+        assertEquals(peter.details().getFirstName(), mapped.getClientByAccountNumber().apply(peter.accountNumber()).orElseThrow().details().getFirstName());
+        assertEquals(List.of(1, 3), mapped.getLoansByAccountNumber().apply(peter.accountNumber()).stream().map(Loan::loanNumber).collect(Collectors.toList()));
+        assertTrue(mapped.getLoanByLoanNumberAndAccountNumber().apply(3, peter.accountNumber()).orElseThrow().isDeclined());
+        assertEquals(4, mapped.getLoanCount().apply(peter.accountNumber()));
+        var remapped = OffHeapInMemory.mapSnapshot(file);
+        assertEquals(peter.savingsCents(), remapped.getClientSavingsInCentsByAccountNumber().applyAsLong(peter.accountNumber()));
+        assertFalse(remapped.doesClientExist().test(makeMark().accountNumber()));
+    }
+
+    @Test
+    void shouldDoubleTheIndexUpToItsMaximumCapacity() {
+        // given
+        var dao = new OffHeapInMemory(0, 64);
+        var indexBytes = new ArrayList<Long>();
+        // when
+        for (int i = 0; i < 32; i++) {
+            var bytes = dao.offHeapBytes();
+            assertEquals(SUCCESS, dao.saveClient().apply(new Client(String.format("%09d", i), "123123", null, i, false)));
+            if (dao.offHeapBytes() != bytes && i > 0) indexBytes.add(dao.offHeapBytes() - bytes);
+        }
+        var full = new Client("000000032", "123123", null, 0, false);
+        // then
+        assertEquals(List.of(16L * Long.BYTES, 32L * Long.BYTES), indexBytes);
+        for (int i = 0; i < 32; i++) assertEquals(Money.toCents(i), dao.getClientSavingsInCentsByAccountNumber().applyAsLong(String.format("%09d", i)));
+        assertThrows(IllegalStateException.class, () -> dao.saveClient().apply(full));
+        assertFalse(dao.doesClientExist().test(full.accountNumber()));
+        assertFalse(dao.getAllClients().get().containsKey(full.accountNumber()));
+        var listed = new ArrayList<String>();
+        dao.forEachClient().accept(client -> listed.add(client.accountNumber()));
+        assertEquals(32, listed.size());
+        assertFalse(listed.contains(full.accountNumber()));
+        assertEquals(SUCCESS, dao.removeClientByAccountNumber().apply("000000000"));
+        assertEquals(SUCCESS, dao.saveClient().apply(full));
+        assertEquals(32, dao.getAllClients().get().size());
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapInMemory(33, 64));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapInMemory(0, 48));
+    }
+
+    @Test
+    void shouldNotSaveClientsThatAlreadyExistOrDoNotFitInARecord() {
+        // given
+        var peter = makePeter();
+        var longPin = new Client("000000001", "1".repeat(OffHeapInMemory.PIN_LENGTH + 1), null, 0, false);
+        // when
+        assertThrows(ClientAlreadyExistException.class, () -> atmService.saveClient().apply(peter));
+        assertThrows(IllegalArgumentException.class, () -> atmService.saveClient().apply(longPin));
+        // then
+        assertFalse(atmService.doesClientExist().test(longPin.accountNumber()));
+        assertThrows(ClientNotFoundException.class, () -> atmService.getClientByAccountNumber().apply(longPin.accountNumber()));
+    }
+
+}
@@ -9,9 +9,13 @@ import java.time.Month;
 
 public class Util {
 
-    static Client makePeter() {
+    public static Client makePeter() {
+        return makePeter("123123123");
+    }
+
+    public static Client makePeter(String accountNumber) {
         return new Client(
-                "123123123",
+                accountNumber,
                 "123123",
                 Person.builder()
                         .firstName("Peter John")
@@ -26,7 +30,7 @@ public class Util {
     }
 
 
-    static Client makeMark() {
+    public static Client makeMark() {
         return new Client(
                 "143143143",
                 "143143",
@@ -42,7 +46,7 @@ public class Util {
         );
     }
 
-    static Loan makeLoan(Client client, double amount) {
+    public static Loan makeLoan(Client client, double amount) {
         return new Loan(
                 client.accountNumber(),
                 LocalDate.of(2022, Month.AUGUST, 6),
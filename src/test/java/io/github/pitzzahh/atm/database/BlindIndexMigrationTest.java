@@ -0,0 +1,57 @@
+package io.github.pitzzahh.atm.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import io.github.pitzzahh.atm.security.BlindIndex;
+import org.springframework.jdbc.core.JdbcTemplate;
+import io.github.pitzzahh.atm.security.Crypto;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.util.List;
+
+class BlindIndexMigrationTest {
+
+    private static final List<String> ACCOUNT_NUMBERS = List.of("123123123", "143143143", "555555555");
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void shouldComputeTheBlindIndexOfEveryRowOnlyOnce() {
+        // given
+        jdbcTemplate.execute("CREATE TABLE clients (account_number TEXT NOT NULL PRIMARY KEY, pin TEXT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE loans (loan_number INT NOT NULL, account_number TEXT NOT NULL)");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX loans_account_number_loan_number ON loans (account_number, loan_number)");
+        for (var accountNumber : ACCOUNT_NUMBERS) {
+            var encrypted = Crypto.encrypt(accountNumber);
+            jdbcTemplate.update("INSERT INTO clients VALUES (?, ?)", encrypted, Crypto.encrypt("123123"));
+            for (int loanNumber = 1; loanNumber <= 2; loanNumber++) jdbcTemplate.update("INSERT INTO loans VALUES (?, ?)", loanNumber, encrypted);
+        }
+        var blindIndex = BlindIndex.development();
+        var migration = new BlindIndexMigration(postgres.getPostgresDatabase(), blindIndex)
+                .setThreads(2)
+                .setBatchSize(1);
+        // when
+        var updated = migration.migrate();
+        // then
+        assertEquals(9, updated);
+        for (var accountNumber : ACCOUNT_NUMBERS) {
+            var hash = blindIndex.hash(accountNumber);
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM clients WHERE account_hash = ?", Integer.class, hash));
+            assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loans WHERE account_hash = ?", Integer.class, hash));
+        }
+        assertEquals(0, migration.migrate());
+    }
+
+}
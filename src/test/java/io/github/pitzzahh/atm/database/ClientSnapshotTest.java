@@ -0,0 +1,128 @@
+package io.github.pitzzahh.atm.database;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.SUCCESS;
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.ERROR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.nio.file.attribute.PosixFilePermissions;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import io.github.pitzzahh.util.utilities.classes.enums.Status;
+import io.github.pitzzahh.atm.entity.Client;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.InMemory;
+import org.junit.jupiter.api.io.TempDir;
+import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.time.LocalDate;
+import java.util.Collection;
+import org.junit.jupiter.api.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class ClientSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldImportTheClientsAndLoansThatWereExported() throws Exception {
+        // given
+        var source = new InMemory();
+        source.saveAllClients().apply(List.of(makePeter(), makeMark()));
+        for (int i = 0; i < 3; i++) assertEquals(SUCCESS, source.requestLoan().apply(makeLoan(makePeter(), 1_000)));
+        assertEquals(SUCCESS, source.removeLoan().apply(new Loan(2, makePeter().accountNumber(), true)));
+        var file = directory.resolve("clients.snapshot");
+        var target = new InMemory();
+        // when
+        assertEquals(2, new ClientSnapshot(source).exportTo(file));
+        var imported = new ClientSnapshot(target).setBatchSize(1).importFrom(file);
+        // then
+        assertEquals(2, imported);
+        for (var expected : List.of(makePeter(), makeMark())) {
+            var client = target.getClientByAccountNumber().apply(expected.accountNumber()).orElseThrow();
+            assertEquals(expected.pin(), client.pin());
+            assertEquals(expected.details(), client.details());
+            assertEquals(expected.savingsCents(), client.savingsCents());
+        }
+        var loans = target.getLoansByAccountNumber().apply(makePeter().accountNumber());
+        assertEquals(List.of(1, 3), loans.stream().map(Loan::loanNumber).collect(Collectors.toList()));
+        assertEquals(1_000_00L, loans.get(1).amountCents());
+        assertEquals(source.getLoanCount().apply(makePeter().accountNumber()), target.getLoanCount().apply(makePeter().accountNumber()));
+    }
+
+    @Test
+    void shouldImportTheLoansOfAccountsWithoutAClient() throws Exception {
+        // given
+        var source = new InMemory();
+        source.saveClient().apply(makePeter());
+        for (int i = 0; i < 2; i++) assertEquals(SUCCESS, source.requestLoan().apply(new Loan("555555555", LocalDate.EPOCH, 1_000, true)));
+        assertEquals(SUCCESS, source.removeLoan().apply(new Loan(1, "555555555", true)));
+        var file = directory.resolve("clients.snapshot");
+        var target = new InMemory();
+        // when
+        new ClientSnapshot(source).exportTo(file);
+        var imported = new ClientSnapshot(target).importFrom(file);
+        // then
+        assertEquals(1, imported);
+        assertFalse(target.doesClientExist().test("555555555"));
+        var loans = target.getLoansByAccountNumber().apply("555555555");
+        assertEquals(List.of(2), loans.stream().map(Loan::loanNumber).collect(Collectors.toList()));
+        assertEquals(source.getLoanCount().apply("555555555"), target.getLoanCount().apply("555555555"));
+    }
+
+    @Test
+    void shouldOnlyCountAndImportTheLoansOfTheClientsThatWereSaved() throws Exception {
+        // given
+        var source = new InMemory();
+        source.saveAllClients().apply(List.of(makePeter(), makeMark()));
+        assertEquals(SUCCESS, source.requestLoan().apply(makeLoan(makePeter(), 1_000)));
+        assertEquals(SUCCESS, source.requestLoan().apply(makeLoan(makeMark(), 1_000)));
+        var file = directory.resolve("clients.snapshot");
+        var target = new RejectingInMemory(makeMark().accountNumber());
+        // when
+        new ClientSnapshot(source).exportTo(file);
+        var imported = new ClientSnapshot(target).setBatchSize(1).importFrom(file);
+        // then
+        assertEquals(1, imported);
+        assertTrue(target.doesClientExist().test(makePeter().accountNumber()));
+        assertEquals(1, target.getLoansByAccountNumber().apply(makePeter().accountNumber()).size());
+        assertFalse(target.doesClientExist().test(makeMark().accountNumber()));
+        assertTrue(target.getLoansByAccountNumber().apply(makeMark().accountNumber()).isEmpty());
+    }
+
+    @Test
+    void shouldOnlyLetTheOwnerReadAndWriteTheSnapshot() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        // given
+        var source = new InMemory();
+        source.saveClient().apply(makePeter());
+        var file = directory.resolve("clients.snapshot");
+        // when
+        new ClientSnapshot(source).exportTo(file);
+        // then
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+    }
+
+    /**
+     * Does not save the batches that contain a client.
+     */
+    private static class RejectingInMemory extends InMemory {
+
+        private final String rejected;
+
+        private RejectingInMemory(String rejected) {
+            this.rejected = rejected;
+        }
+
+        @Override
+        public Function<Collection<Client>, Status> saveAllClients() {
+            return clients -> clients.stream().anyMatch(client -> client.accountNumber().equals(rejected)) ?
+                    ERROR :
+                    super.saveAllClients().apply(clients);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.github.pitzzahh.atm.database;
+
+import static org.junit.jupiter.api.Assertions.*;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.sql.SQLTransientConnectionException;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.*;
+import java.time.Duration;
+import java.io.IOException;
+
+class DatabaseConnectionTest {
+
+    private static EmbeddedPostgres postgres;
+
+    private DatabaseConnection databaseConnection;
+    private HikariDataSource dataSource;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        databaseConnection = new DatabaseConnection()
+                .setDriverClassName("org.postgresql.Driver")
+                .setUrl(postgres.getJdbcUrl("postgres", "postgres"))
+                .setUsername("postgres")
+                .setPassword("postgres")
+                .setMinimumIdle(1)
+                .setMaximumPoolSize(2)
+                .setConnectionTimeout(Duration.ofMillis(250))
+                .setConnectionTestQuery("SELECT 1");
+        dataSource = databaseConnection.getPooledDataSource();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void shouldReuseConnectionsFromThePool() throws Exception {
+        // when
+        for (int i = 0; i < 10; i++) {
+            try (var connection = dataSource.getConnection()) {
+                assertTrue(connection.isValid(1));
+            }
+        }
+        // then
+        var metrics = databaseConnection.getPoolMetrics();
+        assertEquals(10, metrics.getAcquireCount());
+        assertTrue(metrics.getTotalConnections() <= 2);
+        assertTrue(metrics.getMaxAcquireNanos() >= metrics.getAverageAcquireNanos());
+    }
+
+    @Test
+    void shouldTimeOutWhenThePoolIsExhausted() throws Exception {
+        try (var first = dataSource.getConnection(); var second = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+        assertEquals(1, databaseConnection.getPoolMetrics().getTimeoutCount());
+    }
+
+}
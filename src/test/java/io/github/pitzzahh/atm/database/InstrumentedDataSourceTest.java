@@ -0,0 +1,178 @@
+package io.github.pitzzahh.atm.database;
+
+import static org.junit.jupiter.api.Assertions.*;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.io.TempDir;
+import java.util.stream.Collectors;
+import java.util.ResourceBundle;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import jdk.jfr.Recording;
+import java.nio.file.Path;
+import java.time.Duration;
+
+class InstrumentedDataSourceTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void shouldRecordEveryStatementWithTheAccountHashAndTheRowCount(@TempDir Path directory) throws Exception {
+        // given
+        var dataSource = new InstrumentedDataSource(postgres.getPostgresDatabase());
+        var file = directory.resolve("statements.jfr");
+        try (var recording = new Recording()) {
+            recording.enable("io.github.pitzzahh.atm.JdbcStatement");
+            recording.start();
+            // when
+            try (var connection = dataSource.getConnection()) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE accounts (account_hash BYTEA PRIMARY KEY)");
+                }
+                try (var statement = connection.prepareStatement("INSERT INTO accounts VALUES (?)")) {
+                    for (byte i = 1; i <= 3; i++) {
+                        statement.setBytes(1, new byte[] {i, (byte) 0xAB});
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                try (var statement = connection.prepareStatement("SELECT * FROM accounts WHERE account_hash >= ?")) {
+                    statement.setObject(1, new byte[] {2});
+                    try (var resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) assertNotNull(resultSet.getBytes("account_hash"));
+                    }
+                }
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        // then
+        var events = RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(event -> event.getEventType().getName().equals("io.github.pitzzahh.atm.JdbcStatement"))
+                .collect(Collectors.toList());
+        assertEquals(3, events.size());
+        assertEvent(events.get(0), "CREATE TABLE accounts (account_hash BYTEA PRIMARY KEY)", null, 0, 0);
+        assertEvent(events.get(1), "INSERT INTO accounts VALUES (?)", "03ab", 3, 3);
+        assertEvent(events.get(2), "SELECT * FROM accounts WHERE account_hash >= ?", "02", 2, 0);
+    }
+
+    @Test
+    void shouldRecordTheStatisticsOfEveryDistinctStatement() throws Exception {
+        // given
+        var statistics = new StatementStatistics().setSlowStatementThreshold(Duration.ZERO);
+        var dataSource = new InstrumentedDataSource(postgres.getPostgresDatabase()).setStatementStatistics(statistics);
+        // when
+        try (var connection = dataSource.getConnection()) {
+            for (int i = 0; i < 3; i++) {
+                try (var statement = connection.prepareStatement("SELECT * FROM generate_series(1, ?)")) {
+                    statement.setInt(1, 10);
+                    try (var resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) assertTrue(resultSet.getInt(1) > 0);
+                    }
+                }
+            }
+        }
+        // then
+        var query = statistics.getStatistics().get("SELECT * FROM generate_series(1, ?)");
+        assertEquals(3, query.getCount());
+        assertEquals(30, query.getRowCount());
+        assertTrue(query.getMaxNanos() >= query.getAverageNanos());
+        assertTrue(query.getFetchNanos() > 0);
+        assertEquals(query, statistics.getSlowest(1).get(0));
+        statistics.reset();
+        assertTrue(statistics.getStatistics().isEmpty());
+    }
+
+    @Test
+    void shouldRecordTheStatementsAddedToABatchUnderTheirSql() throws Exception {
+        // given
+        var statistics = new StatementStatistics();
+        var dataSource = new InstrumentedDataSource(postgres.getPostgresDatabase()).setStatementStatistics(statistics);
+        // when
+        try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+            statement.addBatch("CREATE TEMPORARY TABLE numbers (n INT)");
+            statement.addBatch("INSERT INTO numbers VALUES (1)");
+            statement.addBatch("INSERT INTO numbers VALUES (1)");
+            statement.executeBatch();
+        }
+        // then
+        var batch = statistics.getStatistics().get("CREATE TEMPORARY TABLE numbers (n INT); INSERT INTO numbers VALUES (1)");
+        assertEquals(1, batch.getCount());
+        assertEquals(2, batch.getRowCount());
+        assertEquals(1, statistics.getStatistics().size());
+    }
+
+    @Test
+    void shouldLogTheShapesOfTheParametersOfASlowStatementWithoutTheirValues() throws Exception {
+        // given
+        var logger = new CapturingLogger();
+        var statistics = new StatementStatistics().setSlowStatementThreshold(Duration.ZERO).setLogger(logger);
+        var dataSource = new InstrumentedDataSource(postgres.getPostgresDatabase()).setStatementStatistics(statistics);
+        // when
+        try (var connection = dataSource.getConnection(); var statement = connection.prepareStatement("SELECT ?::text, ?::bytea")) {
+            statement.setString(1, "secret-pin");
+            statement.setBytes(2, new byte[] {1, 2, 3});
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) assertEquals("secret-pin", resultSet.getString(1));
+            }
+        }
+        // then
+        assertEquals(1, logger.messages.size());
+        var message = logger.messages.get(0);
+        assertTrue(message.startsWith("Slow statement took "), message);
+        assertTrue(message.contains("1 rows fetched in "), message);
+        assertTrue(message.endsWith(", parameters [String(10), byte[3]]: SELECT ?::text, ?::bytea"), message);
+        assertFalse(message.contains("secret-pin"), message);
+    }
+
+    /**
+     * Keeps the messages logged at {@code WARNING}.
+     */
+    private static class CapturingLogger implements System.Logger {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public boolean isLoggable(Level level) {
+            return level == Level.WARNING;
+        }
+
+        @Override
+        public void log(Level level, ResourceBundle bundle, String message, Throwable thrown) {
+            if (isLoggable(level)) messages.add(message);
+        }
+
+        @Override
+        public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+            if (isLoggable(level)) messages.add(params == null ? format : MessageFormat.format(format, params));
+        }
+    }
+
+    private static void assertEvent(RecordedEvent event, String sql, String accountHash, long rowCount, int batchSize) {
+        assertEquals(sql, event.getString("sql"));
+        assertEquals(accountHash, event.getString("accountHash"));
+        assertEquals(rowCount, event.getLong("rowCount"));
+        assertEquals(batchSize, event.getInt("batchSize"));
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.github.pitzzahh.atm.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import io.github.pitzzahh.util.utilities.classes.enums.Gender;
+import io.github.pitzzahh.util.utilities.classes.Person;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDate;
+import java.time.Month;
+
+class ClientTest {
+
+    private static final Person PERSON = new Person("Mark", "Silent", Gender.PREFER_NOT_TO_SAY, "Earth", LocalDate.of(2009, Month.APRIL, 29));
+
+    @Test
+    void shouldNotLoadPinAndDetailsWhenOnlySavingsIsRead() {
+        // given
+        var loads = new AtomicInteger();
+        var client = Client.lazy("143143143", () -> {
+            loads.incrementAndGet();
+            return "143143";
+        }, () -> {
+            loads.incrementAndGet();
+            return PERSON;
+        }, 500_000, false);
+        // when
+        var savings = client.savings();
+        // then
+        assertEquals(5_000, savings);
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void shouldLoadPinAndDetailsOnlyOnce() {
+        // given
+        var loads = new AtomicInteger();
+        var client = Client.lazy("143143143", () -> {
+            loads.incrementAndGet();
+            return "143143";
+        }, () -> {
+            loads.incrementAndGet();
+            return PERSON;
+        }, 500_000, false);
+        // when
+        client.pin();
+        client.details();
+        client.pin();
+        client.details();
+        // then
+        assertEquals(2, loads.get());
+        assertEquals(new Client("143143143", "143143", PERSON, 5_000, false), client);
+    }
+
+    @Test
+    void shouldNotLoadPinThatIsSetBeforeItIsRead() {
+        // given
+        var client = Client.lazy("143143143", () -> fail("pin should not be loaded"), () -> PERSON, 500_000, false);
+        // when
+        client.setPin("000000");
+        // then
+        assertEquals("000000", client.pin());
+    }
+
+}
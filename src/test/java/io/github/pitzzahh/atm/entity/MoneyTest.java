@@ -0,0 +1,39 @@
+package io.github.pitzzahh.atm.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+    @Test
+    void shouldEncodeAndDecodeCents() {
+        // given
+        var cents = 500_000_012L;
+        // when
+        var encoded = Money.encode(cents);
+        // then
+        assertEquals(cents, Money.decode(encoded));
+        assertEquals(-cents, Money.decode(Money.encode(-cents)));
+        assertEquals(Long.MAX_VALUE, Money.decode(Money.encode(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void shouldDecodeAmountsSavedAsDouble() {
+        assertEquals(500_000_000L, Money.decode(String.valueOf(5_000_000.0)));
+        assertEquals(1_000_000_000L, Money.decode(String.valueOf(1.0E7)));
+        assertEquals(10L, Money.decode(String.valueOf(0.1)));
+    }
+
+    @Test
+    void shouldAddWithoutRounding() {
+        // given
+        var cents = 0L;
+        // when
+        for (int i = 0; i < 10; i++) cents = Money.add(cents, Money.toCents(0.1));
+        // then
+        assertEquals(100L, cents);
+        assertEquals(1.0, Money.toDouble(cents));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+    }
+
+}
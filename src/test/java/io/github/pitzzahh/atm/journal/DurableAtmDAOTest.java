@@ -0,0 +1,123 @@
+package io.github.pitzzahh.atm.journal;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.StandardOpenOption;
+import io.github.pitzzahh.atm.entity.Loan;
+import io.github.pitzzahh.atm.dao.InMemory;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.*;
+import java.util.stream.Collectors;
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+class DurableAtmDAOTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReplayTheLogAfterARestart() {
+        // given
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.GROUP_COMMIT)) {
+            assertEquals(SUCCESS, dao.saveClient().apply(makePeter()));
+            assertEquals(SUCCESS, dao.depositInCentsByAccountNumber().apply("123123123", 2_550));
+            assertEquals(CANNOT_PERFORM_OPERATION, dao.withdrawInCentsByAccountNumber().apply("123123123", Long.MAX_VALUE));
+            assertEquals(SUCCESS, dao.requestLoan().apply(makeLoan(makePeter(), 1_000)));
+            assertEquals(SUCCESS, dao.approveLoan().apply(new Loan(1, "123123123", true), makePeter()));
+            assertEquals(SUCCESS, dao.updateClientStatusByAccountNumber().apply("123123123", true));
+        }
+        // when
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.GROUP_COMMIT)) {
+            // then
+            var client = dao.getClientByAccountNumber().apply("123123123").orElseThrow();
+            assertEquals(5_000_000_00L + 2_550 + 1_000_00, client.savingsCents());
+            assertEquals("Peter John", client.details().getFirstName());
+            assertTrue(client.isLocked());
+            assertFalse(dao.getLoanByLoanNumberAndAccountNumber().apply(1, "123123123").orElseThrow().pending());
+        }
+    }
+
+    @Test
+    void shouldKeepLoanNumbersOfRemovedLoansAfterASnapshot() {
+        // given
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.EVERY_SECOND)) {
+            assertEquals(SUCCESS, dao.saveAllClients().apply(List.of(makePeter(), makeMark())));
+            for (int i = 0; i < 4; i++) assertEquals(SUCCESS, dao.requestLoan().apply(makeLoan(makePeter(), 1_000)));
+            assertEquals(SUCCESS, dao.requestLoan().apply(makeLoan(makeMark(), 1_000)));
+            assertEquals(SUCCESS, dao.removeLoan().apply(new Loan(2, "123123123", true)));
+            assertEquals(SUCCESS, dao.removeLoan().apply(new Loan(4, "123123123", true)));
+            assertEquals(SUCCESS, dao.removeLoan().apply(new Loan(1, "143143143", true)));
+            dao.snapshot();
+            assertEquals(SUCCESS, dao.removeClientByAccountNumber().apply("143143143"));
+        }
+        // when
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.EVERY_SECOND)) {
+            // then
+            assertFalse(dao.doesClientExist().test("143143143"));
+            assertEquals(List.of(1, 3), dao.getLoansByAccountNumber().apply("123123123").stream().map(Loan::loanNumber).collect(Collectors.toList()));
+            assertEquals(5, dao.getLoanCount().apply("123123123"));
+            assertEquals(2, dao.getLoanCount().apply("143143143"));
+        }
+    }
+
+    @Test
+    void shouldIgnoreARecordThatWasNotCompletelyWritten() throws Exception {
+        // given
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.NEVER)) {
+            assertEquals(SUCCESS, dao.saveClient().apply(makePeter()));
+        }
+        try (var files = Files.list(directory)) {
+            var log = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+            Files.write(log, new byte[] {0, 0, 0, 42, 7, 7}, StandardOpenOption.APPEND);
+        }
+        // when
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.NEVER)) {
+            assertEquals(SUCCESS, dao.depositInCentsByAccountNumber().apply("123123123", 1));
+        }
+        try (var dao = new DurableAtmDAO(new InMemory(), directory, FsyncPolicy.NEVER)) {
+            // then
+            assertEquals(5_000_000_00L + 1, dao.getClientSavingsInCentsByAccountNumber().applyAsLong("123123123"));
+        }
+    }
+
+    @Test
+    void shouldOnlyLetTheOwnerReadAndWriteTheFiles() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        // given
+        var data = directory.resolve("data");
+        // when
+        try (var dao = new DurableAtmDAO(new InMemory(), data, FsyncPolicy.NEVER)) {
+            assertEquals(SUCCESS, dao.saveClient().apply(makePeter()));
+            dao.snapshot();
+        }
+        // then
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(data));
+        try (var files = Files.list(data)) {
+            var names = files.peek(file -> assertEquals(PosixFilePermissions.fromString("rw-------"), permissions(file)))
+                    .map(file -> file.getFileName().toString().replaceAll("\\d+", ""))
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertEquals(List.of("journal-.log", "snapshot-.bin"), names);
+        }
+    }
+
+    private static Set<PosixFilePermission> permissions(Path file) {
+        try {
+            return Files.getPosixFilePermissions(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
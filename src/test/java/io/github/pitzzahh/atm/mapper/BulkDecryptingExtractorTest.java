@@ -0,0 +1,97 @@
+package io.github.pitzzahh.atm.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import java.io.IOException;
+import java.sql.ResultSet;
+
+class BulkDecryptingExtractorTest {
+
+    private static final String QUERY = "SELECT * FROM generate_series(1, ?)";
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    private ForkJoinPool pool;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void shouldReturnEveryRowInTheOrderOfTheResultSet() {
+        // given
+        var extractor = new BulkDecryptingExtractor<>(new NumberMapper(-1), pool, 7);
+        // when
+        var numbers = jdbcTemplate.query(QUERY, extractor, 1_000);
+        // then
+        assertEquals(IntStream.rangeClosed(1, 1_000).mapToObj(i -> "#" + i).collect(Collectors.toList()), numbers);
+    }
+
+    @Test
+    void shouldReturnNothingWhenThereAreNoRows() {
+        assertTrue(jdbcTemplate.query(QUERY, new BulkDecryptingExtractor<>(new NumberMapper(-1), pool, 7), 0).isEmpty());
+    }
+
+    @Test
+    void shouldThrowTheExceptionOfARowThatCannotBeDecrypted() {
+        // given
+        var extractor = new BulkDecryptingExtractor<>(new NumberMapper(500), pool, 7);
+        // when
+        var exception = assertThrows(IllegalStateException.class, () -> jdbcTemplate.query(QUERY, extractor, 1_000));
+        // then
+        assertTrue(String.valueOf(exception.getMessage()).contains("500"), exception.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionBecauseBatchSizeIsLessThanOne() {
+        assertThrows(IllegalArgumentException.class, () -> new BulkDecryptingExtractor<>(new NumberMapper(-1), pool, 0));
+    }
+
+    /**
+     * Reads the number of the row, and "decrypts" it by prefixing it with {@code #}.
+     */
+    private static final class NumberMapper implements DecryptingRowMapper<String> {
+
+        private final int failingNumber;
+
+        private NumberMapper(int failingNumber) {
+            this.failingNumber = failingNumber;
+        }
+
+        @Override
+        public Object[] read(ResultSet resultSet) throws SQLException {
+            return new Object[] {resultSet.getInt(1)};
+        }
+
+        @Override
+        public String decrypt(Object[] row) {
+            if ((int) row[0] == failingNumber) throw new IllegalStateException("Cannot decrypt row " + row[0]);
+            return "#" + row[0];
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package io.github.pitzzahh.atm.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+import io.github.pitzzahh.atm.security.Crypto;
+import io.github.pitzzahh.atm.entity.Money;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.io.TempDir;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDate;
+import jdk.jfr.Recording;
+import java.nio.file.Path;
+import java.time.Month;
+import java.util.List;
+
+class DecryptingRowMapperTest {
+
+    private static final LocalDate BIRTH_DATE = LocalDate.of(2002, Month.AUGUST, 24);
+
+    @Test
+    void shouldDecryptTheColumnsOfAClientAndALoan() {
+        // when
+        var client = new ClientMapper().decrypt(clientRow());
+        var loan = new LoanMapper().decrypt(loanRow());
+        // then
+        assertEquals("123123123", client.accountNumber());
+        assertEquals("123123", client.pin());
+        assertEquals("Peter John", client.details().getFirstName());
+        assertEquals(BIRTH_DATE, client.details().getBirthDate());
+        assertEquals(5_000_000_00L, client.savingsCents());
+        assertEquals(3, loan.loanNumber());
+        assertEquals("123123123", loan.accountNumber());
+        assertEquals(1_000_00L, loan.amountCents());
+        assertTrue(loan.pending());
+    }
+
+    @Test
+    void shouldRecordAnEventForEveryRowWhenARecordingEnablesIt(@TempDir Path directory) throws Exception {
+        // given
+        var file = directory.resolve("rows.jfr");
+        var clientRow = clientRow();
+        var loanRow = loanRow();
+        // when
+        new ClientMapper().decrypt(clientRow);
+        try (var recording = new Recording()) {
+            recording.enable("io.github.pitzzahh.atm.RowDecode");
+            recording.start();
+            new ClientMapper().decrypt(clientRow);
+            new LoanMapper().decrypt(loanRow);
+            recording.stop();
+            recording.dump(file);
+        }
+        new LoanMapper().decrypt(loanRow);
+        // then
+        var types = RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(event -> event.getEventType().getName().equals("io.github.pitzzahh.atm.RowDecode"))
+                .filter(event -> event.getThread() != null && event.getThread().getJavaThreadId() == Thread.currentThread().getId())
+                .map(event -> event.getString("type"))
+                .collect(Collectors.toList());
+        assertEquals(List.of("Client", "Loan"), types);
+    }
+
+    private static Object[] clientRow() {
+        return new Object[] {
+                Crypto.encrypt("123123123"),
+                Crypto.encrypt("123123"),
+                Crypto.encrypt("Peter John"),
+                Crypto.encrypt("Arao"),
+                "MALE",
+                Crypto.encrypt("Earth"),
+                BIRTH_DATE,
+                Crypto.encrypt(Money.encode(5_000_000_00L)),
+                false
+        };
+    }
+
+    private static Object[] loanRow() {
+        return new Object[] {
+                3,
+                Crypto.encrypt("123123123"),
+                LocalDate.of(2022, Month.AUGUST, 6),
+                Crypto.encrypt(Money.encode(1_000_00L)),
+                Crypto.encrypt(true),
+                Crypto.encrypt(false)
+        };
+    }
+
+}
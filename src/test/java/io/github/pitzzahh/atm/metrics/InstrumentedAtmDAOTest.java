@@ -0,0 +1,109 @@
+package io.github.pitzzahh.atm.metrics;
+
+import static io.github.pitzzahh.util.utilities.classes.enums.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static io.github.pitzzahh.atm.dao.Util.*;
+import io.github.pitzzahh.atm.exceptions.ClientNotFoundException;
+import java.lang.management.ManagementFactory;
+import io.github.pitzzahh.atm.dao.InMemory;
+import javax.management.ObjectName;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.io.TempDir;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.*;
+import jdk.jfr.Recording;
+import java.nio.file.Path;
+import java.util.List;
+
+class InstrumentedAtmDAOTest {
+
+    private HistogramMetricsRegistry registry;
+    private InstrumentedAtmDAO dao;
+
+    @BeforeEach
+    void setUp() {
+        registry = new HistogramMetricsRegistry("test");
+        dao = new InstrumentedAtmDAO(new InMemory(), registry);
+        assertEquals(SUCCESS, dao.saveClient().apply(makePeter()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.unregisterMBeans();
+    }
+
+    @Test
+    void shouldRecordTheCountTheErrorsAndTheLatenciesOfEveryOperation() {
+        // when
+        for (int i = 0; i < 3; i++) assertTrue(dao.getClientByAccountNumber().apply("123123123").isPresent());
+        assertThrows(ClientNotFoundException.class, () -> dao.getClientByAccountNumber().apply("000000000"));
+        assertEquals(CANNOT_PERFORM_OPERATION, dao.withdrawInCentsByAccountNumber().apply("123123123", Long.MAX_VALUE));
+        // then
+        var statistics = registry.statistics();
+        assertEquals(1, statistics.get("saveClient").getCount());
+        assertEquals(4, statistics.get("getClientByAccountNumber").getCount());
+        assertEquals(1, statistics.get("getClientByAccountNumber").getErrorCount());
+        assertEquals(1, statistics.get("withdrawInCentsByAccountNumber").getCount());
+        assertEquals(0, statistics.get("withdrawInCentsByAccountNumber").getErrorCount());
+        assertEquals(0, statistics.get("getAllClients").getCount());
+        var latencies = registry.latencies("getClientByAccountNumber");
+        assertEquals(4, latencies.count());
+        assertTrue(latencies.valueAtPercentile(50) > 0);
+        assertTrue(latencies.valueAtPercentile(50) <= latencies.max());
+    }
+
+    @Test
+    void shouldRecordAnEventForEveryOperationEvenWhenTheMetricsAreDisabled(@TempDir Path directory) throws Exception {
+        // given
+        var file = directory.resolve("operations.jfr");
+        dao.setEnabled(false);
+        // when
+        try (var recording = new Recording()) {
+            recording.enable("io.github.pitzzahh.atm.AtmDAO");
+            recording.start();
+            assertTrue(dao.getClientByAccountNumber().apply("123123123").isPresent());
+            assertEquals(CANNOT_PERFORM_OPERATION, dao.withdrawInCentsByAccountNumber().apply("123123123", Long.MAX_VALUE));
+            recording.stop();
+            recording.dump(file);
+        }
+        // then
+        var events = RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(event -> event.getEventType().getName().equals("io.github.pitzzahh.atm.AtmDAO"))
+                .filter(event -> event.getThread() != null && event.getThread().getJavaThreadId() == Thread.currentThread().getId())
+                .collect(Collectors.toList());
+        assertEquals(List.of("getClientByAccountNumber", "withdrawInCentsByAccountNumber"), events.stream().map(event -> event.getString("operation")).collect(Collectors.toList()));
+        assertEquals(InMemory.class.getName(), events.get(0).getClass("implementation").getName());
+        assertFalse(events.get(1).getBoolean("failed"));
+        assertEquals(0, registry.statistics().get("getClientByAccountNumber").getCount());
+    }
+
+    @Test
+    void shouldNotRecordAnythingWhenDisabled() {
+        // given
+        registry.reset();
+        dao.setEnabled(false);
+        // when
+        assertTrue(dao.getClientByAccountNumber().apply("123123123").isPresent());
+        // then
+        assertEquals(0, registry.statistics().get("getClientByAccountNumber").getCount());
+        dao.setEnabled(true);
+        assertTrue(dao.getClientByAccountNumber().apply("123123123").isPresent());
+        assertEquals(1, registry.statistics().get("getClientByAccountNumber").getCount());
+    }
+
+    @Test
+    void shouldRegisterAnMXBeanForEveryOperation() throws Exception {
+        // given
+        registry.registerMBeans();
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = new ObjectName(HistogramMetricsRegistry.DOMAIN + ":type=AtmDAO,registry=\"test\",operation=\"saveClient\"");
+        // then
+        assertEquals(1L, server.getAttribute(name, "Count"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, server.getAttribute(name, "Count"));
+        registry.unregisterMBeans();
+        assertFalse(server.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,69 @@
+package io.github.pitzzahh.atm.security;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+class BlindIndexTest {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void shouldHashTheSameAccountNumberToTheSameValue() {
+        // given
+        var blindIndex = new BlindIndex(KEY);
+        // when
+        var first = blindIndex.hash("123123123");
+        var second = new BlindIndex(KEY).hash("123123123");
+        // then
+        assertEquals(32, first.length);
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, blindIndex.hash("143143143")));
+    }
+
+    @Test
+    void shouldHashDifferentlyWithADifferentKey() {
+        // given
+        var other = "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+        // when
+        var first = new BlindIndex(KEY).hash("123123123");
+        var second = new BlindIndex(other).hash("123123123");
+        // then
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void shouldReadTheKeyFromTheSystemProperty() {
+        // given
+        var previous = System.setProperty(BlindIndex.KEY_PROPERTY, Base64.getEncoder().encodeToString(KEY));
+        try {
+            // when
+            var hash = BlindIndex.fromEnvironment().hash("123123123");
+            // then
+            assertArrayEquals(new BlindIndex(KEY).hash("123123123"), hash);
+        } finally {
+            if (previous == null) System.clearProperty(BlindIndex.KEY_PROPERTY);
+            else System.setProperty(BlindIndex.KEY_PROPERTY, previous);
+        }
+    }
+
+    @Test
+    void shouldThrowExceptionBecauseNoKeyIsConfigured() {
+        assumeTrue(System.getProperty(BlindIndex.KEY_PROPERTY) == null && System.getenv(BlindIndex.KEY_ENVIRONMENT_VARIABLE) == null);
+        assertThrows(IllegalStateException.class, BlindIndex::fromEnvironment);
+    }
+
+    @Test
+    void shouldNotUseTheDevelopmentKeyUnlessAskedFor() {
+        assertFalse(Arrays.equals(BlindIndex.development().hash("123123123"), new BlindIndex(KEY).hash("123123123")));
+    }
+
+    @Test
+    void shouldThrowExceptionBecauseKeyIsTooShort() {
+        assertThrows(IllegalArgumentException.class, () -> new BlindIndex(new byte[15]));
+    }
+
+}
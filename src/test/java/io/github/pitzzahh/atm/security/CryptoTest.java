@@ -0,0 +1,49 @@
+package io.github.pitzzahh.atm.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import jdk.jfr.Recording;
+import java.nio.file.Path;
+import java.util.List;
+
+class CryptoTest {
+
+    @Test
+    void shouldEncryptAndDecryptABooleanOncePerThread(@TempDir Path directory) throws Exception {
+        // given
+        var file = directory.resolve("crypto.jfr");
+        var values = new ArrayList<Boolean>();
+        var thread = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                values.add(Crypto.decryptBoolean(Crypto.encrypt(true)));
+                values.add(Crypto.decryptBoolean(Crypto.encrypt(false)));
+            }
+        });
+        // when
+        try (var recording = new Recording()) {
+            recording.enable("io.github.pitzzahh.atm.Crypto");
+            recording.start();
+            thread.start();
+            thread.join();
+            recording.stop();
+            recording.dump(file);
+        }
+        // then
+        assertEquals(List.of(true, false, true, false, true, false), values);
+        var operations = RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(event -> event.getEventType().getName().equals("io.github.pitzzahh.atm.Crypto"))
+                .filter(event -> event.getThread() != null && event.getThread().getJavaThreadId() == thread.getId())
+                .count();
+        assertEquals(4, operations);
+    }
+
+    @Test
+    void shouldDecryptWhatWasEncrypted() {
+        assertEquals("123123123", Crypto.decrypt(Crypto.encrypt("123123123")));
+    }
+
+}